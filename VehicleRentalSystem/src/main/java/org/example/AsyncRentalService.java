@@ -0,0 +1,126 @@
+package org.example;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous facade over {@link VehicleRentalSystem}.
+ * Every call runs on its own virtual thread and completes a CompletableFuture, so callers
+ * such as the Swing UI never block on JDBC. Cancelling a returned future interrupts the
+ * worker and drops its result.
+ */
+class AsyncRentalService {
+    private final VehicleRentalSystem rentalSystem;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    AsyncRentalService(VehicleRentalSystem rentalSystem) {
+        this.rentalSystem = rentalSystem;
+    }
+
+    /**
+     * Run arbitrary work against the rental system in the background
+     * @param work the work to run
+     * @param <T> result type
+     * @return future completed with the work's result
+     */
+    <T> CompletableFuture<T> supply(Supplier<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(work.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Run work with no result in the background
+     * @param work the work to run
+     * @return future completed when the work finishes
+     */
+    CompletableFuture<Void> run(Runnable work) {
+        return supply(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    CompletableFuture<Boolean> addVehicle(Vehicle vehicle) {
+        return supply(() -> rentalSystem.addVehicle(vehicle));
+    }
+
+    CompletableFuture<UpdateResult> updateVehicle(String vehicleId, double newPrice) {
+        return supply(() -> rentalSystem.updateVehicle(vehicleId, newPrice, VehicleRepository.ANY_VERSION));
+    }
+
+    CompletableFuture<DeleteResult> deleteVehicle(String vehicleId) {
+        return supply(() -> rentalSystem.deleteVehicle(vehicleId, VehicleRepository.ANY_VERSION));
+    }
+
+    CompletableFuture<List<Vehicle>> getVehicles() {
+        return supply(rentalSystem::getVehicles);
+    }
+
+    CompletableFuture<RentResult> rentVehicle(Vehicle vehicle, Customer customer, int days) {
+        return supply(() -> rentalSystem.rentVehicle(vehicle, customer, days));
+    }
+
+    CompletableFuture<ReturnResult> returnVehicleFor(String customerId, String vehicleId) {
+        return supply(() -> rentalSystem.returnVehicleFor(customerId, vehicleId));
+    }
+
+    CompletableFuture<List<Vehicle>> findAvailableVehicles(OffsetDateTime start, OffsetDateTime end) {
+        return supply(() -> rentalSystem.findAvailableVehicles(start, end));
+    }
+
+    CompletableFuture<ReserveResult> reserveVehicle(String vehicleId, String customerId,
+                                                    OffsetDateTime start, OffsetDateTime end) {
+        return supply(() -> rentalSystem.reserveVehicle(vehicleId, customerId, start, end));
+    }
+
+    CompletableFuture<Customer> findCustomerById(String customerId) {
+        return supply(() -> rentalSystem.findCustomerById(customerId));
+    }
+
+    CompletableFuture<List<Customer>> findCustomerByName(String name) {
+        return supply(() -> rentalSystem.findCustomerByName(name));
+    }
+
+    CompletableFuture<Customer> authenticateCustomer(String customerId, String password) {
+        return supply(() -> rentalSystem.authenticateCustomer(customerId, password));
+    }
+
+    CompletableFuture<Boolean> adminLogin(String username, String password) {
+        return supply(() -> rentalSystem.adminLogin(username, password));
+    }
+
+    CompletableFuture<Boolean> changeAdminPassword(String username, String newPassword) {
+        return supply(() -> rentalSystem.changeAdminPassword(username, newPassword));
+    }
+
+    CompletableFuture<Boolean> updateCustomerPassword(String customerId, String newPassword) {
+        return supply(() -> rentalSystem.updateCustomerPassword(customerId, newPassword));
+    }
+
+    /**
+     * Stop accepting work; running calls are allowed to finish
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+}
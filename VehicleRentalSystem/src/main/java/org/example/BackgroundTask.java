@@ -0,0 +1,100 @@
+package org.example;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Window;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Bridges {@link AsyncRentalService} futures back onto the Swing event dispatch thread.
+ * A progress dialog with a Cancel button appears if the work takes noticeably long, and the
+ * completion callback always runs on the EDT, like SwingWorker.done().
+ */
+final class BackgroundTask {
+    // Fast calls finish before any progress dialog flickers on screen
+    private static final int PROGRESS_DELAY_MS = 300;
+
+    private BackgroundTask() {
+    }
+
+    /**
+     * Wait for a future without blocking the EDT, then hand its result to onSuccess on the EDT.
+     * Failures are reported in an error dialog; cancelled tasks call nothing.
+     * @param parent component the progress and error dialogs are shown over
+     * @param message text shown while waiting
+     * @param future the background work
+     * @param onSuccess callback run on the EDT with the result
+     * @param <T> result type
+     */
+    static <T> void run(Component parent, String message, CompletableFuture<T> future, Consumer<T> onSuccess) {
+        Window owner = parent == null ? null : SwingUtilities.getWindowAncestor(parent);
+        if (owner == null && parent instanceof Window) {
+            owner = (Window) parent;
+        }
+        JDialog progressDialog = createProgressDialog(owner, message, future);
+
+        Timer showTimer = new Timer(PROGRESS_DELAY_MS, e -> {
+            if (!future.isDone()) {
+                progressDialog.setVisible(true);
+            }
+        });
+        showTimer.setRepeats(false);
+        showTimer.start();
+
+        future.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            showTimer.stop();
+            progressDialog.dispose();
+
+            if (future.isCancelled()) {
+                return;
+            }
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof CancellationException) {
+                    return;
+                }
+                JOptionPane.showMessageDialog(parent, "Operation failed: " + cause.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            onSuccess.accept(result);
+        }));
+    }
+
+    private static JDialog createProgressDialog(Window owner, String message, CompletableFuture<?> future) {
+        JDialog dialog = new JDialog(owner, "Please wait");
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(e -> future.cancel(true));
+
+        panel.add(new JLabel(message), BorderLayout.NORTH);
+        panel.add(progressBar, BorderLayout.CENTER);
+        panel.add(cancelButton, BorderLayout.SOUTH);
+
+        dialog.add(panel);
+        dialog.pack();
+        dialog.setLocationRelativeTo(owner);
+        return dialog;
+    }
+}
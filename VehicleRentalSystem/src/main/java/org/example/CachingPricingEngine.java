@@ -0,0 +1,88 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Memoizes quotes of another engine per vehicle, start day, length and base price.
+ * {@link VehicleRentalSystem#updateVehicle} drops a vehicle's quotes when its price changes;
+ * the base price is part of the key as well, so a price changed by another app instance can
+ * never be served from a stale quote. When the cache grows past its bound it is cleared.
+ */
+final class CachingPricingEngine implements PricingEngine {
+    private final PricingEngine delegate;
+    private final int maxEntries;
+    private final Map<String, Map<QuoteKey, Quote>> quotesByVehicle = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    CachingPricingEngine(PricingEngine delegate, int maxEntries) {
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public BigDecimal priceFactor(String type, LocalDate start, int days) {
+        return delegate.priceFactor(type, start, days);
+    }
+
+    @Override
+    public Quote quote(Vehicle vehicle, LocalDate start, int days) {
+        QuoteKey key = new QuoteKey(start.toEpochDay(), days, PricingEngine.toCents(vehicle.getBasePricePerDay()));
+        Map<QuoteKey, Quote> quotes = quotesByVehicle.computeIfAbsent(vehicle.getVehicleId(),
+                id -> new ConcurrentHashMap<>());
+        Quote quote = quotes.get(key);
+        if (quote == null) {
+            quote = delegate.quote(vehicle, start, days);
+            if (quotes.putIfAbsent(key, quote) == null && size.incrementAndGet() > maxEntries) {
+                invalidateAll();
+            }
+        }
+        return quote;
+    }
+
+    /**
+     * Drop the cached quotes of one vehicle
+     * @param vehicleId vehicle ID
+     */
+    void invalidate(String vehicleId) {
+        Map<QuoteKey, Quote> removed = quotesByVehicle.remove(vehicleId);
+        if (removed != null) {
+            size.addAndGet(-removed.size());
+        }
+    }
+
+    void invalidateAll() {
+        quotesByVehicle.clear();
+        size.set(0);
+    }
+
+    private static final class QuoteKey {
+        final long startEpochDay;
+        final int days;
+        final long baseCents;
+
+        QuoteKey(long startEpochDay, int days, long baseCents) {
+            this.startEpochDay = startEpochDay;
+            this.days = days;
+            this.baseCents = baseCents;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof QuoteKey)) {
+                return false;
+            }
+            QuoteKey other = (QuoteKey) o;
+            return startEpochDay == other.startEpochDay && days == other.days && baseCents == other.baseCents;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(startEpochDay, days, baseCents);
+        }
+    }
+}
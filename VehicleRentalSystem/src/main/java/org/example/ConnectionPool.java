@@ -0,0 +1,446 @@
+package org.example;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded JDBC connection pool used behind {@link DatabaseConnection}.
+ * Borrowed connections are handed out as proxies whose close() returns the
+ * physical connection to the pool instead of closing it.
+ */
+public class ConnectionPool {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long validateAfterIdleMillis;
+    private final long leakThresholdMillis;
+    private final boolean captureBorrowSites;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    // Metrics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    /**
+     * Create a pool
+     * @param url JDBC URL
+     * @param user database user
+     * @param password database password
+     * @param minSize connections kept open even when idle
+     * @param maxSize upper bound on open connections
+     * @param borrowTimeoutMillis how long a borrower waits for a free connection
+     * @param idleTimeoutMillis idle time after which connections above minSize are closed
+     * @param validateAfterIdleMillis idle time after which a connection is checked with a round trip
+     *                                before it is handed out; ones used more recently are trusted
+     * @param leakThresholdMillis borrow duration after which a leak warning is logged (0 disables)
+     * @param captureBorrowSites record a stack trace on every borrow so leak warnings show where the
+     *                           connection was taken; costly, so meant for tracking a leak down
+     * @param statementCacheSize prepared statements cached per connection (0 disables)
+     */
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long borrowTimeoutMillis, long idleTimeoutMillis, long validateAfterIdleMillis,
+                          long leakThresholdMillis, boolean captureBorrowSites, int statementCacheSize) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validateAfterIdleMillis = validateAfterIdleMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.captureBorrowSites = captureBorrowSites && leakThresholdMillis > 0;
+        this.validationTimeoutSeconds = 2;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, 30000));
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection, waiting up to the borrow timeout for one to become free
+     * @return Connection whose close() returns it to the pool
+     * @throws SQLException if the pool is closed, the wait times out or a new connection cannot be opened
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis
+                        + "ms waiting for a database connection (active=" + getActiveCount()
+                        + ", max=" + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeValidConnection();
+            long waited = System.nanoTime() - start;
+            recordWait(waited);
+            Metrics.recordConnectionWait(waited);
+
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowSite = captureBorrowSites ? new Throwable("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Takes an idle connection (most recently used first) or opens a new one
+    private PooledConnection takeValidConnection() throws SQLException {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            destroy(pooled);
+        }
+        return create();
+    }
+
+    // Validation costs a round trip, so only connections idle long enough to have been dropped
+    // by the server or a firewall get one. A recently used connection that broke anyway fails
+    // its borrower's first statement and is discarded when returned.
+    private boolean isUsable(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsed < validateAfterIdleMillis) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        createdCount.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        if (pooled.statements != null) {
+            pooled.statements.clear();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            EventLog.warn("connectionPool").cause(e).log("Error closing pooled connection");
+        }
+    }
+
+    private void recordWait(long waited) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    // Called when a borrower closes its handle
+    private void release(PooledConnection pooled) {
+        if (!borrowed.remove(pooled)) {
+            return;
+        }
+
+        try {
+            if (pooled.statements != null) {
+                pooled.statements.releaseAll();
+            }
+            boolean reusable = !closed && resetState(pooled);
+            if (reusable) {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            } else {
+                destroy(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Rolls back any open transaction so the next borrower starts clean
+    private boolean resetState(PooledConnection pooled) {
+        try {
+            Connection physical = pooled.physical;
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // Evicts idle connections, tops the pool up to minSize and reports leaks
+    private void housekeep() {
+        if (closed) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : idle) {
+            if (totalConnections.get() <= minSize) {
+                break;
+            }
+            if (now - pooled.lastUsed > idleTimeoutMillis && idle.remove(pooled)) {
+                evictedCount.incrementAndGet();
+                destroy(pooled);
+            }
+        }
+
+        try {
+            while (totalConnections.get() < minSize && permits.tryAcquire()) {
+                try {
+                    PooledConnection pooled = create();
+                    pooled.lastUsed = now;
+                    idle.offerLast(pooled);
+                } finally {
+                    permits.release();
+                }
+            }
+        } catch (SQLException e) {
+            EventLog.error("connectionPool").cause(e).log("Error filling connection pool");
+        }
+
+        if (leakThresholdMillis > 0) {
+            for (PooledConnection pooled : borrowed) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakThresholdMillis) {
+                    pooled.leakReported = true;
+                    leakCount.incrementAndGet();
+                    // At ERROR level the borrow site's stack trace, if captured, is logged with the event
+                    EventLog.error("connectionPool").with("heldMs", now - pooled.borrowedAt)
+                            .cause(pooled.borrowSite).log("Possible connection leak");
+                }
+            }
+        }
+    }
+
+    /**
+     * Close all idle connections and stop the pool; borrowed connections are closed when returned
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getTotalCount() {
+        return totalConnections.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Snapshot of the pool counters
+     * @return Stats object
+     */
+    public Stats getStats() {
+        long borrows = borrowCount.get();
+        long statementHits = 0;
+        long statementMisses = 0;
+        for (Iterable<PooledConnection> group : List.of(idle, borrowed)) {
+            for (PooledConnection pooled : group) {
+                if (pooled.statements != null) {
+                    statementHits += pooled.statements.getHits();
+                    statementMisses += pooled.statements.getMisses();
+                }
+            }
+        }
+        return new Stats(getActiveCount(), getIdleCount(), getTotalCount(), maxSize,
+                permits.getQueueLength(), borrows,
+                borrows == 0 ? 0 : totalWaitNanos.get() / borrows / 1000,
+                maxWaitNanos.get() / 1000, timeoutCount.get(), createdCount.get(),
+                evictedCount.get(), leakCount.get(), statementHits, statementMisses);
+    }
+
+    /**
+     * Point-in-time pool metrics
+     */
+    public static class Stats {
+        public final int active;
+        public final int idle;
+        public final int total;
+        public final int max;
+        public final int waiting;
+        public final long borrows;
+        public final long averageWaitMicros;
+        public final long maxWaitMicros;
+        public final long timeouts;
+        public final long created;
+        public final long evicted;
+        public final long leaks;
+        public final long statementCacheHits;
+        public final long statementCacheMisses;
+
+        Stats(int active, int idle, int total, int max, int waiting, long borrows,
+              long averageWaitMicros, long maxWaitMicros, long timeouts, long created,
+              long evicted, long leaks, long statementCacheHits, long statementCacheMisses) {
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.max = max;
+            this.waiting = waiting;
+            this.borrows = borrows;
+            this.averageWaitMicros = averageWaitMicros;
+            this.maxWaitMicros = maxWaitMicros;
+            this.timeouts = timeouts;
+            this.created = created;
+            this.evicted = evicted;
+            this.leaks = leaks;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+        }
+
+        @Override
+        public String toString() {
+            return "active=" + active + ", idle=" + idle + ", total=" + total + "/" + max
+                    + ", waiting=" + waiting + ", borrows=" + borrows
+                    + ", avgWait=" + averageWaitMicros + "us, maxWait=" + maxWaitMicros + "us"
+                    + ", timeouts=" + timeouts + ", created=" + created
+                    + ", evicted=" + evicted + ", leaks=" + leaks
+                    + ", stmtCacheHits=" + statementCacheHits + ", stmtCacheMisses=" + statementCacheMisses;
+        }
+    }
+
+    // A physical connection plus its pool bookkeeping
+    private class PooledConnection {
+        final Connection physical;
+        final StatementCache statements;
+        volatile long lastUsed = System.currentTimeMillis();
+        volatile long borrowedAt;
+        volatile Throwable borrowSite;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null;
+        }
+
+        // Each borrow gets its own handle so a stale reference cannot touch the next borrower's session
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this));
+        }
+    }
+
+    // Routes calls to the physical connection until the borrower closes it. Close may be called
+    // from more than one thread, so only the first call releases the connection.
+    private class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (released.compareAndSet(false, true)) {
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return released.get() || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + (released.get() ? ", released" : "") + "]";
+                default:
+                    break;
+            }
+
+            if (released.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            if (pooled.statements != null && method.getName().equals("prepareStatement")
+                    && args != null && args.length == 1) {
+                return pooled.statements.prepare(pooled.physical, (Connection) proxy, (String) args[0]);
+            }
+
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
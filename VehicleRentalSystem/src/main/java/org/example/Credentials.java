@@ -0,0 +1,231 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Salted, deliberately slow password hashes (PBKDF2 with HMAC-SHA512), stored as
+ * {@code pbkdf2$<iterations>$<salt>$<hash>} in the password columns.
+ * <p>
+ * Hashing runs on a small dedicated pool, {@code -Dcredentials.threads} (half the processors)
+ * with a queue of {@code -Dcredentials.queue} (64), so a burst of sign-ins cannot take every
+ * CPU from request threads; past the queue, {@link RejectedExecutionException} is thrown and
+ * the caller should ask the user to retry.
+ * <p>
+ * Passwords that verified are remembered for {@code -Dcredentials.cacheTtlMillis} (15 minutes)
+ * in an LRU cache of {@code -Dcredentials.cacheSize} (10000) entries, so clients that send
+ * their password with every request, like the API's Basic authentication, pay for the hash
+ * once per session. Entries are keyed by an HMAC of principal and password under a key that
+ * never leaves the process, and hold the stored hash they were checked against; a password
+ * change stores a new hash and so invalidates them.
+ * <p>
+ * Stored values without the {@code pbkdf2$} prefix are plaintext passwords from before
+ * hashing; they still verify, and {@link #needsRehash} tells the caller to replace them.
+ */
+final class Credentials {
+    static final int ITERATIONS = Integer.getInteger("credentials.iterations", 210000);
+    static final int THREADS = Integer.getInteger("credentials.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    static final int QUEUE = Integer.getInteger("credentials.queue", 64);
+    static final int CACHE_SIZE = Integer.getInteger("credentials.cacheSize", 10000);
+    static final long CACHE_TTL_MILLIS = Long.getLong("credentials.cacheTtlMillis", TimeUnit.MINUTES.toMillis(15));
+
+    private static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA512";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final Metrics.Operation HASH_PASSWORD_METRICS = Metrics.operation("hashPassword");
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // A password that verified against a stored hash, until expiresAt
+    private static final class Verified {
+        private final String stored;
+        private final long expiresAt;
+
+        private Verified(String stored, long expiresAt) {
+            this.stored = stored;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int iterations;
+    private final long cacheTtlMillis;
+    private final ThreadPoolExecutor hashers;
+    private final SecretKeySpec cacheKey;
+    private final Map<String, Verified> verified;
+
+    Credentials() {
+        this(ITERATIONS, THREADS, QUEUE, CACHE_SIZE, CACHE_TTL_MILLIS);
+    }
+
+    Credentials(int iterations, int threads, int queue, int cacheSize, long cacheTtlMillis) {
+        this.iterations = iterations;
+        this.cacheTtlMillis = cacheTtlMillis;
+        AtomicInteger threadNumber = new AtomicInteger();
+        hashers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), task -> {
+                    Thread thread = new Thread(task, "password-hasher-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        byte[] key = new byte[32];
+        RANDOM.nextBytes(key);
+        cacheKey = new SecretKeySpec(key, "HmacSHA256");
+        verified = new LinkedHashMap<String, Verified>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Verified> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Hash a password with a new random salt
+     * @return the value to store
+     * @throws RejectedExecutionException if the hashing pool is saturated
+     */
+    String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = onHasher(() -> pbkdf2(password, salt, iterations));
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    /**
+     * Check a password against its stored value, from the cache if it verified recently
+     * @param principal who is signing in, e.g. "customer:C12"; scopes the cache entry
+     * @param stored the stored hash, or a legacy plaintext password
+     * @throws RejectedExecutionException if the hashing pool is saturated
+     */
+    boolean verify(String principal, String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        String token = cacheToken(principal, password);
+        long now = System.currentTimeMillis();
+        synchronized (verified) {
+            Verified entry = verified.get(token);
+            if (entry != null && entry.expiresAt > now && entry.stored.equals(stored)) {
+                return true;
+            }
+        }
+
+        boolean matches;
+        if (!stored.startsWith(PREFIX)) {
+            matches = MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8),
+                    password.getBytes(StandardCharsets.UTF_8));
+        } else {
+            String[] parts = stored.split("\\$");
+            int storedIterations;
+            byte[] salt;
+            byte[] expected;
+            try {
+                storedIterations = Integer.parseInt(parts[1]);
+                salt = Base64.getDecoder().decode(parts[2]);
+                expected = Base64.getDecoder().decode(parts[3]);
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                return false; // Not a hash this class wrote
+            }
+            byte[] actual = onHasher(() -> pbkdf2(password, salt, storedIterations));
+            matches = MessageDigest.isEqual(expected, actual);
+        }
+        if (matches) {
+            remember(principal, password, stored);
+        }
+        return matches;
+    }
+
+    /**
+     * Cache a password as verified against a stored value, e.g. one the caller just stored
+     */
+    void remember(String principal, String password, String stored) {
+        Verified entry = new Verified(stored, System.currentTimeMillis() + cacheTtlMillis);
+        String token = cacheToken(principal, password);
+        synchronized (verified) {
+            verified.put(token, entry);
+        }
+    }
+
+    /**
+     * True if a stored value is plaintext or hashed with fewer iterations than configured
+     */
+    boolean needsRehash(String stored) {
+        if (!stored.startsWith(PREFIX)) {
+            return true;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(stored.substring(PREFIX.length(), end)) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Stop the hashing pool; later hashes and uncached verifications fail
+     */
+    void close() {
+        hashers.shutdownNow();
+    }
+
+    // Runs a hash on the pool and waits for it
+    private byte[] onHasher(Callable<byte[]> work) {
+        Future<byte[]> result = hashers.submit(work);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing a password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error hashing a password: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) throws GeneralSecurityException {
+        long started = Metrics.start();
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            HASH_PASSWORD_METRICS.error();
+            throw e;
+        } finally {
+            spec.clearPassword();
+            HASH_PASSWORD_METRICS.record(started);
+        }
+    }
+
+    private String cacheToken(String principal, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(cacheKey);
+            mac.update(principal.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e); // Required of every JRE
+        }
+    }
+}
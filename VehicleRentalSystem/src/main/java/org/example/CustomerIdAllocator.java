@@ -0,0 +1,46 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Hands out customer IDs ("CUS" + number) from blocks reserved on a PostgreSQL sequence.
+ * The sequence increments by the block size, so one nextval() reserves a whole block and
+ * most registrations need no database round trip at all.
+ */
+public class CustomerIdAllocator {
+    public static final String SEQUENCE_NAME = "customer_id_seq";
+    public static final String PREFIX = "CUS";
+
+    private long next;
+    private long limit;
+
+    /**
+     * Get the next unused customer ID
+     * @return customer ID
+     * @throws SQLException if a new block cannot be reserved
+     */
+    public synchronized String nextId() throws SQLException {
+        if (next >= limit) {
+            reserveBlock();
+        }
+        return PREFIX + next++;
+    }
+
+    // Reserves [nextval, nextval + increment) for this process
+    private void reserveBlock() throws SQLException {
+        String sql = "SELECT nextval('" + SEQUENCE_NAME + "'), " +
+                "(SELECT increment_by FROM pg_sequences WHERE sequencename = '" + SEQUENCE_NAME + "')";
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            long start = rs.getLong(1);
+            long blockSize = Math.max(1, rs.getLong(2));
+            next = start;
+            limit = start + blockSize;
+        }
+    }
+}
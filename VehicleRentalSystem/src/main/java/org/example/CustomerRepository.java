@@ -0,0 +1,49 @@
+package org.example;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Persistent store of customer and admin accounts.
+ * @see Storage
+ */
+interface CustomerRepository {
+
+    /**
+     * Store a new customer
+     * @throws SQLException with SQLState 23505 if the customer ID is taken
+     */
+    void add(Customer customer) throws SQLException;
+
+    /**
+     * @return the customer, or null if not found
+     */
+    Customer findById(String customerId) throws SQLException;
+
+    /**
+     * Customers whose name matches ignoring case, ordered by ID. Names are not unique.
+     */
+    List<Customer> findByName(String name) throws SQLException;
+
+    List<Customer> findAll() throws SQLException;
+
+    /**
+     * @return false if the customer does not exist
+     */
+    boolean updatePassword(String customerId, String newPassword) throws SQLException;
+
+    /**
+     * Allocate a customer ID no other customer has or will be given
+     */
+    String nextId() throws SQLException;
+
+    /**
+     * @return the admin account, or null if not found
+     */
+    Admin findAdmin(String username) throws SQLException;
+
+    /**
+     * @return false if the admin account does not exist
+     */
+    boolean updateAdminPassword(String username, String newPassword) throws SQLException;
+}
@@ -2,27 +2,116 @@ package org.example;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDate;
 
 /**
  * Utility class for managing database connections
  */
 public class DatabaseConnection {
-    private static final String URL = "jdbc:postgresql://localhost:5432/postgres";
-    private static final String USER = "postgres";
-    private static final String PASSWORD = "12345678";
+    // Defaults can be overridden with -Ddb.url, -Ddb.user and -Ddb.password
+    private static final String URL = System.getProperty("db.url", "jdbc:postgresql://localhost:5432/postgres");
+    private static final String USER = System.getProperty("db.user", "postgres");
+    private static final String PASSWORD = System.getProperty("db.password", "12345678");
+
+    // Connection pool settings
+    private static final int POOL_MIN_SIZE = 2;
+    private static final int POOL_MAX_SIZE = 10;
+    private static final long POOL_BORROW_TIMEOUT_MS = 5000;
+    private static final long POOL_IDLE_TIMEOUT_MS = 300000;
+    private static final long POOL_VALIDATE_AFTER_IDLE_MS = 5000;
+    private static final long POOL_LEAK_THRESHOLD_MS = 60000;
+    // Stack trace of the borrow site in leak warnings (-Ddb.pool.leakTraces=true); costs a trace per borrow
+    private static final boolean POOL_LEAK_TRACES = Boolean.getBoolean("db.pool.leakTraces");
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    // Create rentals as a table partitioned by month of rented_at (-Ddb.partitionRentals=true).
+    // Only applies when the table does not exist yet.
+    private static final boolean PARTITION_RENTALS = Boolean.getBoolean("db.partitionRentals");
+    private static final int RENTAL_PARTITIONS_AHEAD = 2;
+
+    // Customer IDs reserved per sequence round trip
+    private static final int CUSTOMER_ID_BLOCK_SIZE = 20;
+
+    // Closed rentals of vehicles that still exist, for rebuilding rented hours in the report summaries
+    private static final String CLOSED_RENTALS_SQL = "(SELECT r.vehicle_id, v.type, r.rented_at, r.returned_at " +
+            "FROM rentals r JOIN vehicles v ON v.vehicle_id = r.vehicle_id WHERE r.returned_at IS NOT NULL) closed";
+    private static final String SPREAD_RENTED_HOURS = "rented_hours_by_day";
+
+    // NOTIFY channel carrying the ID of every vehicle whose price changed or that was deleted
+    public static final String VEHICLE_CHANGE_CHANNEL = "vehicle_changes";
+
+    private static volatile ConnectionPool pool;
 
     /**
-     * Get a connection to the database
+     * Get a connection to the database from the shared pool.
+     * Closing the returned connection hands it back to the pool.
      * @return Connection object
      * @throws SQLException if connection fails
      */
     public static Connection getConnection() throws SQLException {
+        return getPool().borrow();
+    }
+
+    /**
+     * Open a connection outside the pool, for long-lived sessions such as LISTEN.
+     * The caller is responsible for closing it.
+     * @return Connection object
+     * @throws SQLException if connection fails
+     */
+    public static Connection openDedicatedConnection() throws SQLException {
         return DriverManager.getConnection(URL, USER, PASSWORD);
     }
 
+    /**
+     * Get the shared connection pool, creating it on first use
+     * @return ConnectionPool instance
+     */
+    public static ConnectionPool getPool() {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (DatabaseConnection.class) {
+                current = pool;
+                if (current == null) {
+                    current = new ConnectionPool(URL, USER, PASSWORD, POOL_MIN_SIZE, POOL_MAX_SIZE,
+                            POOL_BORROW_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, POOL_VALIDATE_AFTER_IDLE_MS,
+                            POOL_LEAK_THRESHOLD_MS, POOL_LEAK_TRACES, STATEMENT_CACHE_SIZE);
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Whether the shared pool has been created, i.e. the database is in use
+     * @return true once a connection has been requested
+     */
+    public static boolean isPoolOpen() {
+        return pool != null;
+    }
+
+    /**
+     * Get current pool metrics (active/idle connections, wait times)
+     * @return pool statistics
+     */
+    public static ConnectionPool.Stats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    /**
+     * Close the shared pool and all idle connections
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
     /**
      * Initialize the database by creating necessary tables if they don't exist
      */
@@ -37,9 +126,22 @@ public class DatabaseConnection {
                     "brand VARCHAR(50) NOT NULL, " +
                     "model VARCHAR(50) NOT NULL, " +
                     "base_price_per_day DECIMAL(10, 2) NOT NULL, " +
-                    "is_available BOOLEAN DEFAULT TRUE" +
+                    "is_available BOOLEAN DEFAULT TRUE, " +
+                    "version BIGINT NOT NULL DEFAULT 0" +
                     ")");
 
+            // Row version for compare-and-set writes, added to tables created by older versions.
+            // Not indexed either, for the same reason as is_available below.
+            stmt.execute("ALTER TABLE vehicles ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0");
+
+            // Vehicle search indexes for VehicleQuery. is_available is deliberately left out of
+            // them: an indexed column would turn every rent/return update into a non-HOT update.
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_vehicles_type_price " +
+                    "ON vehicles (lower(type), base_price_per_day)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_vehicles_brand_model " +
+                    "ON vehicles (lower(brand), lower(model))");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_vehicles_price ON vehicles (base_price_per_day)");
+
             // Create customers table
             stmt.execute("CREATE TABLE IF NOT EXISTS customers (" +
                     "customer_id VARCHAR(50) PRIMARY KEY, " +
@@ -47,15 +149,96 @@ public class DatabaseConnection {
                     "password VARCHAR(100) NOT NULL" +
                     ")");
 
-            // Create rentals table
-            stmt.execute("CREATE TABLE IF NOT EXISTS rentals (" +
-                    "rental_id SERIAL PRIMARY KEY, " +
-                    "vehicle_id VARCHAR(50) NOT NULL, " +
+            // Case-insensitive name lookups for customer login
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_customers_name_lower ON customers (lower(name))");
+
+            // Customer IDs are reserved in blocks, one nextval() per block
+            stmt.execute("CREATE SEQUENCE IF NOT EXISTS " + CustomerIdAllocator.SEQUENCE_NAME +
+                    " INCREMENT BY " + CUSTOMER_ID_BLOCK_SIZE);
+            alignCustomerIdSequence(stmt);
+
+            // Create rentals table, an append-only ledger: returns set returned_at instead of deleting.
+            // Deleting a vehicle keeps its history with a NULL vehicle_id.
+            String rentalColumns = "vehicle_id VARCHAR(50), " +
                     "customer_id VARCHAR(50) NOT NULL, " +
                     "days INTEGER NOT NULL, " +
-                    "FOREIGN KEY (vehicle_id) REFERENCES vehicles(vehicle_id), " +
-                    "FOREIGN KEY (customer_id) REFERENCES customers(customer_id)" +
+                    "rented_at TIMESTAMPTZ NOT NULL DEFAULT now(), " +
+                    "returned_at TIMESTAMPTZ, " +
+                    "price_per_day DECIMAL(10, 2), " +
+                    "total_price DECIMAL(12, 2), " +
+                    "FOREIGN KEY (vehicle_id) REFERENCES vehicles(vehicle_id) ON DELETE SET NULL, " +
+                    "FOREIGN KEY (customer_id) REFERENCES customers(customer_id)";
+            if (PARTITION_RENTALS) {
+                // The partition key must be part of the primary key
+                stmt.execute("CREATE TABLE IF NOT EXISTS rentals (" +
+                        "rental_id SERIAL, " + rentalColumns + ", " +
+                        "PRIMARY KEY (rental_id, rented_at)" +
+                        ") PARTITION BY RANGE (rented_at)");
+            } else {
+                stmt.execute("CREATE TABLE IF NOT EXISTS rentals (" +
+                        "rental_id SERIAL PRIMARY KEY, " + rentalColumns +
+                        ")");
+            }
+            migrateRentalsToLedger(stmt);
+
+            // Create reservations table. Bookings are [start, end) ranges; the exclusion
+            // constraint rejects overlapping active bookings of one vehicle. It is checked at the
+            // end of each statement so a rental can pick up the renter's own reservation.
+            stmt.execute("CREATE EXTENSION IF NOT EXISTS btree_gist");
+            stmt.execute("CREATE TABLE IF NOT EXISTS reservations (" +
+                    "reservation_id SERIAL PRIMARY KEY, " +
+                    "vehicle_id VARCHAR(50) NOT NULL REFERENCES vehicles(vehicle_id) ON DELETE CASCADE, " +
+                    "customer_id VARCHAR(50) NOT NULL REFERENCES customers(customer_id), " +
+                    "period TSTZRANGE NOT NULL CHECK (NOT lower_inf(period) AND NOT upper_inf(period)), " +
+                    "rental_id INTEGER, " +
+                    "created_at TIMESTAMPTZ NOT NULL DEFAULT now(), " +
+                    "cancelled_at TIMESTAMPTZ, " +
+                    "CONSTRAINT reservations_no_overlap EXCLUDE USING gist " +
+                    "(vehicle_id WITH =, period WITH &&) WHERE (cancelled_at IS NULL) " +
+                    "DEFERRABLE INITIALLY IMMEDIATE" +
                     ")");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_reservations_rental " +
+                    "ON reservations (rental_id) WHERE rental_id IS NOT NULL");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_reservations_customer " +
+                    "ON reservations (customer_id, lower(period)) WHERE cancelled_at IS NULL");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_reservations_active_end " +
+                    "ON reservations (upper(period)) WHERE cancelled_at IS NULL");
+
+            // One-time migrations already applied to this database, see migrateOnce
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                    "name VARCHAR(100) PRIMARY KEY, " +
+                    "applied_at TIMESTAMPTZ NOT NULL DEFAULT now())");
+
+            // Open rentals from before reservations existed hold their vehicle for the rental period.
+            // The exclusion constraint is deferrable, so it cannot arbitrate an ON CONFLICT clause;
+            // NOT EXISTS skips rentals that already have their booking.
+            migrateOnce(conn, stmt, "reservations_from_open_rentals",
+                    "INSERT INTO reservations (vehicle_id, customer_id, period, rental_id) " +
+                    "SELECT vehicle_id, customer_id, " +
+                    "tstzrange(rented_at, rented_at + make_interval(days => days)), rental_id " +
+                    "FROM rentals r WHERE returned_at IS NULL AND vehicle_id IS NOT NULL " +
+                    "AND NOT EXISTS (SELECT 1 FROM reservations b WHERE b.rental_id = r.rental_id)");
+
+            createRentalSummaries(conn, stmt);
+
+            // Summaries kept by older versions booked all of a rental's hours on its return day.
+            // Move them onto the days each rental covered; hours of rentals whose vehicle has been
+            // deleted since cannot be spread and stay where they are.
+            migrateOnce(conn, stmt, SPREAD_RENTED_HOURS,
+                    "INSERT INTO rental_daily_summary AS s (day, vehicle_type, slot, rented_hours) " +
+                    "SELECT day, type, slot, sum(rented_hours) FROM (" +
+                    RentalReports.returnDaysSql(CLOSED_RENTALS_SQL) + " UNION ALL " +
+                    "SELECT returned_at::date, type, (hashtext(vehicle_id) & " + (RentalReports.SUMMARY_SLOTS - 1) +
+                    "), 0, -(" + RentalReports.HOURS_SQL + ") FROM " + CLOSED_RENTALS_SQL +
+                    ") moved GROUP BY day, type, slot " +
+                    "ON CONFLICT (day, vehicle_type, slot) DO UPDATE " +
+                    "SET rented_hours = s.rented_hours + EXCLUDED.rented_hours");
+
+            // Last event shipped from each local rental journal, see RentalJournal
+            stmt.execute("CREATE TABLE IF NOT EXISTS journal_checkpoint (" +
+                    "journal_id VARCHAR(36) PRIMARY KEY, " +
+                    "shipped_seq BIGINT NOT NULL, " +
+                    "shipped_at TIMESTAMPTZ NOT NULL DEFAULT now())");
 
             // Create admin table
             stmt.execute("CREATE TABLE IF NOT EXISTS admin (" +
@@ -63,6 +246,27 @@ public class DatabaseConnection {
                     "password VARCHAR(100) NOT NULL" +
                     ")");
 
+            // Publish price changes and deletions so other app instances can invalidate their
+            // caches. Rents, returns and inserts (one per row of a bulk import) are not published:
+            // those write through the cache of the instance making them, and other instances pick
+            // them up when their cache expires.
+            stmt.execute("CREATE OR REPLACE FUNCTION notify_vehicle_change() RETURNS trigger AS $$ " +
+                    "BEGIN " +
+                    "PERFORM pg_notify('" + VEHICLE_CHANGE_CHANNEL + "', " +
+                    "CASE WHEN TG_OP = 'DELETE' THEN OLD.vehicle_id ELSE NEW.vehicle_id END); " +
+                    "RETURN NULL; " +
+                    "END; $$ LANGUAGE plpgsql");
+            stmt.execute("DROP TRIGGER IF EXISTS vehicles_notify_change ON vehicles");
+            stmt.execute("DROP TRIGGER IF EXISTS vehicles_notify_price_change ON vehicles");
+            stmt.execute("CREATE TRIGGER vehicles_notify_price_change " +
+                    "AFTER UPDATE OF base_price_per_day ON vehicles FOR EACH ROW " +
+                    "WHEN (OLD.base_price_per_day IS DISTINCT FROM NEW.base_price_per_day) " +
+                    "EXECUTE FUNCTION notify_vehicle_change()");
+            stmt.execute("DROP TRIGGER IF EXISTS vehicles_notify_delete ON vehicles");
+            stmt.execute("CREATE TRIGGER vehicles_notify_delete " +
+                    "AFTER DELETE ON vehicles " +
+                    "FOR EACH ROW EXECUTE FUNCTION notify_vehicle_change()");
+
             // Insert default admin if not exists
             stmt.execute("INSERT INTO admin (username, password) " +
                     "VALUES ('admin', 'admin123') " +
@@ -71,10 +275,206 @@ public class DatabaseConnection {
             // Initialize sample vehicles
             initializeSampleVehicles();
 
-            System.out.println("Database initialized successfully");
+            EventLog.info("initializeDatabase").log("Database initialized successfully");
         } catch (SQLException e) {
-            System.err.println("Database initialization failed: " + e.getMessage());
-            e.printStackTrace();
+            EventLog.error("initializeDatabase").cause(e).log("Database initialization failed");
+        }
+    }
+
+    /**
+     * Bring a rentals table created by older versions up to the ledger layout and create
+     * the partial index that serves active-rental lookups
+     * @param stmt statement to run the queries on
+     * @throws SQLException if a query fails
+     */
+    private static void migrateRentalsToLedger(Statement stmt) throws SQLException {
+        stmt.execute("ALTER TABLE rentals " +
+                "ADD COLUMN IF NOT EXISTS rented_at TIMESTAMPTZ NOT NULL DEFAULT now(), " +
+                "ADD COLUMN IF NOT EXISTS returned_at TIMESTAMPTZ, " +
+                "ADD COLUMN IF NOT EXISTS price_per_day DECIMAL(10, 2), " +
+                "ADD COLUMN IF NOT EXISTS total_price DECIMAL(12, 2)");
+
+        // History must survive vehicle deletion, so the vehicle reference becomes nullable
+        boolean cascadesToNull;
+        try (ResultSet rs = stmt.executeQuery("SELECT confdeltype FROM pg_constraint " +
+                "WHERE conname = 'rentals_vehicle_id_fkey'")) {
+            cascadesToNull = rs.next() && "n".equals(rs.getString(1));
+        }
+        if (!cascadesToNull) {
+            stmt.execute("ALTER TABLE rentals ALTER COLUMN vehicle_id DROP NOT NULL");
+            stmt.execute("ALTER TABLE rentals DROP CONSTRAINT IF EXISTS rentals_vehicle_id_fkey");
+            stmt.execute("ALTER TABLE rentals ADD CONSTRAINT rentals_vehicle_id_fkey " +
+                    "FOREIGN KEY (vehicle_id) REFERENCES vehicles(vehicle_id) ON DELETE SET NULL");
+        }
+
+        boolean partitioned;
+        try (ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM pg_partitioned_table " +
+                "WHERE partrelid = 'rentals'::regclass)")) {
+            rs.next();
+            partitioned = rs.getBoolean(1);
+        }
+
+        // The old full index grows with history; only open rentals are looked up by vehicle
+        stmt.execute("DROP INDEX IF EXISTS idx_rentals_vehicle_customer");
+        if (partitioned) {
+            ensureRentalPartitions(stmt);
+            // Unique indexes on a partitioned table must include the partition key, so the
+            // one-open-rental-per-vehicle rule is left to the availability claim in rentVehicle
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_rentals_open_vehicle " +
+                    "ON rentals (vehicle_id, customer_id) WHERE returned_at IS NULL");
+        } else {
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_rentals_open_vehicle " +
+                    "ON rentals (vehicle_id) INCLUDE (customer_id) WHERE returned_at IS NULL");
+        }
+
+        // Serves per-customer history, newest first
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_rentals_customer_rented_at " +
+                "ON rentals (customer_id, rented_at DESC)");
+    }
+
+    /**
+     * Run statements once per database, in one transaction with recording them in
+     * schema_migrations. Instances starting together queue on the marker row, and the ones
+     * that lose find it taken and skip the statements.
+     * @param conn connection stmt belongs to
+     * @param stmt statement to run the queries on
+     * @param name unique name of the migration
+     * @param statements SQL to run the first time
+     * @throws SQLException if a query fails; the migration is then retried on the next start
+     */
+    private static void migrateOnce(Connection conn, Statement stmt, String name, String... statements)
+            throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            if (stmt.executeUpdate("INSERT INTO schema_migrations (name) VALUES ('" + name + "') " +
+                    "ON CONFLICT (name) DO NOTHING") == 1) {
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+                EventLog.info("initializeDatabase").with("migration", name).log("Migration applied");
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Create the report summary tables maintained by the rent and return statements, and fill
+     * them from the rentals ledger when they are first created
+     * @param conn connection stmt belongs to
+     * @param stmt statement to run the queries on
+     * @throws SQLException if a query fails
+     */
+    private static void createRentalSummaries(Connection conn, Statement stmt) throws SQLException {
+        // Creation and backfill commit together, so a half-filled summary is never kept
+        conn.setAutoCommit(false);
+        try {
+            boolean exists;
+            try (ResultSet rs = stmt.executeQuery("SELECT to_regclass('rental_daily_summary') IS NOT NULL")) {
+                rs.next();
+                exists = rs.getBoolean(1);
+            }
+
+            stmt.execute("CREATE TABLE IF NOT EXISTS rental_daily_summary (" +
+                    "day DATE NOT NULL, " +
+                    "vehicle_type VARCHAR(50) NOT NULL, " +
+                    "slot SMALLINT NOT NULL, " +
+                    "rentals INTEGER NOT NULL DEFAULT 0, " +
+                    "revenue DECIMAL(14, 2) NOT NULL DEFAULT 0, " +
+                    "returns INTEGER NOT NULL DEFAULT 0, " +
+                    "rented_hours DOUBLE PRECISION NOT NULL DEFAULT 0, " +
+                    "PRIMARY KEY (day, vehicle_type, slot)" +
+                    ")");
+            // No foreign keys: summaries outlive deleted vehicles, like the ledger
+            stmt.execute("CREATE TABLE IF NOT EXISTS rental_vehicle_summary (" +
+                    "vehicle_id VARCHAR(50) PRIMARY KEY, " +
+                    "vehicle_type VARCHAR(50) NOT NULL, " +
+                    "rentals INTEGER NOT NULL DEFAULT 0, " +
+                    "revenue DECIMAL(14, 2) NOT NULL DEFAULT 0, " +
+                    "rented_hours DOUBLE PRECISION NOT NULL DEFAULT 0, " +
+                    "last_rented_at TIMESTAMPTZ" +
+                    ")");
+            stmt.execute("CREATE TABLE IF NOT EXISTS rental_customer_summary (" +
+                    "customer_id VARCHAR(50) PRIMARY KEY, " +
+                    "rentals INTEGER NOT NULL DEFAULT 0, " +
+                    "revenue DECIMAL(14, 2) NOT NULL DEFAULT 0" +
+                    ")");
+
+            if (!exists) {
+                String slot = "(hashtext(r.vehicle_id) & " + (RentalReports.SUMMARY_SLOTS - 1) + ")";
+                String revenue = "coalesce(r.total_price, v.base_price_per_day * r.days)";
+                String hours = "extract(epoch FROM r.returned_at - r.rented_at) / 3600";
+                stmt.execute("INSERT INTO rental_daily_summary " +
+                        "(day, vehicle_type, slot, rentals, revenue, returns, rented_hours) " +
+                        "SELECT day, type, slot, sum(rentals), sum(revenue), sum(returns), sum(hours) FROM (" +
+                        "SELECT r.rented_at::date AS day, v.type, " + slot + " AS slot, 1 AS rentals, " +
+                        revenue + " AS revenue, 0 AS returns, 0::float8 AS hours " +
+                        "FROM rentals r JOIN vehicles v ON v.vehicle_id = r.vehicle_id " +
+                        "UNION ALL " +
+                        "SELECT day, type, slot, 0, 0, returns, rented_hours FROM (" +
+                        RentalReports.returnDaysSql(CLOSED_RENTALS_SQL) + ") closed_days" +
+                        ") activity GROUP BY day, type, slot");
+                // Filled with hours spread over the days already
+                stmt.execute("INSERT INTO schema_migrations (name) VALUES ('" + SPREAD_RENTED_HOURS + "') " +
+                        "ON CONFLICT (name) DO NOTHING");
+                stmt.execute("INSERT INTO rental_vehicle_summary " +
+                        "(vehicle_id, vehicle_type, rentals, revenue, rented_hours, last_rented_at) " +
+                        "SELECT r.vehicle_id, v.type, count(*), sum(" + revenue + "), " +
+                        "coalesce(sum(" + hours + "), 0), max(r.rented_at) " +
+                        "FROM rentals r JOIN vehicles v ON v.vehicle_id = r.vehicle_id " +
+                        "GROUP BY r.vehicle_id, v.type");
+                stmt.execute("INSERT INTO rental_customer_summary (customer_id, rentals, revenue) " +
+                        "SELECT r.customer_id, count(*), coalesce(sum(" + revenue + "), 0) " +
+                        "FROM rentals r LEFT JOIN vehicles v ON v.vehicle_id = r.vehicle_id " +
+                        "GROUP BY r.customer_id");
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Create monthly rentals partitions from the current month up to RENTAL_PARTITIONS_AHEAD
+     * months ahead, plus a default partition for anything outside them
+     * @param stmt statement to run the queries on
+     * @throws SQLException if a query fails
+     */
+    private static void ensureRentalPartitions(Statement stmt) throws SQLException {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= RENTAL_PARTITIONS_AHEAD; i++) {
+            LocalDate next = month.plusMonths(1);
+            stmt.execute(String.format("CREATE TABLE IF NOT EXISTS rentals_%d_%02d PARTITION OF rentals " +
+                            "FOR VALUES FROM ('%s') TO ('%s')",
+                    month.getYear(), month.getMonthValue(), month, next));
+            month = next;
+        }
+        stmt.execute("CREATE TABLE IF NOT EXISTS rentals_default PARTITION OF rentals DEFAULT");
+    }
+
+    /**
+     * Start a freshly created customer ID sequence above any existing "CUS<n>" IDs
+     * @param stmt statement to run the queries on
+     * @throws SQLException if a query fails
+     */
+    private static void alignCustomerIdSequence(Statement stmt) throws SQLException {
+        boolean used;
+        try (ResultSet rs = stmt.executeQuery("SELECT is_called FROM " + CustomerIdAllocator.SEQUENCE_NAME)) {
+            rs.next();
+            used = rs.getBoolean(1);
+        }
+
+        if (!used) {
+            stmt.execute("SELECT setval('" + CustomerIdAllocator.SEQUENCE_NAME + "', " +
+                    "COALESCE(MAX(CAST(SUBSTRING(customer_id FROM 4) AS BIGINT)), 0) + 1, false) " +
+                    "FROM customers WHERE customer_id ~ '^" + CustomerIdAllocator.PREFIX + "[0-9]+$'");
         }
     }
 
@@ -100,27 +500,31 @@ public class DatabaseConnection {
                     {"V004", "Car", "Mahindra", "Thar", "150.0"}
                 };
 
-                // Insert sample vehicles
-                for (String[] vehicle : vehiclesData) {
-                    String sql = String.format(
+                // Insert sample vehicles in one batch
+                try (PreparedStatement insert = conn.prepareStatement(
                         "INSERT INTO vehicles (vehicle_id, type, brand, model, base_price_per_day, is_available) " +
-                        "VALUES ('%s', '%s', '%s', '%s', %s, TRUE) " +
-                        "ON CONFLICT (vehicle_id) DO NOTHING",
-                        vehicle[0], vehicle[1], vehicle[2], vehicle[3], vehicle[4]
-                    );
-                    stmt.execute(sql);
+                        "VALUES (?, ?, ?, ?, ?, TRUE) " +
+                        "ON CONFLICT (vehicle_id) DO NOTHING")) {
+                    for (String[] vehicle : vehiclesData) {
+                        insert.setString(1, vehicle[0]);
+                        insert.setString(2, vehicle[1]);
+                        insert.setString(3, vehicle[2]);
+                        insert.setString(4, vehicle[3]);
+                        insert.setDouble(5, Double.parseDouble(vehicle[4]));
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
                 }
 
-                System.out.println("Sample vehicles initialized successfully");
+                EventLog.info("initializeSampleVehicles").log("Sample vehicles initialized successfully");
             }
         } catch (SQLException e) {
-            System.err.println("Sample vehicles initialization failed: " + e.getMessage());
-            e.printStackTrace();
+            EventLog.error("initializeSampleVehicles").cause(e).log("Sample vehicles initialization failed");
         }
     }
 
     /**
-     * Close resources safely
+     * Close resources safely, returning pooled connections to the pool
      * @param connection Connection to close
      */
     public static void closeConnection(Connection connection) {
@@ -128,7 +532,7 @@ public class DatabaseConnection {
             try {
                 connection.close();
             } catch (SQLException e) {
-                System.err.println("Error closing connection: " + e.getMessage());
+                EventLog.warn("closeConnection").cause(e).log("Error closing connection");
             }
         }
     }
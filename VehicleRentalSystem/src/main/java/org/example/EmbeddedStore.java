@@ -0,0 +1,869 @@
+package org.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * In-process storage for offices without a database server. Vehicles, customers, admin
+ * accounts and rentals live in concurrent maps; every change is first appended to a
+ * write-ahead log file, which is replayed when the store is opened.
+ * <p>
+ * Reads never block. Writes are serialized on the store, so checks such as "the vehicle is
+ * available" and the change they guard are atomic, like the single-statement updates of the
+ * PostgreSQL repositories. Stored objects are never modified; a change replaces them, and
+ * callers always get copies.
+ * <p>
+ * A log record is {@code [int length][int crc32][payload]}, the payload being an opcode byte
+ * followed by its fields. Appends reach the operating system before a write returns, so they
+ * survive a process crash; with {@code fsync} they are also forced to disk. A torn or corrupt
+ * record at the end of the log, left by a crash mid-append, is cut off on open. Once the log
+ * holds many more records than live rows it is rewritten on open with one record per row.
+ * <p>
+ * Vehicle versions are not logged with each change; replaying the changes bumps them again.
+ * Compaction, which drops the history, records the versions reached.
+ * <p>
+ * Reservations, report summaries and bulk imports are PostgreSQL features and have no
+ * embedded counterpart; rentals here do not book the vehicle in advance.
+ */
+final class EmbeddedStore {
+    // Record opcodes; existing logs depend on these values
+    private static final byte ADD_VEHICLE = 1;
+    private static final byte UPDATE_PRICE = 2;
+    private static final byte DELETE_VEHICLE = 3;
+    private static final byte ADD_CUSTOMER = 4;
+    private static final byte UPDATE_PASSWORD = 5;
+    private static final byte SET_ADMIN = 6;
+    private static final byte RENT = 7;
+    private static final byte RETURN = 8;
+    private static final byte VEHICLE_VERSION = 9;
+
+    private static final int HEADER_BYTES = 8;
+    private static final long OPEN = -1;
+
+    // Compaction runs on open when the log has more than twice the live rows plus this many records
+    private static final int COMPACTION_SLACK = 1000;
+
+    // Same SQLSTATEs PostgreSQL reports, so callers handle both stores alike
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final String FOREIGN_KEY_VIOLATION = "23503";
+    private static final String IO_ERROR = "58030";
+
+    // Seeded into an empty store, like DatabaseConnection.initializeDatabase does
+    private static final String DEFAULT_ADMIN_USERNAME = "admin";
+    private static final String DEFAULT_ADMIN_PASSWORD = "admin123";
+
+    private final Path file;
+    private final boolean fsync;
+
+    // Guards the log, lastRentalId and every map update
+    private final Object writeLock = new Object();
+    private FileChannel log;
+    private int lastRentalId;
+
+    private final ConcurrentSkipListMap<String, Vehicle> vehicles = new ConcurrentSkipListMap<>();
+    private final Map<String, Customer> customers = new ConcurrentHashMap<>();
+    private final Map<String, Admin> admins = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, RentalRow> rentals = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Integer, RentalRow> openRentals = new ConcurrentSkipListMap<>();
+    private final Map<String, RentalRow> openRentalsByVehicle = new ConcurrentHashMap<>();
+    // Rental IDs per customer, newest first
+    private final Map<String, Deque<Integer>> rentalIdsByCustomer = new ConcurrentHashMap<>();
+    private final AtomicLong nextCustomerNumber = new AtomicLong(1);
+
+    private final VehicleRepository vehicleRepository = new Vehicles();
+    private final CustomerRepository customerRepository = new Customers();
+    private final RentalRepository rentalRepository = new Rentals();
+
+    /**
+     * Open a store, creating the log file if it does not exist and replaying it otherwise
+     * @param file write-ahead log
+     * @param fsync force every append to disk before returning
+     * @throws IOException if the log cannot be read or written
+     */
+    EmbeddedStore(Path file, boolean fsync) throws IOException {
+        this.file = file;
+        this.fsync = fsync;
+
+        long started = Metrics.start();
+        synchronized (writeLock) {
+            int records = replay();
+            int live = admins.size() + customers.size() + vehicles.size() + rentals.size();
+            if (records > 2 * live + COMPACTION_SLACK) {
+                compact();
+                EventLog.info("embeddedStore").with("file", file.toString()).with("records", records)
+                        .with("live", live).log("Write-ahead log compacted");
+            }
+        }
+        if (admins.isEmpty()) {
+            try {
+                updateAdmin(DEFAULT_ADMIN_USERNAME, DEFAULT_ADMIN_PASSWORD);
+            } catch (SQLException e) {
+                throw new IOException("Error seeding the admin account: " + e.getMessage(), e);
+            }
+        }
+        EventLog.info("embeddedStore").with("file", file.toString()).with("vehicles", vehicles.size())
+                .with("customers", customers.size()).with("rentals", rentals.size()).elapsed(started)
+                .log("Embedded store opened");
+    }
+
+    VehicleRepository getVehicleRepository() {
+        return vehicleRepository;
+    }
+
+    CustomerRepository getCustomerRepository() {
+        return customerRepository;
+    }
+
+    RentalRepository getRentalRepository() {
+        return rentalRepository;
+    }
+
+    /**
+     * Flush and close the log. Later writes fail.
+     */
+    void close() {
+        synchronized (writeLock) {
+            try {
+                log.force(true);
+                log.close();
+            } catch (IOException e) {
+                EventLog.warn("embeddedStore").with("file", file.toString()).cause(e)
+                        .log("Error closing write-ahead log");
+            }
+        }
+    }
+
+    private void updateAdmin(String username, String password) throws SQLException {
+        synchronized (writeLock) {
+            append(new Record(SET_ADMIN).string(username).string(password));
+            applySetAdmin(username, password);
+        }
+    }
+
+    // Joins a rental with its vehicle and customer as they are now, like RENTALS_BASE_QUERY
+    private Rental toRental(RentalRow row) {
+        Vehicle current = row.vehicleId == null ? null : vehicles.get(row.vehicleId);
+        Vehicle vehicle = current == null ? new Vehicle(null, null, null, null, 0)
+                : new Vehicle(current.getVehicleId(), current.getType(), current.getBrand(), current.getModel(),
+                current.getBasePricePerDay());
+        if (row.returnedAt == OPEN) {
+            vehicle.rent(); // Set as rented
+        }
+        if (current != null) {
+            vehicle.setVersion(current.getVersion());
+        }
+        Customer customer = copy(customers.get(row.customerId));
+        return new Rental(row.rentalId, vehicle, customer, row.days, time(row.rentedAt),
+                row.returnedAt == OPEN ? null : time(row.returnedAt), row.totalPrice);
+    }
+
+    private List<Rental> toRentals(Collection<RentalRow> rows, int limit) {
+        List<Rental> result = new ArrayList<>();
+        for (RentalRow row : rows) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(toRental(row));
+        }
+        return result;
+    }
+
+    private static OffsetDateTime time(long epochMillis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    // ---- State changes, shared by live writes and replay
+
+    private void applyAddVehicle(String vehicleId, String type, String brand, String model, double price) {
+        vehicles.put(vehicleId, new Vehicle(vehicleId, type, brand, model, price));
+    }
+
+    private void applyUpdatePrice(String vehicleId, double newPrice) {
+        Vehicle vehicle = vehicles.get(vehicleId);
+        if (vehicle != null) {
+            Vehicle updated = copy(vehicle);
+            updated.setBasePricePerDay(newPrice);
+            updated.setVersion(vehicle.getVersion() + 1);
+            vehicles.put(vehicleId, updated);
+        }
+    }
+
+    private void applyVehicleVersion(String vehicleId, long version) {
+        Vehicle vehicle = vehicles.get(vehicleId);
+        if (vehicle != null) {
+            Vehicle versioned = copy(vehicle);
+            versioned.setVersion(version);
+            vehicles.put(vehicleId, versioned);
+        }
+    }
+
+    // Closed rentals keep their history without the vehicle, like ON DELETE SET NULL.
+    // Deletes are rare admin actions, so the scan over all rentals is acceptable.
+    private void applyDeleteVehicle(String vehicleId) {
+        vehicles.remove(vehicleId);
+        for (RentalRow row : rentals.values()) {
+            if (vehicleId.equals(row.vehicleId)) {
+                rentals.put(row.rentalId, row.withoutVehicle());
+            }
+        }
+    }
+
+    private void applyAddCustomer(String customerId, String name, String password) {
+        customers.put(customerId, new Customer(customerId, name, password));
+        if (customerId.startsWith(CustomerIdAllocator.PREFIX)) {
+            try {
+                long number = Long.parseLong(customerId.substring(CustomerIdAllocator.PREFIX.length()));
+                nextCustomerNumber.accumulateAndGet(number + 1, Math::max);
+            } catch (NumberFormatException e) {
+                // Not an allocated ID, so it cannot collide with one
+            }
+        }
+    }
+
+    private void applyUpdatePassword(String customerId, String newPassword) {
+        Customer customer = customers.get(customerId);
+        if (customer != null) {
+            customers.put(customerId, new Customer(customerId, customer.getName(), newPassword));
+        }
+    }
+
+    private void applySetAdmin(String username, String password) {
+        admins.put(username, new Admin(username, password));
+    }
+
+    private void applyRent(RentalRow row) {
+        rentals.put(row.rentalId, row);
+        lastRentalId = Math.max(lastRentalId, row.rentalId);
+        rentalIdsByCustomer.computeIfAbsent(row.customerId, id -> new ConcurrentLinkedDeque<>())
+                .addFirst(row.rentalId);
+        if (row.returnedAt == OPEN) {
+            openRentals.put(row.rentalId, row);
+            openRentalsByVehicle.put(row.vehicleId, row);
+            Vehicle vehicle = vehicles.get(row.vehicleId);
+            if (vehicle != null) {
+                Vehicle rented = copy(vehicle);
+                rented.rent();
+                rented.setVersion(vehicle.getVersion() + 1);
+                vehicles.put(row.vehicleId, rented);
+            }
+        }
+    }
+
+    private void applyReturn(String vehicleId, long returnedAt) {
+        RentalRow open = openRentalsByVehicle.remove(vehicleId);
+        if (open != null) {
+            RentalRow closed = open.closedAt(returnedAt);
+            rentals.put(closed.rentalId, closed);
+            openRentals.remove(closed.rentalId);
+        }
+        Vehicle vehicle = vehicles.get(vehicleId);
+        if (vehicle != null) {
+            Vehicle returned = copy(vehicle);
+            returned.returnVehicle();
+            returned.setVersion(vehicle.getVersion() + 1);
+            vehicles.put(vehicleId, returned);
+        }
+    }
+
+    // ---- Log
+
+    // Replays every intact record and cuts off a torn or corrupt tail.
+    // Leaves the log open for appending and returns the number of records replayed.
+    private int replay() throws IOException {
+        log = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = log.size();
+        long valid = 0;
+        int records = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (size - valid >= HEADER_BYTES) {
+                int length = in.readInt();
+                int crc = in.readInt();
+                if (length <= 0 || length > size - valid - HEADER_BYTES) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 check = new CRC32();
+                check.update(payload);
+                if ((int) check.getValue() != crc) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload)));
+                valid += HEADER_BYTES + length;
+                records++;
+            }
+        }
+
+        if (valid < size) {
+            EventLog.warn("embeddedStore").with("file", file.toString()).with("offset", valid)
+                    .with("bytes", size - valid).log("Discarding torn or corrupt end of write-ahead log");
+            log.truncate(valid);
+        }
+        log.position(valid);
+        return records;
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        byte op = in.readByte();
+        switch (op) {
+            case ADD_VEHICLE:
+                applyAddVehicle(readString(in), readString(in), readString(in), readString(in), in.readDouble());
+                break;
+            case UPDATE_PRICE:
+                applyUpdatePrice(readString(in), in.readDouble());
+                break;
+            case DELETE_VEHICLE:
+                applyDeleteVehicle(readString(in));
+                break;
+            case ADD_CUSTOMER:
+                applyAddCustomer(readString(in), readString(in), readString(in));
+                break;
+            case UPDATE_PASSWORD:
+                applyUpdatePassword(readString(in), readString(in));
+                break;
+            case SET_ADMIN:
+                applySetAdmin(readString(in), readString(in));
+                break;
+            case RENT:
+                applyRent(new RentalRow(in.readInt(), readString(in), readString(in), in.readInt(), in.readDouble(),
+                        in.readDouble(), in.readLong(), in.readLong()));
+                break;
+            case RETURN:
+                applyReturn(readString(in), in.readLong());
+                break;
+            case VEHICLE_VERSION:
+                applyVehicleVersion(readString(in), in.readLong());
+                break;
+            default:
+                throw new IOException("Unknown record type " + op + " in " + file);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // Appends one record. A failed append is cut off again, so the log never has a torn record
+    // in the middle.
+    private void append(Record record) throws SQLException {
+        ByteBuffer buffer = ByteBuffer.wrap(record.toBytes());
+        long position = -1;
+        try {
+            position = log.position();
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            if (fsync) {
+                log.force(false);
+            }
+        } catch (IOException e) {
+            if (position >= 0) {
+                try {
+                    log.truncate(position);
+                    log.position(position);
+                } catch (IOException ex) {
+                    e.addSuppressed(ex);
+                }
+            }
+            throw new SQLException("Error writing to " + file + ": " + e.getMessage(), IO_ERROR, e);
+        }
+    }
+
+    // Rewrites the log with one record per live row. The new log is synced and then renamed over
+    // the old one, so a crash leaves one of the two complete.
+    private void compact() throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileOutputStream fileOut = new FileOutputStream(compacted.toFile());
+             BufferedOutputStream out = new BufferedOutputStream(fileOut, 1 << 16)) {
+            for (Admin admin : admins.values()) {
+                out.write(new Record(SET_ADMIN).string(admin.getUsername()).string(admin.getPassword()).toBytes());
+            }
+            for (Customer customer : customers.values()) {
+                out.write(customerRecord(customer).toBytes());
+            }
+            for (Vehicle vehicle : vehicles.values()) {
+                out.write(vehicleRecord(vehicle).toBytes());
+            }
+            for (RentalRow row : rentals.values()) {
+                out.write(rentalRecord(row).toBytes());
+            }
+            // Last, so they override the bumps made by replaying the open rentals
+            for (Vehicle vehicle : vehicles.values()) {
+                if (vehicle.getVersion() != 0) {
+                    out.write(new Record(VEHICLE_VERSION).string(vehicle.getVehicleId())
+                            .counter(vehicle.getVersion()).toBytes());
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+
+        log.close();
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = FileChannel.open(file, StandardOpenOption.WRITE);
+        log.position(log.size());
+    }
+
+    private static Record vehicleRecord(Vehicle vehicle) {
+        return new Record(ADD_VEHICLE).string(vehicle.getVehicleId()).string(vehicle.getType())
+                .string(vehicle.getBrand()).string(vehicle.getModel()).number(vehicle.getBasePricePerDay());
+    }
+
+    private static Record customerRecord(Customer customer) {
+        return new Record(ADD_CUSTOMER).string(customer.getCustomerId()).string(customer.getName())
+                .string(customer.getPassword());
+    }
+
+    private static Record rentalRecord(RentalRow row) {
+        return new Record(RENT).integer(row.rentalId).string(row.vehicleId).string(row.customerId)
+                .integer(row.days).number(row.pricePerDay).number(row.totalPrice).time(row.rentedAt)
+                .time(row.returnedAt);
+    }
+
+    private static Vehicle copy(Vehicle vehicle) {
+        return vehicle.copy();
+    }
+
+    private static List<Vehicle> copies(Collection<Vehicle> vehicles) {
+        List<Vehicle> copies = new ArrayList<>(vehicles.size());
+        for (Vehicle vehicle : vehicles) {
+            copies.add(copy(vehicle));
+        }
+        return copies;
+    }
+
+    private static boolean matches(Vehicle vehicle, long expectedVersion) {
+        return expectedVersion == VehicleRepository.ANY_VERSION || vehicle.getVersion() == expectedVersion;
+    }
+
+    private static Customer copy(Customer customer) {
+        return new Customer(customer.getCustomerId(), customer.getName(), customer.getPassword());
+    }
+
+    /**
+     * Vehicles, with rented ones marked unavailable
+     */
+    private final class Vehicles implements VehicleRepository {
+        @Override
+        public List<Vehicle> findAll() {
+            return copies(vehicles.values());
+        }
+
+        @Override
+        public List<Vehicle> findByIds(Collection<String> vehicleIds) {
+            List<Vehicle> found = new ArrayList<>(vehicleIds.size());
+            for (String vehicleId : vehicleIds) {
+                Vehicle vehicle = vehicles.get(vehicleId);
+                if (vehicle != null) {
+                    found.add(copy(vehicle));
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public List<Vehicle> find(VehicleQuery query) {
+            List<Vehicle> found = new ArrayList<>();
+            for (Vehicle vehicle : vehicles.values()) {
+                if (query.matches(vehicle)) {
+                    found.add(vehicle);
+                }
+            }
+            found.sort(query.comparator());
+            if (query.getLimit() > 0 && found.size() > query.getLimit()) {
+                found = found.subList(0, query.getLimit());
+            }
+            return copies(found);
+        }
+
+        @Override
+        public List<Vehicle> findPage(String afterVehicleId, int limit) {
+            List<Vehicle> page = new ArrayList<>(Math.min(limit, 1024));
+            Collection<Vehicle> after = afterVehicleId == null ? vehicles.values()
+                    : vehicles.tailMap(afterVehicleId, false).values();
+            for (Vehicle vehicle : after) {
+                if (page.size() >= limit) {
+                    break;
+                }
+                page.add(copy(vehicle));
+            }
+            return page;
+        }
+
+        @Override
+        public Stream<Vehicle> stream() {
+            return vehicles.values().stream().map(EmbeddedStore::copy);
+        }
+
+        @Override
+        public int count() {
+            return vehicles.size();
+        }
+
+        @Override
+        public void add(Vehicle vehicle) throws SQLException {
+            synchronized (writeLock) {
+                if (vehicles.containsKey(vehicle.getVehicleId())) {
+                    throw new SQLException("Vehicle " + vehicle.getVehicleId() + " already exists", UNIQUE_VIOLATION);
+                }
+                append(vehicleRecord(vehicle));
+                applyAddVehicle(vehicle.getVehicleId(), vehicle.getType(), vehicle.getBrand(), vehicle.getModel(),
+                        vehicle.getBasePricePerDay());
+            }
+        }
+
+        @Override
+        public UpdateOutcome updatePrice(String vehicleId, double newPrice, long expectedVersion)
+                throws SQLException {
+            synchronized (writeLock) {
+                Vehicle vehicle = vehicles.get(vehicleId);
+                if (vehicle == null) {
+                    return new UpdateOutcome(UpdateResult.NOT_FOUND, null);
+                }
+                if (!matches(vehicle, expectedVersion)) {
+                    return new UpdateOutcome(UpdateResult.CONFLICT, copy(vehicle));
+                }
+                append(new Record(UPDATE_PRICE).string(vehicleId).number(newPrice));
+                applyUpdatePrice(vehicleId, newPrice);
+                return new UpdateOutcome(UpdateResult.UPDATED, copy(vehicles.get(vehicleId)));
+            }
+        }
+
+        @Override
+        public DeleteResult delete(String vehicleId, long expectedVersion) throws SQLException {
+            synchronized (writeLock) {
+                Vehicle vehicle = vehicles.get(vehicleId);
+                if (vehicle == null) {
+                    return DeleteResult.NOT_FOUND;
+                }
+                if (!vehicle.isAvailable()) {
+                    return DeleteResult.RENTED;
+                }
+                if (!matches(vehicle, expectedVersion)) {
+                    return DeleteResult.CONFLICT;
+                }
+                append(new Record(DELETE_VEHICLE).string(vehicleId));
+                applyDeleteVehicle(vehicleId);
+                return DeleteResult.DELETED;
+            }
+        }
+    }
+
+    /**
+     * Customer and admin accounts
+     */
+    private final class Customers implements CustomerRepository {
+        @Override
+        public void add(Customer customer) throws SQLException {
+            synchronized (writeLock) {
+                if (customers.containsKey(customer.getCustomerId())) {
+                    throw new SQLException("Customer " + customer.getCustomerId() + " already exists", UNIQUE_VIOLATION);
+                }
+                append(customerRecord(customer));
+                applyAddCustomer(customer.getCustomerId(), customer.getName(), customer.getPassword());
+            }
+        }
+
+        @Override
+        public Customer findById(String customerId) {
+            Customer customer = customers.get(customerId);
+            return customer == null ? null : copy(customer);
+        }
+
+        @Override
+        public List<Customer> findByName(String name) {
+            List<Customer> found = new ArrayList<>();
+            for (Customer customer : customers.values()) {
+                if (customer.getName() != null && customer.getName().equalsIgnoreCase(name)) {
+                    found.add(copy(customer));
+                }
+            }
+            found.sort(Comparator.comparing(Customer::getCustomerId));
+            return found;
+        }
+
+        @Override
+        public List<Customer> findAll() {
+            List<Customer> all = new ArrayList<>(customers.size());
+            for (Customer customer : customers.values()) {
+                all.add(copy(customer));
+            }
+            return all;
+        }
+
+        @Override
+        public boolean updatePassword(String customerId, String newPassword) throws SQLException {
+            synchronized (writeLock) {
+                if (!customers.containsKey(customerId)) {
+                    return false;
+                }
+                append(new Record(UPDATE_PASSWORD).string(customerId).string(newPassword));
+                applyUpdatePassword(customerId, newPassword);
+                return true;
+            }
+        }
+
+        // IDs continue after the highest one in the store; unused IDs are not remembered across restarts
+        @Override
+        public String nextId() {
+            return CustomerIdAllocator.PREFIX + nextCustomerNumber.getAndIncrement();
+        }
+
+        @Override
+        public Admin findAdmin(String username) {
+            Admin admin = admins.get(username);
+            return admin == null ? null : new Admin(admin.getUsername(), admin.getPassword());
+        }
+
+        @Override
+        public boolean updateAdminPassword(String username, String newPassword) throws SQLException {
+            synchronized (writeLock) {
+                if (!admins.containsKey(username)) {
+                    return false;
+                }
+                updateAdmin(username, newPassword);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Rentals, open and closed
+     */
+    private final class Rentals implements RentalRepository {
+        @Override
+        public RentOutcome rent(String vehicleId, String customerId, int days, BigDecimal priceFactor,
+                                long expectedVersion) throws SQLException {
+            synchronized (writeLock) {
+                Vehicle vehicle = vehicles.get(vehicleId);
+                if (vehicle == null) {
+                    return new RentOutcome(RentResult.NOT_FOUND);
+                }
+                if (!vehicle.isAvailable()) {
+                    return new RentOutcome(RentResult.ALREADY_RENTED);
+                }
+                if (!matches(vehicle, expectedVersion)) {
+                    return new RentOutcome(RentResult.CONFLICT);
+                }
+                if (!customers.containsKey(customerId)) {
+                    throw new SQLException("Customer " + customerId + " does not exist", FOREIGN_KEY_VIOLATION);
+                }
+
+                // Snapshot the price at claim time, rounded like round(price * factor, 2) in SQL
+                double pricePerDay = vehicle.getBasePricePerDay();
+                double totalPrice = BigDecimal.valueOf(pricePerDay).multiply(priceFactor)
+                        .setScale(2, RoundingMode.HALF_UP).doubleValue();
+                RentalRow row = new RentalRow(lastRentalId + 1, vehicleId, customerId, days, pricePerDay, totalPrice,
+                        System.currentTimeMillis(), OPEN);
+                append(rentalRecord(row));
+                applyRent(row);
+                return new RentOutcome(RentResult.RENTED, row.rentalId, null,
+                        vehicles.get(vehicleId).getVersion());
+            }
+        }
+
+        @Override
+        public ReturnOutcome returnVehicle(String vehicleId, long expectedVersion) throws SQLException {
+            synchronized (writeLock) {
+                Vehicle vehicle = vehicles.get(vehicleId);
+                if (vehicle == null) {
+                    return new ReturnOutcome(ReturnResult.NOT_FOUND);
+                }
+                if (vehicle.isAvailable()) {
+                    return new ReturnOutcome(ReturnResult.NOT_RENTED);
+                }
+                if (!matches(vehicle, expectedVersion)) {
+                    return new ReturnOutcome(ReturnResult.CONFLICT);
+                }
+                long now = System.currentTimeMillis();
+                append(new Record(RETURN).string(vehicleId).time(now));
+                applyReturn(vehicleId, now);
+                return new ReturnOutcome(ReturnResult.RETURNED, vehicles.get(vehicleId).getVersion());
+            }
+        }
+
+        @Override
+        public ReturnResult returnVehicleFor(String customerId, String vehicleId) throws SQLException {
+            synchronized (writeLock) {
+                RentalRow open = openRentalsByVehicle.get(vehicleId);
+                if (open == null || !open.customerId.equals(customerId)) {
+                    return vehicles.containsKey(vehicleId) ? ReturnResult.NOT_RENTED : ReturnResult.NOT_FOUND;
+                }
+                long now = System.currentTimeMillis();
+                append(new Record(RETURN).string(vehicleId).time(now));
+                applyReturn(vehicleId, now);
+                return ReturnResult.RETURNED;
+            }
+        }
+
+        @Override
+        public List<Rental> findOpen() {
+            return toRentals(openRentals.values(), Integer.MAX_VALUE);
+        }
+
+        @Override
+        public List<Rental> findOpenPage(int afterRentalId, int limit) {
+            return toRentals(openRentals.tailMap(afterRentalId, false).values(), limit);
+        }
+
+        @Override
+        public List<Rental> findByCustomer(String customerId) {
+            List<Rental> history = new ArrayList<>();
+            Deque<Integer> rentalIds = rentalIdsByCustomer.get(customerId);
+            if (rentalIds != null) {
+                for (Integer rentalId : rentalIds) {
+                    history.add(toRental(rentals.get(rentalId)));
+                }
+            }
+            return history;
+        }
+
+        @Override
+        public Stream<Rental> streamOpen() {
+            return openRentals.values().stream().map(EmbeddedStore.this::toRental);
+        }
+
+        @Override
+        public int countOpen() {
+            return openRentals.size();
+        }
+    }
+
+    /**
+     * One stored rental; replaced, never modified
+     */
+    private static final class RentalRow {
+        final int rentalId;
+        final String vehicleId;
+        final String customerId;
+        final int days;
+        final double pricePerDay;
+        final double totalPrice;
+        final long rentedAt;
+        final long returnedAt;
+
+        RentalRow(int rentalId, String vehicleId, String customerId, int days, double pricePerDay,
+                  double totalPrice, long rentedAt, long returnedAt) {
+            this.rentalId = rentalId;
+            this.vehicleId = vehicleId;
+            this.customerId = customerId;
+            this.days = days;
+            this.pricePerDay = pricePerDay;
+            this.totalPrice = totalPrice;
+            this.rentedAt = rentedAt;
+            this.returnedAt = returnedAt;
+        }
+
+        RentalRow closedAt(long time) {
+            return new RentalRow(rentalId, vehicleId, customerId, days, pricePerDay, totalPrice, rentedAt, time);
+        }
+
+        RentalRow withoutVehicle() {
+            return new RentalRow(rentalId, null, customerId, days, pricePerDay, totalPrice, rentedAt, returnedAt);
+        }
+    }
+
+    /**
+     * A log record being encoded: header placeholder, opcode, then the fields in order
+     */
+    private static final class Record {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Record(byte op) {
+            try {
+                out.writeLong(0);
+                out.writeByte(op);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // Cannot happen writing to memory
+            }
+        }
+
+        Record string(String value) {
+            try {
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    out.writeUTF(value);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        Record integer(int value) {
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        Record number(double value) {
+            try {
+                out.writeDouble(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        Record time(long value) {
+            return counter(value);
+        }
+
+        Record counter(long value) {
+            try {
+                out.writeLong(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        // The encoded record with its length and checksum filled in
+        byte[] toBytes() {
+            byte[] record = bytes.toByteArray();
+            int length = record.length - HEADER_BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(record, HEADER_BYTES, length);
+            ByteBuffer header = ByteBuffer.wrap(record);
+            header.putInt(0, length);
+            header.putInt(4, (int) crc.getValue());
+            return record;
+        }
+    }
+}
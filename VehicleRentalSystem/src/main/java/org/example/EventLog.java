@@ -0,0 +1,524 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured, leveled, asynchronous event log for the service layer.
+ * <p>
+ * Callers build an event in a reusable per-thread entry, copy it into a preallocated slot of a
+ * ring buffer and return; a single background thread formats the events as logfmt lines and
+ * writes them, so no caller ever waits on the console or a file lock. Slots are claimed
+ * lock-free (a bounded MPSC queue with per-slot sequence numbers) only once the event is
+ * complete, so an event abandoned halfway, e.g. because building a field threw, never holds up
+ * the writer. Logging an event with a handful of fields allocates nothing beyond boxing of
+ * object field values. When the buffer is full new events are dropped and counted rather than
+ * blocking the caller.
+ * <p>
+ * Every event is built the same way and must end with {@link Entry#log}:
+ * <pre>
+ * EventLog.info("rentVehicle").with("vehicleId", id).elapsed(started).log("Vehicle rented");
+ * </pre>
+ * Configured with system properties: log.level (DEBUG, INFO, WARN, ERROR; default INFO),
+ * log.file (default: standard out, WARN and ERROR to standard error), log.maxBytes per file
+ * before rotation (10 MB), log.maxFiles rotated files kept (5) and log.bufferSize (8192 events).
+ */
+final class EventLog {
+
+    enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static final int MAX_FIELDS = 8;
+    private static final long MAX_PARK_NANOS = 10_000_000L;
+
+    private static final EventLog INSTANCE = new EventLog(
+            parseLevel(System.getProperty("log.level", "INFO")),
+            Integer.getInteger("log.bufferSize", 8192),
+            createSink(System.getProperty("log.file"),
+                    Long.getLong("log.maxBytes", 10L * 1024 * 1024),
+                    Integer.getInteger("log.maxFiles", 5)));
+
+    // Returned when an event is below the level or logging has stopped; ignores everything
+    private static final Entry DISCARD = new Entry(-1);
+
+    // Entry each thread builds its events in; replaced when one is still being built
+    private static final ThreadLocal<Entry> DRAFTS = ThreadLocal.withInitial(() -> new Entry(-1));
+
+    private final Level threshold;
+    private final Entry[] ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Sink sink;
+    private final Thread writer;
+    private volatile boolean writerParked;
+    private volatile boolean stopping;
+
+    private EventLog(Level threshold, int bufferSize, Sink sink) {
+        this.threshold = threshold;
+        int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, bufferSize - 1)) << 1);
+        this.ring = new Entry[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Entry(i);
+        }
+        this.mask = capacity - 1;
+        this.sink = sink;
+        this.writer = new Thread(this::drainLoop, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "event-log-shutdown"));
+    }
+
+    static Entry debug(String operation) {
+        return INSTANCE.begin(Level.DEBUG, operation);
+    }
+
+    static Entry info(String operation) {
+        return INSTANCE.begin(Level.INFO, operation);
+    }
+
+    static Entry warn(String operation) {
+        return INSTANCE.begin(Level.WARN, operation);
+    }
+
+    static Entry error(String operation) {
+        return INSTANCE.begin(Level.ERROR, operation);
+    }
+
+    static boolean isEnabled(Level level) {
+        return level.compareTo(INSTANCE.threshold) >= 0;
+    }
+
+    /**
+     * @return events dropped so far because the buffer was full
+     */
+    static long droppedCount() {
+        return INSTANCE.dropped.get();
+    }
+
+    /**
+     * Write out every event logged so far and close the sink. Later events are dropped.
+     */
+    static void shutdown() {
+        INSTANCE.stop();
+    }
+
+    private Entry begin(Level level, String operation) {
+        if (level.compareTo(threshold) < 0 || stopping) {
+            return DISCARD;
+        }
+        Entry draft = DRAFTS.get();
+        if (draft.owner != null) {
+            // Either abandoned without log() or still being built by a caller further up the
+            // stack, e.g. while computing one of its fields; leave it to that caller
+            draft = new Entry(-1);
+            DRAFTS.set(draft);
+        }
+        draft.start(this, level, operation);
+        return draft;
+    }
+
+    // Called by Entry.log with a complete event: copy it into a free slot and hand it to the writer
+    private void publish(Entry draft) {
+        if (stopping) {
+            return;
+        }
+        while (true) {
+            long position = claimed.get();
+            Entry slot = ring[(int) position & mask];
+            long sequence = slot.sequence;
+            if (sequence == position) {
+                if (claimed.compareAndSet(position, position + 1)) {
+                    slot.copyFrom(draft);
+                    slot.sequence = position + 1;
+                    if (writerParked && slot.level.compareTo(Level.WARN) >= 0) {
+                        LockSupport.unpark(writer);
+                    }
+                    return;
+                }
+            } else if (sequence < position) {
+                dropped.incrementAndGet();
+                LockSupport.unpark(writer);
+                return;
+            }
+            // Another producer took this position first; retry with the next one
+        }
+    }
+
+    private void drainLoop() {
+        long position = 0;
+        long reportedDrops = 0;
+        long parkNanos = 1000;
+        StringBuilder line = new StringBuilder(256);
+        while (true) {
+            Entry slot = ring[(int) position & mask];
+            if (slot.sequence == position + 1) {
+                line.setLength(0);
+                slot.format(line);
+                Level level = slot.level;
+                slot.clear();
+                slot.sequence = position + ring.length;
+                position++;
+                write(level, line);
+                parkNanos = 1000;
+                continue;
+            }
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                line.setLength(0);
+                line.append(Instant.ofEpochMilli(System.currentTimeMillis())).append(" WARN eventLog msg=\"Buffer full, dropped ")
+                        .append(drops - reportedDrops).append(" events\"");
+                write(Level.WARN, line);
+                reportedDrops = drops;
+            }
+            flush();
+            if (stopping && claimed.get() == position) {
+                return;
+            }
+            writerParked = true;
+            if (slot.sequence != position + 1) {
+                LockSupport.parkNanos(parkNanos);
+            }
+            writerParked = false;
+            parkNanos = Math.min(MAX_PARK_NANOS, parkNanos * 2);
+        }
+    }
+
+    private void write(Level level, CharSequence line) {
+        try {
+            sink.write(level, line);
+        } catch (IOException e) {
+            // Nowhere better to report a broken log sink
+            System.err.println("Event log write failed: " + e.getMessage());
+        }
+    }
+
+    private void flush() {
+        try {
+            sink.flush();
+        } catch (IOException e) {
+            System.err.println("Event log flush failed: " + e.getMessage());
+        }
+    }
+
+    private void stop() {
+        synchronized (this) {
+            if (stopping) {
+                return;
+            }
+            stopping = true;
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sink.close();
+        } catch (IOException e) {
+            System.err.println("Event log close failed: " + e.getMessage());
+        }
+    }
+
+    private static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+
+    private static Sink createSink(String file, long maxBytes, int maxFiles) {
+        if (file == null || file.isBlank()) {
+            return new ConsoleSink();
+        }
+        try {
+            return new RotatingFileSink(Paths.get(file), maxBytes, maxFiles);
+        } catch (IOException e) {
+            System.err.println("Cannot open log file " + file + ", logging to console: " + e.getMessage());
+            return new ConsoleSink();
+        }
+    }
+
+    /**
+     * One event being built. Instances are reused per thread between {@link EventLog#info}
+     * (or another level) and {@link #log}; do not keep references.
+     */
+    static final class Entry {
+        // Position this ring slot may be claimed at; position + 1 once published
+        private volatile long sequence;
+        // Set while a draft is being built
+        private EventLog owner;
+        private Level level;
+        private long timestampMillis;
+        private String operation;
+        private String message;
+        private final String[] keys = new String[MAX_FIELDS];
+        private final Object[] values = new Object[MAX_FIELDS];
+        private final long[] longValues = new long[MAX_FIELDS];
+        private int fieldCount;
+        private long elapsedNanos = -1;
+        private Throwable cause;
+
+        private Entry(long sequence) {
+            this.sequence = sequence;
+        }
+
+        private void start(EventLog owner, Level level, String operation) {
+            this.owner = owner;
+            this.level = level;
+            this.operation = operation;
+            this.timestampMillis = System.currentTimeMillis();
+        }
+
+        Entry with(String key, Object value) {
+            if (owner != null && fieldCount < MAX_FIELDS) {
+                keys[fieldCount] = key;
+                values[fieldCount++] = value;
+            }
+            return this;
+        }
+
+        // Numeric field without boxing
+        Entry with(String key, long value) {
+            if (owner != null && fieldCount < MAX_FIELDS) {
+                keys[fieldCount] = key;
+                values[fieldCount] = null;
+                longValues[fieldCount++] = value;
+            }
+            return this;
+        }
+
+        /**
+         * Record the time since a start taken with {@link System#nanoTime()} or
+         * {@link Metrics#start()}
+         */
+        Entry elapsed(long startedNanos) {
+            if (owner != null) {
+                elapsedNanos = System.nanoTime() - startedNanos;
+            }
+            return this;
+        }
+
+        // Attach an exception; its message is logged, and its stack trace at ERROR level
+        Entry cause(Throwable cause) {
+            if (owner != null) {
+                this.cause = cause;
+            }
+            return this;
+        }
+
+        /**
+         * Publish the event
+         * @param message constant human-readable description; variable data belongs in fields
+         */
+        void log(String message) {
+            if (owner != null) {
+                this.message = message;
+                EventLog log = owner;
+                owner = null;
+                log.publish(this);
+                clear();
+            }
+        }
+
+        private void copyFrom(Entry draft) {
+            level = draft.level;
+            timestampMillis = draft.timestampMillis;
+            operation = draft.operation;
+            message = draft.message;
+            fieldCount = draft.fieldCount;
+            System.arraycopy(draft.keys, 0, keys, 0, fieldCount);
+            System.arraycopy(draft.values, 0, values, 0, fieldCount);
+            System.arraycopy(draft.longValues, 0, longValues, 0, fieldCount);
+            elapsedNanos = draft.elapsedNanos;
+            cause = draft.cause;
+        }
+
+        private void format(StringBuilder line) {
+            line.append(Instant.ofEpochMilli(timestampMillis)).append(' ').append(level).append(' ')
+                    .append(operation).append(" msg=");
+            quote(message, line);
+            for (int i = 0; i < fieldCount; i++) {
+                line.append(' ').append(keys[i]).append('=');
+                if (values[i] == null) {
+                    line.append(longValues[i]);
+                } else {
+                    value(values[i], line);
+                }
+            }
+            if (elapsedNanos >= 0) {
+                line.append(" elapsedMs=").append(elapsedNanos / 1_000_000).append('.');
+                long micros = elapsedNanos / 1000 % 1000;
+                line.append(micros < 100 ? (micros < 10 ? "00" : "0") : "").append(micros);
+            }
+            if (cause != null) {
+                line.append(" error=");
+                quote(cause.getClass().getSimpleName() + ": " + cause.getMessage(), line);
+                if (level == Level.ERROR) {
+                    StringWriter trace = new StringWriter();
+                    cause.printStackTrace(new PrintWriter(trace));
+                    line.append(System.lineSeparator()).append(trace.toString().stripTrailing());
+                }
+            }
+        }
+
+        private void clear() {
+            for (int i = 0; i < fieldCount; i++) {
+                keys[i] = null;
+                values[i] = null;
+            }
+            fieldCount = 0;
+            operation = null;
+            message = null;
+            cause = null;
+            elapsedNanos = -1;
+        }
+
+        private static void value(Object value, StringBuilder line) {
+            String text = String.valueOf(value);
+            boolean plain = !text.isEmpty();
+            for (int i = 0; i < text.length() && plain; i++) {
+                char c = text.charAt(i);
+                plain = c > ' ' && c != '"' && c != '=' && c != '\\';
+            }
+            if (plain) {
+                line.append(text);
+            } else {
+                quote(text, line);
+            }
+        }
+
+        private static void quote(String text, StringBuilder line) {
+            line.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"' || c == '\\') {
+                    line.append('\\').append(c);
+                } else if (c == '\n') {
+                    line.append("\\n");
+                } else if (c == '\r') {
+                    line.append("\\r");
+                } else {
+                    line.append(c);
+                }
+            }
+            line.append('"');
+        }
+    }
+
+    /**
+     * Destination of formatted lines; only ever called from the writer thread
+     */
+    private interface Sink {
+        void write(Level level, CharSequence line) throws IOException;
+
+        void flush() throws IOException;
+
+        void close() throws IOException;
+    }
+
+    // Standard out, with WARN and ERROR on standard error
+    private static final class ConsoleSink implements Sink {
+        private final PrintStream out = System.out;
+        private final PrintStream err = System.err;
+
+        @Override
+        public void write(Level level, CharSequence line) {
+            (level.compareTo(Level.WARN) >= 0 ? err : out).append(line).append(System.lineSeparator());
+        }
+
+        @Override
+        public void flush() {
+            out.flush();
+            err.flush();
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+
+    /**
+     * Appends to a file; when it would grow past maxBytes it is renamed to file.1 (shifting
+     * older files up to file.maxFiles, the oldest is deleted) and a new file is started
+     */
+    private static final class RotatingFileSink implements Sink {
+        private final Path file;
+        private final long maxBytes;
+        private final int maxFiles;
+        private Writer writer;
+        private long size;
+
+        RotatingFileSink(Path file, long maxBytes, int maxFiles) throws IOException {
+            this.file = file;
+            this.maxBytes = maxBytes;
+            this.maxFiles = Math.max(1, maxFiles);
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            open();
+        }
+
+        @Override
+        public void write(Level level, CharSequence line) throws IOException {
+            // Log lines are mostly ASCII; the character count is close enough for rotation
+            int length = line.length() + System.lineSeparator().length();
+            if (size > 0 && size + length > maxBytes) {
+                rotate();
+            }
+            writer.append(line).append(System.lineSeparator());
+            size += length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+
+        private void open() throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8), 64 * 1024);
+            size = Files.size(file);
+        }
+
+        private void rotate() throws IOException {
+            writer.close();
+            Files.deleteIfExists(rotated(maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                if (Files.exists(rotated(i))) {
+                    Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+            open();
+        }
+
+        private Path rotated(int index) {
+            return file.resolveSibling(file.getFileName() + "." + index);
+        }
+    }
+}
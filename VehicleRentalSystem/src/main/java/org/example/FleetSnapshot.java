@@ -0,0 +1,335 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only columnar copy of the fleet for analytics.
+ * Each vehicle is a row index into parallel primitive columns: dictionary codes for type and
+ * brand, a double[] of daily prices and BitSets for availability and liveness. Aggregations
+ * scan the columns without allocating per row. {@link #withChanges} produces the next
+ * snapshot by copying the columns and patching only the changed rows; removed vehicles leave
+ * a dead row behind until the next full build.
+ */
+final class FleetSnapshot {
+    private final int rows;
+    private final String[] vehicleIds;
+    private final int[] typeCodes;
+    private final int[] brandCodes;
+    private final double[] prices;
+    private final BitSet available;
+    private final BitSet live;
+    private final List<String> types;
+    private final List<String> brands;
+    // Open addressing from vehicle ID to row + 1 (0 = empty slot), so lookups need no boxing
+    private final int[] slots;
+    private final long builtAt;
+
+    private FleetSnapshot(int rows, String[] vehicleIds, int[] typeCodes, int[] brandCodes, double[] prices,
+                          BitSet available, BitSet live, List<String> types, List<String> brands, int[] slots,
+                          long builtAt) {
+        this.rows = rows;
+        this.vehicleIds = vehicleIds;
+        this.typeCodes = typeCodes;
+        this.brandCodes = brandCodes;
+        this.prices = prices;
+        this.available = available;
+        this.live = live;
+        this.types = types;
+        this.brands = brands;
+        this.slots = slots;
+        this.builtAt = builtAt;
+    }
+
+    /**
+     * Build a snapshot from a full listing of the fleet
+     * @param vehicles every vehicle
+     * @return the snapshot
+     */
+    public static FleetSnapshot of(Iterable<Vehicle> vehicles) {
+        Builder builder = new Builder();
+        for (Vehicle vehicle : vehicles) {
+            builder.add(vehicle);
+        }
+        return builder.build();
+    }
+
+    /**
+     * A new snapshot with some vehicles replaced, added or removed. This snapshot is unchanged.
+     * @param changed current state of vehicles that were added or modified
+     * @param removedIds IDs of vehicles that no longer exist
+     * @return the patched snapshot
+     */
+    public FleetSnapshot withChanges(Collection<Vehicle> changed, Collection<String> removedIds) {
+        Builder builder = new Builder(this, changed.size());
+        for (String vehicleId : removedIds) {
+            int row = builder.rowOf(vehicleId);
+            if (row >= 0) {
+                builder.live.clear(row);
+                builder.available.clear(row);
+            }
+        }
+        for (Vehicle vehicle : changed) {
+            builder.add(vehicle);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return when the full build this snapshot derives from was taken, in epoch milliseconds;
+     * patches keep the original time
+     */
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    public int vehicleCount() {
+        return live.cardinality();
+    }
+
+    public int availableCount() {
+        return available.cardinality();
+    }
+
+    /**
+     * @return share of vehicles currently rented out, from 0 to 1
+     */
+    public double utilization() {
+        int total = vehicleCount();
+        return total == 0 ? 0 : (double) (total - availableCount()) / total;
+    }
+
+    public double averagePrice() {
+        double sum = 0;
+        int count = 0;
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            sum += prices[row];
+            count++;
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @return vehicle count per type, in first-seen order
+     */
+    public Map<String, Integer> countByType() {
+        return toMap(types, countByCode(typeCodes, types.size(), live));
+    }
+
+    /**
+     * @return vehicle count per brand, in first-seen order
+     */
+    public Map<String, Integer> countByBrand() {
+        return toMap(brands, countByCode(brandCodes, brands.size(), live));
+    }
+
+    /**
+     * @return average daily price per type
+     */
+    public Map<String, Double> averagePriceByType() {
+        int[] counts = new int[types.size()];
+        double[] sums = new double[types.size()];
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            counts[typeCodes[row]]++;
+            sums[typeCodes[row]] += prices[row];
+        }
+        Map<String, Double> averages = new LinkedHashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                averages.put(types.get(code), sums[code] / counts[code]);
+            }
+        }
+        return averages;
+    }
+
+    /**
+     * @return share of vehicles rented out per type, from 0 to 1
+     */
+    public Map<String, Double> utilizationByType() {
+        int[] totals = countByCode(typeCodes, types.size(), live);
+        int[] free = countByCode(typeCodes, types.size(), available);
+        Map<String, Double> utilization = new LinkedHashMap<>();
+        for (int code = 0; code < totals.length; code++) {
+            if (totals[code] > 0) {
+                utilization.put(types.get(code), (double) (totals[code] - free[code]) / totals[code]);
+            }
+        }
+        return utilization;
+    }
+
+    /**
+     * Count live vehicles of one type priced within [minPrice, maxPrice]
+     * @param type vehicle type, matched exactly
+     * @param minPrice lowest daily price
+     * @param maxPrice highest daily price
+     * @param availableOnly count only vehicles that can be rented now
+     * @return matching vehicle count
+     */
+    public int count(String type, double minPrice, double maxPrice, boolean availableOnly) {
+        int code = types.indexOf(type);
+        if (code < 0) {
+            return 0;
+        }
+        BitSet rowsToScan = availableOnly ? available : live;
+        int count = 0;
+        for (int row = rowsToScan.nextSetBit(0); row >= 0; row = rowsToScan.nextSetBit(row + 1)) {
+            if (typeCodes[row] == code && prices[row] >= minPrice && prices[row] <= maxPrice) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int[] countByCode(int[] codes, int dictionarySize, BitSet rowsToCount) {
+        int[] counts = new int[dictionarySize];
+        for (int row = rowsToCount.nextSetBit(0); row >= 0; row = rowsToCount.nextSetBit(row + 1)) {
+            counts[codes[row]]++;
+        }
+        return counts;
+    }
+
+    private static Map<String, Integer> toMap(List<String> dictionary, int[] counts) {
+        Map<String, Integer> map = new LinkedHashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                map.put(dictionary.get(code), counts[code]);
+            }
+        }
+        return map;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Accumulates rows for a new snapshot, either from scratch or on top of a copy of an
+     * existing snapshot's columns
+     */
+    static final class Builder {
+        private int rows;
+        private String[] vehicleIds;
+        private int[] typeCodes;
+        private int[] brandCodes;
+        private double[] prices;
+        private final BitSet available;
+        private final BitSet live;
+        private final List<String> types;
+        private final List<String> brands;
+        private final Map<String, Integer> typeLookup = new HashMap<>();
+        private final Map<String, Integer> brandLookup = new HashMap<>();
+        private int[] slots;
+        private final long builtAt;
+
+        Builder() {
+            builtAt = System.currentTimeMillis();
+            vehicleIds = new String[16];
+            typeCodes = new int[16];
+            brandCodes = new int[16];
+            prices = new double[16];
+            available = new BitSet();
+            live = new BitSet();
+            types = new ArrayList<>();
+            brands = new ArrayList<>();
+            slots = new int[32];
+        }
+
+        private Builder(FleetSnapshot base, int extraRows) {
+            builtAt = base.builtAt;
+            int capacity = Math.max(16, base.rows + extraRows);
+            rows = base.rows;
+            vehicleIds = Arrays.copyOf(base.vehicleIds, capacity);
+            typeCodes = Arrays.copyOf(base.typeCodes, capacity);
+            brandCodes = Arrays.copyOf(base.brandCodes, capacity);
+            prices = Arrays.copyOf(base.prices, capacity);
+            available = (BitSet) base.available.clone();
+            live = (BitSet) base.live.clone();
+            types = new ArrayList<>(base.types);
+            brands = new ArrayList<>(base.brands);
+            for (int code = 0; code < types.size(); code++) {
+                typeLookup.put(types.get(code), code);
+            }
+            for (int code = 0; code < brands.size(); code++) {
+                brandLookup.put(brands.get(code), code);
+            }
+            slots = base.slots.clone();
+        }
+
+        /**
+         * Add a vehicle, or overwrite its row if it is already present
+         * @param vehicle vehicle to record
+         */
+        void add(Vehicle vehicle) {
+            int row = rowOf(vehicle.getVehicleId());
+            if (row < 0) {
+                row = appendRow(vehicle.getVehicleId());
+            }
+            typeCodes[row] = code(vehicle.getType(), types, typeLookup);
+            brandCodes[row] = code(vehicle.getBrand(), brands, brandLookup);
+            prices[row] = vehicle.getBasePricePerDay();
+            available.set(row, vehicle.isAvailable());
+            live.set(row);
+        }
+
+        FleetSnapshot build() {
+            return new FleetSnapshot(rows, vehicleIds, typeCodes, brandCodes, prices, available, live,
+                    types, brands, slots, builtAt);
+        }
+
+        private int rowOf(String vehicleId) {
+            int mask = slots.length - 1;
+            for (int i = spread(vehicleId.hashCode()) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (vehicleIds[slots[i] - 1].equals(vehicleId)) {
+                    return slots[i] - 1;
+                }
+            }
+            return -1;
+        }
+
+        private int appendRow(String vehicleId) {
+            if (rows == vehicleIds.length) {
+                int capacity = rows * 2;
+                vehicleIds = Arrays.copyOf(vehicleIds, capacity);
+                typeCodes = Arrays.copyOf(typeCodes, capacity);
+                brandCodes = Arrays.copyOf(brandCodes, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+            }
+            int row = rows++;
+            vehicleIds[row] = vehicleId;
+            // Keep the table at most half full
+            if (rows * 2 > slots.length) {
+                slots = new int[slots.length * 2];
+                for (int r = 0; r < rows - 1; r++) {
+                    insertSlot(r);
+                }
+            }
+            insertSlot(row);
+            return row;
+        }
+
+        private void insertSlot(int row) {
+            int mask = slots.length - 1;
+            int i = spread(vehicleIds[row].hashCode()) & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = row + 1;
+        }
+
+        private static int code(String value, List<String> dictionary, Map<String, Integer> lookup) {
+            Integer code = lookup.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                lookup.put(value, code);
+            }
+            return code;
+        }
+    }
+}
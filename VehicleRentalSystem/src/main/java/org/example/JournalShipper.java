@@ -0,0 +1,128 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ships {@link RentalJournal} events to PostgreSQL with the same statements as
+ * {@link PostgresRentalRepository}, timestamped with the time each event was journaled.
+ * <p>
+ * A batch is one transaction that also moves the journal's row in journal_checkpoint, locked
+ * for the duration, so every event is applied exactly once however often a batch is retried.
+ * When an event is refused, e.g. by the reservations exclusion constraint, the batch is rolled
+ * back and retried one event per transaction; the refused event is then skipped for good.
+ */
+class JournalShipper implements RentalJournal.Target {
+    private final PostgresRentalRepository rentals;
+
+    JournalShipper(PostgresRentalRepository rentals) {
+        this.rentals = rentals;
+    }
+
+    @Override
+    public void ship(String journalId, List<RentalJournal.Event> events, RentalJournal.Listener listener)
+            throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Runnable> notifications = new ArrayList<>(events.size());
+                long checkpoint = lockCheckpoint(conn, journalId);
+                for (RentalJournal.Event event : events) {
+                    if (event.getSeq() > checkpoint) {
+                        notifications.add(apply(conn, event, listener));
+                    }
+                }
+                saveCheckpoint(conn, journalId, Math.max(checkpoint, events.get(events.size() - 1).getSeq()));
+                conn.commit();
+                notifications.forEach(Runnable::run);
+            } catch (SQLException e) {
+                conn.rollback();
+                if (isTransient(e)) {
+                    throw e;
+                }
+                shipOneByOne(conn, journalId, events, listener);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private void shipOneByOne(Connection conn, String journalId, List<RentalJournal.Event> events,
+                              RentalJournal.Listener listener) throws SQLException {
+        for (RentalJournal.Event event : events) {
+            try {
+                long checkpoint = lockCheckpoint(conn, journalId);
+                if (event.getSeq() <= checkpoint) {
+                    conn.rollback();
+                    continue;
+                }
+                Runnable notification = apply(conn, event, listener);
+                saveCheckpoint(conn, journalId, event.getSeq());
+                conn.commit();
+                notification.run();
+            } catch (SQLException e) {
+                conn.rollback();
+                if (isTransient(e)) {
+                    throw e;
+                }
+                // Move past the event so it cannot hold up the rest of the journal
+                lockCheckpoint(conn, journalId);
+                saveCheckpoint(conn, journalId, event.getSeq());
+                conn.commit();
+                listener.rejected(event, e);
+            }
+        }
+    }
+
+    // Applies one event and returns the listener call to make once it is committed
+    private Runnable apply(Connection conn, RentalJournal.Event event, RentalJournal.Listener listener)
+            throws SQLException {
+        if (event.getType() == RentalJournal.RENT) {
+            // The journal already decided availability, so the row is claimed at whatever version it has
+            RentalRepository.RentOutcome outcome = rentals.rent(conn, event.getVehicleId(), event.getCustomerId(),
+                    event.getDays(), event.getPriceFactor(), VehicleRepository.ANY_VERSION, event.getTime());
+            return () -> listener.rentShipped(event, outcome);
+        }
+        RentalRepository.ReturnOutcome outcome = rentals.returnVehicle(conn, event.getVehicleId(),
+                VehicleRepository.ANY_VERSION, event.getTime());
+        return () -> listener.returnShipped(event, outcome);
+    }
+
+    // The last sequence number shipped from the journal, locked until the transaction ends
+    private long lockCheckpoint(Connection conn, String journalId) throws SQLException {
+        try (PreparedStatement insert = conn.prepareStatement("INSERT INTO journal_checkpoint " +
+                "(journal_id, shipped_seq) VALUES (?, 0) ON CONFLICT (journal_id) DO NOTHING")) {
+            insert.setString(1, journalId);
+            insert.executeUpdate();
+        }
+        try (PreparedStatement select = conn.prepareStatement(
+                "SELECT shipped_seq FROM journal_checkpoint WHERE journal_id = ? FOR UPDATE")) {
+            select.setString(1, journalId);
+            try (ResultSet rs = select.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private void saveCheckpoint(Connection conn, String journalId, long seq) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE journal_checkpoint SET shipped_seq = ?, shipped_at = now() WHERE journal_id = ?")) {
+            stmt.setLong(1, seq);
+            stmt.setString(2, journalId);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Lost connections, pool timeouts, shutdowns, resource shortages and serialization
+    // failures may succeed on retry; anything else is a verdict on the event itself
+    static boolean isTransient(SQLException e) {
+        String state = e.getSQLState();
+        return state == null || state.startsWith("08") || state.startsWith("40") || state.startsWith("53")
+                || state.startsWith("57");
+    }
+}
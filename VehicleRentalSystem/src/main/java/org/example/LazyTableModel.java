@@ -0,0 +1,159 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model that fetches rows page by page, only when the table asks for them.
+ * Pages are read with keyset pagination (each page starts after the last row of the
+ * previous one) on a background thread; rows not loaded yet show a placeholder.
+ * @param <T> row type
+ */
+class LazyTableModel<T> extends AbstractTableModel {
+    private static final String LOADING = "...";
+
+    /**
+     * Loads the page that follows a given row
+     * @param <T> row type
+     */
+    interface PageLoader<T> {
+        /**
+         * @param after last row of the previous page, or null for the first page
+         * @param limit maximum number of rows
+         * @return the next rows in key order; fewer than limit means the end was reached
+         */
+        List<T> loadPage(T after, int limit);
+    }
+
+    private final String[] columns;
+    private final Function<T, Object[]> rowMapper;
+    private final PageLoader<T> pageLoader;
+    private final int pageSize;
+    private final ExecutorService loader;
+
+    // Only touched on the EDT
+    private final List<T> rows = new ArrayList<>();
+    private int rowCount;
+    private int requestedRows;
+    private boolean exhausted;
+
+    // Only touched on the loader thread
+    private T lastLoaded;
+    private int loadedOnLoader;
+    private boolean endReached;
+
+    /**
+     * @param columns column names
+     * @param rowMapper converts a row into cell values, one per column
+     * @param pageLoader keyset page query
+     * @param rowCounter total number of rows, used to size the scroll bar
+     * @param pageSize rows per page
+     */
+    LazyTableModel(String[] columns, Function<T, Object[]> rowMapper, PageLoader<T> pageLoader,
+                   IntSupplier rowCounter, int pageSize) {
+        this.columns = columns;
+        this.rowMapper = rowMapper;
+        this.pageLoader = pageLoader;
+        this.pageSize = pageSize;
+        this.loader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "lazy-table-loader");
+            t.setDaemon(true);
+            return t;
+        });
+
+        loader.submit(() -> {
+            int count = rowCounter.getAsInt();
+            SwingUtilities.invokeLater(() -> {
+                rowCount = count;
+                fireTableDataChanged();
+            });
+        });
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        if (rowIndex < rows.size()) {
+            return rowMapper.apply(rows.get(rowIndex))[columnIndex];
+        }
+        requestUpTo(rowIndex);
+        return LOADING;
+    }
+
+    /**
+     * Row object at the given index, or null if its page has not been loaded yet
+     * @param rowIndex row index
+     * @return row or null
+     */
+    T getRow(int rowIndex) {
+        return rowIndex < rows.size() ? rows.get(rowIndex) : null;
+    }
+
+    /**
+     * Stop the background loader; call when the view is closed
+     */
+    void close() {
+        loader.shutdownNow();
+    }
+
+    // Schedules loading of every page up to and including the one holding rowIndex
+    private void requestUpTo(int rowIndex) {
+        int target = (rowIndex / pageSize + 1) * pageSize;
+        if (exhausted || target <= requestedRows) {
+            return;
+        }
+        requestedRows = target;
+        loader.submit(() -> loadUntil(target));
+    }
+
+    // Runs on the loader thread; pages must be read in order because each starts after the previous one
+    private void loadUntil(int target) {
+        while (!endReached && loadedOnLoader < target && !Thread.currentThread().isInterrupted()) {
+            List<T> page = pageLoader.loadPage(lastLoaded, pageSize);
+            if (!page.isEmpty()) {
+                lastLoaded = page.get(page.size() - 1);
+            }
+            loadedOnLoader += page.size();
+            boolean end = page.size() < pageSize;
+            endReached = end;
+
+            SwingUtilities.invokeLater(() -> {
+                int first = rows.size();
+                rows.addAll(page);
+                if (end) {
+                    exhausted = true;
+                    rowCount = rows.size();
+                    fireTableDataChanged();
+                } else if (!page.isEmpty()) {
+                    if (rows.size() > rowCount) {
+                        rowCount = rows.size();
+                        fireTableDataChanged();
+                    } else {
+                        fireTableRowsUpdated(first, rows.size() - 1);
+                    }
+                }
+            });
+        }
+    }
+}
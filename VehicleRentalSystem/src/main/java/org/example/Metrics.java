@@ -0,0 +1,443 @@
+package org.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Per-operation instrumentation of the service layer: call and error counters, rows fetched
+ * and a {@link LatencyHistogram} per operation, plus database connection wait time and the
+ * contention of each stripe of a striped lock ({@link Stripes}).
+ * <p>
+ * Metrics are off unless the JVM runs with {@code -Dmetrics.enabled=true}. The switch is a
+ * static final constant, so when it is off the JIT folds every recording call down to nothing.
+ * {@link #start()} still reads the clock because the {@link EventLog} reports elapsed times.
+ * <p>
+ * Instrumented code follows one pattern:
+ * <pre>
+ * long started = Metrics.start();
+ * try {
+ *     ...
+ *     OPERATION.rows(list.size());
+ * } catch (SQLException e) {
+ *     OPERATION.error();
+ * } finally {
+ *     OPERATION.record(started);
+ * }
+ * </pre>
+ * Results are exposed as JMX MBeans ({@link #registerMBeans()}) and in the Prometheus text
+ * format ({@link #prometheus()}).
+ */
+final class Metrics {
+    static final boolean ENABLED = Boolean.getBoolean("metrics.enabled");
+
+    private static final Map<String, Operation> OPERATIONS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Stripes> STRIPES = new ConcurrentSkipListMap<>();
+    private static final Set<String> REGISTERED = ConcurrentHashMap.newKeySet();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // Time spent waiting to borrow a pooled database connection; kept apart from the operations
+    private static final Operation CONNECTION_WAIT = new Operation("connectionWait");
+
+    private static volatile boolean mbeansRegistered;
+
+    private Metrics() {
+    }
+
+    /**
+     * Get or create the metrics of an operation
+     * @param name operation name, such as the method name
+     * @return the operation's metrics
+     */
+    static Operation operation(String name) {
+        Operation operation = OPERATIONS.computeIfAbsent(name, Operation::new);
+        if (mbeansRegistered) {
+            register(operation, OperationMetricsMBean.class, "type=Operation,name=" + ObjectName.quote(name));
+        }
+        return operation;
+    }
+
+    /**
+     * Get or create the contention counters of a striped lock
+     * @param name lock name
+     * @param count number of stripes; must be the same on every call for the name
+     * @return the lock's counters
+     */
+    static Stripes stripes(String name, int count) {
+        Stripes stripes = STRIPES.computeIfAbsent(name, n -> new Stripes(n, count));
+        if (mbeansRegistered) {
+            register(stripes, StripeMetricsMBean.class, "type=Stripes,name=" + ObjectName.quote(name));
+        }
+        return stripes;
+    }
+
+    /**
+     * Start timing
+     * @return start time for {@link Operation#record} and {@link EventLog.Entry#elapsed}
+     */
+    static long start() {
+        return System.nanoTime();
+    }
+
+    static void recordConnectionWait(long nanos) {
+        if (ENABLED) {
+            CONNECTION_WAIT.latency.record(nanos);
+        }
+    }
+
+    /**
+     * Register every operation, current and future, with the platform MBean server. Does
+     * nothing when metrics are off.
+     */
+    static synchronized void registerMBeans() {
+        if (!ENABLED || mbeansRegistered) {
+            return;
+        }
+        mbeansRegistered = true;
+        register(CONNECTION_WAIT, OperationMetricsMBean.class, "type=ConnectionPool,name=connectionWait");
+        for (Operation operation : OPERATIONS.values()) {
+            register(operation, OperationMetricsMBean.class, "type=Operation,name=" + ObjectName.quote(operation.name));
+        }
+        for (Stripes stripes : STRIPES.values()) {
+            register(stripes, StripeMetricsMBean.class, "type=Stripes,name=" + ObjectName.quote(stripes.name));
+        }
+    }
+
+    private static <T> void register(T metrics, Class<T> view, String properties) {
+        if (!REGISTERED.add(properties)) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new StandardMBean(metrics, view), new ObjectName("org.example:" + properties));
+        } catch (JMException e) {
+            EventLog.warn("registerMBeans").with("mbean", properties).cause(e).log("Error registering metrics");
+        }
+    }
+
+    /**
+     * Dump all metrics in the Prometheus text exposition format
+     * @return metrics text; only the connection pool gauges, if any, when metrics are off
+     */
+    static String prometheus() {
+        StringBuilder out = new StringBuilder(4096);
+        if (ENABLED) {
+            header(out, "rental_operation_calls_total", "counter", "Completed service calls");
+            for (Operation op : OPERATIONS.values()) {
+                sample(out, "rental_operation_calls_total", op.name, null, op.getCalls());
+            }
+            header(out, "rental_operation_errors_total", "counter", "Service calls that failed");
+            for (Operation op : OPERATIONS.values()) {
+                sample(out, "rental_operation_errors_total", op.name, null, op.getErrors());
+            }
+            header(out, "rental_operation_rows_total", "counter", "Rows fetched from the database");
+            for (Operation op : OPERATIONS.values()) {
+                sample(out, "rental_operation_rows_total", op.name, null, op.getRowsFetched());
+            }
+            header(out, "rental_operation_latency_seconds", "summary", "Service call latency");
+            for (Operation op : OPERATIONS.values()) {
+                summary(out, "rental_operation_latency_seconds", op.name, op.latency);
+            }
+            header(out, "rental_db_connection_wait_seconds", "summary", "Wait to borrow a pooled connection");
+            summary(out, "rental_db_connection_wait_seconds", null, CONNECTION_WAIT.latency);
+            if (!STRIPES.isEmpty()) {
+                stripes(out);
+            }
+        }
+        // No pool gauges on the embedded store, which never opens one
+        if (DatabaseConnection.isPoolOpen()) {
+            ConnectionPool.Stats pool = DatabaseConnection.getPoolStats();
+            gauge(out, "rental_db_connections_active", "Borrowed connections", pool.active);
+            gauge(out, "rental_db_connections_idle", "Idle pooled connections", pool.idle);
+            gauge(out, "rental_db_connections_max", "Pool size limit", pool.max);
+            gauge(out, "rental_db_connections_waiting", "Threads waiting for a connection", pool.waiting);
+            header(out, "rental_db_connection_timeouts_total", "counter", "Borrows that timed out");
+            sample(out, "rental_db_connection_timeouts_total", null, null, pool.timeouts);
+        }
+        return out.toString();
+    }
+
+    private static void stripes(StringBuilder out) {
+        header(out, "rental_stripe_admitted_total", "counter", "Callers that ran while holding the stripe");
+        for (Stripes stripes : STRIPES.values()) {
+            stripeSamples(out, "rental_stripe_admitted_total", stripes.name, stripes.getAdmitted());
+        }
+        header(out, "rental_stripe_contended_total", "counter", "Callers that had to wait for the stripe");
+        for (Stripes stripes : STRIPES.values()) {
+            stripeSamples(out, "rental_stripe_contended_total", stripes.name, stripes.getContended());
+        }
+        header(out, "rental_stripe_coalesced_total", "counter", "Callers answered by the caller they waited for");
+        for (Stripes stripes : STRIPES.values()) {
+            stripeSamples(out, "rental_stripe_coalesced_total", stripes.name, stripes.getCoalesced());
+        }
+        header(out, "rental_stripe_timeouts_total", "counter", "Callers that gave up waiting");
+        for (Stripes stripes : STRIPES.values()) {
+            stripeSamples(out, "rental_stripe_timeouts_total", stripes.name, stripes.getTimedOut());
+        }
+        header(out, "rental_stripe_wait_seconds_total", "counter", "Time callers spent waiting");
+        for (Stripes stripes : STRIPES.values()) {
+            for (int i = 0; i < stripes.waitNanos.length; i++) {
+                out.append("rental_stripe_wait_seconds_total{lock=\"").append(stripes.name).append("\",stripe=\"")
+                        .append(i).append("\"} ").append(seconds(stripes.waitNanos[i].sum())).append('\n');
+            }
+        }
+    }
+
+    private static void stripeSamples(StringBuilder out, String metric, String lock, long[] values) {
+        for (int i = 0; i < values.length; i++) {
+            out.append(metric).append("{lock=\"").append(lock).append("\",stripe=\"").append(i).append("\"} ")
+                    .append(values[i]).append('\n');
+        }
+    }
+
+    private static void header(StringBuilder out, String metric, String type, String help) {
+        out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String metric, String help, long value) {
+        header(out, metric, "gauge", help);
+        sample(out, metric, null, null, value);
+    }
+
+    private static void summary(StringBuilder out, String metric, String operation, LatencyHistogram histogram) {
+        for (double quantile : QUANTILES) {
+            sample(out, metric, operation, quantile, seconds(histogram.getValueAtPercentile(quantile * 100)));
+        }
+        sample(out, metric + "_sum", operation, null, seconds(histogram.getSumNanos()));
+        sample(out, metric + "_count", operation, null, histogram.getCount());
+    }
+
+    private static void sample(StringBuilder out, String metric, String operation, Double quantile, Object value) {
+        out.append(metric);
+        if (operation != null || quantile != null) {
+            out.append('{');
+            if (operation != null) {
+                out.append("operation=\"").append(operation).append('"');
+            }
+            if (quantile != null) {
+                out.append(operation != null ? "," : "").append("quantile=\"").append(quantile).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Metrics of one operation. Every recording method returns immediately when metrics are off.
+     */
+    static final class Operation implements OperationMetricsMBean {
+        private final String name;
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Operation(String name) {
+            this.name = name;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Count one finished call and its latency, successful or not
+         * @param started value of {@link Metrics#start()} when the call began
+         */
+        void record(long started) {
+            if (ENABLED) {
+                latency.record(System.nanoTime() - started);
+            }
+        }
+
+        // Count the current call as failed
+        void error() {
+            if (ENABLED) {
+                errors.increment();
+            }
+        }
+
+        // Count rows the current call read from the database
+        void rows(long count) {
+            if (ENABLED) {
+                rows.add(count);
+            }
+        }
+
+        @Override
+        public long getCalls() {
+            return latency.getCount();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public long getRowsFetched() {
+            return rows.sum();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return latency.getMeanNanos() / 1e6;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return millis(latency.getValueAtPercentile(50));
+        }
+
+        @Override
+        public double getP90Millis() {
+            return millis(latency.getValueAtPercentile(90));
+        }
+
+        @Override
+        public double getP99Millis() {
+            return millis(latency.getValueAtPercentile(99));
+        }
+
+        @Override
+        public double getP999Millis() {
+            return millis(latency.getValueAtPercentile(99.9));
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return millis(latency.getMaxNanos());
+        }
+
+        @Override
+        public void reset() {
+            errors.reset();
+            rows.reset();
+            latency.reset();
+        }
+    }
+
+    /**
+     * Contention counters of a striped lock, one slot per stripe. Every recording method
+     * returns immediately when metrics are off.
+     */
+    static final class Stripes implements StripeMetricsMBean {
+        private final String name;
+        private final LongAdder[] admitted;
+        private final LongAdder[] contended;
+        private final LongAdder[] coalesced;
+        private final LongAdder[] timedOut;
+        private final LongAdder[] waitNanos;
+
+        private Stripes(String name, int count) {
+            this.name = name;
+            admitted = adders(count);
+            contended = adders(count);
+            coalesced = adders(count);
+            timedOut = adders(count);
+            waitNanos = adders(count);
+        }
+
+        private static LongAdder[] adders(int count) {
+            LongAdder[] adders = new LongAdder[count];
+            for (int i = 0; i < count; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+
+        private static long[] sums(LongAdder[] adders) {
+            long[] sums = new long[adders.length];
+            for (int i = 0; i < adders.length; i++) {
+                sums[i] = adders[i].sum();
+            }
+            return sums;
+        }
+
+        // A caller ran its work holding the stripe
+        void admitted(int stripe) {
+            if (ENABLED) {
+                admitted[stripe].increment();
+            }
+        }
+
+        // A caller found the stripe busy and waited waitNanos for it
+        void contended(int stripe, long waitNanos) {
+            if (ENABLED) {
+                contended[stripe].increment();
+                this.waitNanos[stripe].add(waitNanos);
+            }
+        }
+
+        // A waiting caller took the result of the one it waited for instead of running
+        void coalesced(int stripe) {
+            if (ENABLED) {
+                coalesced[stripe].increment();
+            }
+        }
+
+        // A waiting caller gave up and ran without the stripe
+        void timedOut(int stripe) {
+            if (ENABLED) {
+                timedOut[stripe].increment();
+            }
+        }
+
+        @Override
+        public long[] getAdmitted() {
+            return sums(admitted);
+        }
+
+        @Override
+        public long[] getContended() {
+            return sums(contended);
+        }
+
+        @Override
+        public long[] getCoalesced() {
+            return sums(coalesced);
+        }
+
+        @Override
+        public long[] getTimedOut() {
+            return sums(timedOut);
+        }
+
+        @Override
+        public double[] getWaitMillis() {
+            double[] millis = new double[waitNanos.length];
+            for (int i = 0; i < waitNanos.length; i++) {
+                millis[i] = millis(waitNanos[i].sum());
+            }
+            return millis;
+        }
+
+        @Override
+        public void reset() {
+            for (int i = 0; i < admitted.length; i++) {
+                admitted[i].reset();
+                contended[i].reset();
+                coalesced[i].reset();
+                timedOut[i].reset();
+                waitNanos[i].reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.example;
+
+/**
+ * JMX view of one instrumented operation, registered as
+ * {@code org.example:type=Operation,name="<operation>"}; database connection wait is
+ * {@code org.example:type=ConnectionPool,name=connectionWait}. Latencies are in milliseconds.
+ */
+public interface OperationMetricsMBean {
+
+    long getCalls();
+
+    long getErrors();
+
+    long getRowsFetched();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+
+    /**
+     * Clear all counters and the latency histogram
+     */
+    void reset();
+}
@@ -0,0 +1,107 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The customers and admin tables. Customer IDs come from blocks reserved on a sequence, see
+ * {@link CustomerIdAllocator}.
+ */
+class PostgresCustomerRepository extends PostgresRepository implements CustomerRepository {
+    private final CustomerIdAllocator customerIdAllocator = new CustomerIdAllocator();
+
+    @Override
+    public void add(Customer customer) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO customers (customer_id, name, password) VALUES (?, ?, ?)")) {
+            stmt.setString(1, customer.getCustomerId());
+            stmt.setString(2, customer.getName());
+            stmt.setString(3, customer.getPassword());
+            stmt.executeUpdate();
+        }
+    }
+
+    // Uses the primary key
+    @Override
+    public Customer findById(String customerId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM customers WHERE customer_id = ?")) {
+            stmt.setString(1, customerId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapCustomer(rs) : null;
+            }
+        }
+    }
+
+    // Uses the lower(name) index
+    @Override
+    public List<Customer> findByName(String name) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT * FROM customers WHERE lower(name) = lower(?) ORDER BY customer_id")) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return mapCustomers(rs);
+            }
+        }
+    }
+
+    @Override
+    public List<Customer> findAll() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM customers")) {
+            return mapCustomers(rs);
+        }
+    }
+
+    @Override
+    public boolean updatePassword(String customerId, String newPassword) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("UPDATE customers SET password = ? WHERE customer_id = ?")) {
+            stmt.setString(1, newPassword);
+            stmt.setString(2, customerId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    @Override
+    public String nextId() throws SQLException {
+        return customerIdAllocator.nextId();
+    }
+
+    @Override
+    public Admin findAdmin(String username) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM admin WHERE username = ?")) {
+            stmt.setString(1, username);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new Admin(rs.getString("username"), rs.getString("password")) : null;
+            }
+        }
+    }
+
+    @Override
+    public boolean updateAdminPassword(String username, String newPassword) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("UPDATE admin SET password = ? WHERE username = ?")) {
+            stmt.setString(1, newPassword);
+            stmt.setString(2, username);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    private List<Customer> mapCustomers(ResultSet rs) throws SQLException {
+        List<Customer> customers = new ArrayList<>();
+        while (rs.next()) {
+            customers.add(mapCustomer(rs));
+        }
+        return customers;
+    }
+}
@@ -0,0 +1,353 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The rentals table. Renting and returning also keep the vehicle's booking in the
+ * reservations table and the {@link RentalReports} summaries up to date, in the same
+ * statement or transaction.
+ */
+class PostgresRentalRepository extends PostgresRepository implements RentalRepository {
+    // Rentals joined with their vehicle and customer. The vehicle side is an outer join because
+    // closed rentals outlive deleted vehicles.
+    private static final String RENTALS_BASE_QUERY = "SELECT r.*, v.type, v.brand, v.model, v.base_price_per_day, " +
+            "v.version, " +
+            "c.name, c.password FROM rentals r " +
+            "LEFT JOIN vehicles v ON r.vehicle_id = v.vehicle_id " +
+            "JOIN customers c ON r.customer_id = c.customer_id";
+
+    // Open rentals only; served by the partial idx_rentals_open_vehicle index
+    private static final String RENTALS_QUERY = RENTALS_BASE_QUERY + " WHERE r.returned_at IS NULL";
+
+
+    // The availability claim and the rental insert run as a single statement, so two
+    // concurrent renters can never both claim the same vehicle.
+    // The rental snapshots the price at claim time, so later price changes leave history intact.
+    // It also books the vehicle for the rental period: the claim is refused when another
+    // customer holds an overlapping reservation, and the renter's own is picked up.
+    // The report summaries are updated by the same statement.
+    // The rental starts now, or at the time a journaled rental was accepted.
+    // The claim is also a compare-and-set on the vehicle's version.
+    private static final String RENT_SQL = "WITH clock AS (SELECT COALESCE(?::timestamptz, now()) AS at), " +
+            "blocking AS (" +
+            "SELECT EXISTS (SELECT 1 FROM reservations, clock WHERE vehicle_id = ? AND cancelled_at IS NULL " +
+            "AND customer_id <> ? AND period && tstzrange(at, at + make_interval(days => ?))) " +
+            "AS blocked), " +
+            "claimed AS (" +
+            "UPDATE vehicles SET is_available = false, version = version + 1 " +
+            "WHERE vehicle_id = ? AND is_available AND version = COALESCE(?, version) " +
+            "AND NOT (SELECT blocked FROM blocking) " +
+            "RETURNING vehicle_id, type, base_price_per_day, version), " +
+            "inserted AS (" +
+            "INSERT INTO rentals (vehicle_id, customer_id, days, price_per_day, total_price, rented_at) " +
+            "SELECT vehicle_id, ?, ?, base_price_per_day, round(base_price_per_day * ?, 2), at " +
+            "FROM claimed, clock " +
+            "RETURNING rental_id, vehicle_id, customer_id, days, rented_at, total_price), " +
+            "rented AS (SELECT i.*, c.type FROM inserted i JOIN claimed c USING (vehicle_id)), " +
+            RentalReports.recordRentalSql("rented") + ", " +
+            "picked_up AS (" +
+            "UPDATE reservations SET cancelled_at = clock.at FROM clock " +
+            "WHERE vehicle_id IN (SELECT vehicle_id FROM claimed) AND customer_id = ? " +
+            "AND cancelled_at IS NULL AND rental_id IS NULL " +
+            "AND period && tstzrange(clock.at, clock.at + make_interval(days => ?))), " +
+            "booked AS (" +
+            "INSERT INTO reservations (vehicle_id, customer_id, period, rental_id) " +
+            "SELECT vehicle_id, customer_id, tstzrange(rented_at, rented_at + make_interval(days => days)), " +
+            "rental_id FROM inserted RETURNING reservation_id, rental_id, period) " +
+            "SELECT (SELECT reservation_id FROM booked) AS reservation_id, " +
+            "(SELECT rental_id FROM booked) AS rental_id, " +
+            "(SELECT lower(period) FROM booked) AS starts_at, " +
+            "(SELECT upper(period) FROM booked) AS ends_at, " +
+            "(SELECT version FROM claimed) AS version, " +
+            "(SELECT blocked FROM blocking) AS reserved, " +
+            "(SELECT is_available FROM vehicles WHERE vehicle_id = ?) AS available";
+
+    // Ownership is verified and the rental closed by one statement using the partial index
+    // on open rentals
+    private static final String RETURN_FOR_SQL = "WITH closed AS (" +
+            "UPDATE rentals SET returned_at = now() " +
+            "WHERE vehicle_id = ? AND customer_id = ? AND returned_at IS NULL " +
+            "RETURNING vehicle_id, rental_id, rented_at, returned_at), " +
+            "released AS (" +
+            "UPDATE vehicles SET is_available = true, version = version + 1 " +
+            "WHERE vehicle_id IN (SELECT vehicle_id FROM closed) RETURNING vehicle_id), " +
+            "unbooked AS (" + releaseBookingSql("now()") +
+            "WHERE rental_id IN (SELECT rental_id FROM closed) AND cancelled_at IS NULL), " +
+            "closed_rental AS (SELECT c.*, v.type FROM closed c JOIN vehicles v USING (vehicle_id)), " +
+            RentalReports.recordReturnSql("closed_rental") + " " +
+            "SELECT EXISTS (SELECT 1 FROM released) AS returned, " +
+            "EXISTS (SELECT 1 FROM vehicles WHERE vehicle_id = ?) AS found";
+
+    @Override
+    public RentOutcome rent(String vehicleId, String customerId, int days, BigDecimal priceFactor,
+                            long expectedVersion) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return rent(conn, vehicleId, customerId, days, priceFactor, expectedVersion, null);
+        }
+    }
+
+    /**
+     * {@link #rent(String, String, int, BigDecimal, long)} on the caller's connection and transaction
+     * @param at when the rental starts, null for now
+     */
+    RentOutcome rent(Connection conn, String vehicleId, String customerId, int days, BigDecimal priceFactor,
+                     long expectedVersion, OffsetDateTime at) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(RENT_SQL)) {
+            setTime(stmt, 1, at);
+            stmt.setString(2, vehicleId);
+            stmt.setString(3, customerId);
+            stmt.setInt(4, days);
+            stmt.setString(5, vehicleId);
+            setExpectedVersion(stmt, 6, expectedVersion);
+            stmt.setString(7, customerId);
+            stmt.setInt(8, days);
+            stmt.setBigDecimal(9, priceFactor);
+            stmt.setString(10, customerId);
+            stmt.setInt(11, days);
+            stmt.setString(12, vehicleId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                int reservationId = rs.getInt("reservation_id");
+                if (!rs.wasNull()) {
+                    int rentalId = rs.getInt("rental_id");
+                    Reservation booking = new Reservation(reservationId, vehicleId, customerId,
+                            rs.getObject("starts_at", OffsetDateTime.class),
+                            rs.getObject("ends_at", OffsetDateTime.class), rentalId);
+                    return new RentOutcome(RentResult.RENTED, rentalId, booking, rs.getLong("version"));
+                }
+                if (rs.getBoolean("reserved")) {
+                    return new RentOutcome(RentResult.RESERVED);
+                }
+                boolean available = rs.getBoolean("available");
+                if (rs.wasNull()) {
+                    return new RentOutcome(RentResult.NOT_FOUND);
+                }
+                // Available but not claimed: the version moved on
+                return new RentOutcome(available ? RentResult.CONFLICT : RentResult.ALREADY_RENTED);
+            }
+        }
+    }
+
+    @Override
+    public ReturnOutcome returnVehicle(String vehicleId, long expectedVersion) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false); // Start transaction
+            try {
+                ReturnOutcome outcome = returnVehicle(conn, vehicleId, expectedVersion, null);
+                conn.commit();
+                return outcome;
+            } catch (SQLException e) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    EventLog.warn("returnVehicle").with("vehicleId", vehicleId).cause(ex)
+                            .log("Error rolling back transaction");
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * {@link #returnVehicle(String, long)} on the caller's connection and transaction, which must
+     * not be in auto-commit mode. Nothing is changed unless the outcome is RETURNED; a vehicle that
+     * is already available is NOT_RENTED and keeps its version.
+     * @param at when the vehicle came back, null for now
+     */
+    ReturnOutcome returnVehicle(Connection conn, String vehicleId, long expectedVersion, OffsetDateTime at)
+            throws SQLException {
+        // Update vehicle availability
+        long version;
+        try (PreparedStatement updateStmt = conn.prepareStatement("UPDATE vehicles " +
+                "SET is_available = true, version = version + 1 " +
+                "WHERE vehicle_id = ? AND NOT is_available AND version = COALESCE(?, version) " +
+                "RETURNING version")) {
+            updateStmt.setString(1, vehicleId);
+            setExpectedVersion(updateStmt, 2, expectedVersion);
+            try (ResultSet rs = updateStmt.executeQuery()) {
+                if (!rs.next()) {
+                    return new ReturnOutcome(returnRefusal(conn, vehicleId));
+                }
+                version = rs.getLong(1);
+            }
+        }
+
+        // Close the open rental, which stays as history, and add it to the report summaries
+        String closeSql = "WITH clock AS (SELECT COALESCE(?::timestamptz, now()) AS at), " +
+                "closed AS (" +
+                "UPDATE rentals SET returned_at = clock.at FROM clock " +
+                "WHERE vehicle_id = ? AND returned_at IS NULL " +
+                "RETURNING vehicle_id, rented_at, returned_at), " +
+                "closed_rental AS (SELECT c.*, v.type FROM closed c JOIN vehicles v USING (vehicle_id)), " +
+                RentalReports.recordReturnSql("closed_rental") + " " +
+                "SELECT count(*) FROM closed";
+        try (PreparedStatement closeStmt = conn.prepareStatement(closeSql)) {
+            setTime(closeStmt, 1, at);
+            closeStmt.setString(2, vehicleId);
+            closeStmt.executeQuery().close();
+        }
+
+        // Free the rest of the rental's booking for other reservations
+        String returnedAt = "COALESCE(?::timestamptz, now())";
+        try (PreparedStatement releaseStmt = conn.prepareStatement(releaseBookingSql(returnedAt) +
+                "WHERE vehicle_id = ? AND rental_id IS NOT NULL AND cancelled_at IS NULL " +
+                "AND upper(period) > " + returnedAt)) {
+            setTime(releaseStmt, 1, at);
+            releaseStmt.setString(2, vehicleId);
+            setTime(releaseStmt, 3, at);
+            releaseStmt.executeUpdate();
+        }
+        return new ReturnOutcome(ReturnResult.RETURNED, version);
+    }
+
+    // Why a return changed no row: the vehicle is gone, already back, or at another version
+    private static ReturnResult returnRefusal(Connection conn, String vehicleId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "SELECT is_available FROM vehicles WHERE vehicle_id = ?")) {
+            stmt.setString(1, vehicleId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return ReturnResult.NOT_FOUND;
+                }
+                return rs.getBoolean(1) ? ReturnResult.NOT_RENTED : ReturnResult.CONFLICT;
+            }
+        }
+    }
+
+    @Override
+    public ReturnResult returnVehicleFor(String customerId, String vehicleId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(RETURN_FOR_SQL)) {
+            stmt.setString(1, vehicleId);
+            stmt.setString(2, customerId);
+            stmt.setString(3, vehicleId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                if (rs.getBoolean("returned")) {
+                    return ReturnResult.RETURNED;
+                }
+                return rs.getBoolean("found") ? ReturnResult.NOT_RENTED : ReturnResult.NOT_FOUND;
+            }
+        }
+    }
+
+    @Override
+    public List<Rental> findOpen() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(RENTALS_QUERY)) {
+            return mapRentals(rs);
+        }
+    }
+
+    @Override
+    public List<Rental> findOpenPage(int afterRentalId, int limit) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     RENTALS_QUERY + " AND r.rental_id > ? ORDER BY r.rental_id LIMIT ?")) {
+            stmt.setInt(1, afterRentalId);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return mapRentals(rs);
+            }
+        }
+    }
+
+    @Override
+    public List<Rental> findByCustomer(String customerId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     RENTALS_BASE_QUERY + " WHERE r.customer_id = ? ORDER BY r.rented_at DESC")) {
+            stmt.setString(1, customerId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return mapRentals(rs);
+            }
+        }
+    }
+
+    @Override
+    public Stream<Rental> streamOpen() throws SQLException {
+        return streamQuery(RENTALS_QUERY + " ORDER BY r.rental_id", PostgresRentalRepository::mapRental);
+    }
+
+    @Override
+    public int countOpen() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM rentals WHERE returned_at IS NULL")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Ends a rental's booking at the return time instead of at the planned end. Late returns keep
+    // the planned end, so they never collide with the next customer's reservation.
+    private static String releaseBookingSql(String returnedAt) {
+        return "UPDATE reservations " +
+                "SET period = tstzrange(lower(period), LEAST(upper(period), GREATEST(lower(period), " +
+                returnedAt + "))) ";
+    }
+
+    private static void setTime(PreparedStatement stmt, int index, OffsetDateTime time) throws SQLException {
+        if (time == null) {
+            stmt.setNull(index, Types.TIMESTAMP_WITH_TIMEZONE);
+        } else {
+            stmt.setObject(index, time);
+        }
+    }
+
+    private List<Rental> mapRentals(ResultSet rs) throws SQLException {
+        List<Rental> rentals = new ArrayList<>();
+        while (rs.next()) {
+            rentals.add(mapRental(rs));
+        }
+        return rentals;
+    }
+
+    // Builds a Rental from the current row of a RENTALS_BASE_QUERY result set
+    private static Rental mapRental(ResultSet rs) throws SQLException {
+        // Extract vehicle data
+        String vehicleId = rs.getString("vehicle_id");
+        String type = rs.getString("type");
+        String brand = rs.getString("brand");
+        String model = rs.getString("model");
+        double price = rs.getDouble("base_price_per_day");
+
+        // Extract customer data
+        String customerId = rs.getString("customer_id");
+        String name = rs.getString("name");
+        String password = rs.getString("password");
+
+        // Extract rental data
+        int rentalId = rs.getInt("rental_id");
+        int days = rs.getInt("days");
+        OffsetDateTime rentedAt = rs.getObject("rented_at", OffsetDateTime.class);
+        OffsetDateTime returnedAt = rs.getObject("returned_at", OffsetDateTime.class);
+        double totalPrice = rs.getDouble("total_price");
+        if (rs.wasNull()) {
+            totalPrice = price * days; // Rentals recorded before price snapshots
+        }
+
+        // Create objects
+        Vehicle vehicle = new Vehicle(vehicleId, type, brand, model, price);
+        if (returnedAt == null) {
+            vehicle.rent(); // Set as rented
+        }
+        vehicle.setVersion(rs.getLong("version"));
+        Customer customer = new Customer(customerId, name, password);
+
+        return new Rental(rentalId, vehicle, customer, days, rentedAt, returnedAt, totalPrice);
+    }
+}
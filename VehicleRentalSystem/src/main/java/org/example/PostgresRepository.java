@@ -0,0 +1,112 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Row mapping and streaming shared by the PostgreSQL repositories. Connections come from
+ * {@link DatabaseConnection}'s pool.
+ */
+abstract class PostgresRepository {
+    // Rows per round trip when streaming large result sets
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // Maps one result set row to an object
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    // Builds a Vehicle from the current row of a vehicles result set
+    static Vehicle mapVehicle(ResultSet rs) throws SQLException {
+        String id = rs.getString("vehicle_id");
+        String type = rs.getString("type");
+        String brand = rs.getString("brand");
+        String model = rs.getString("model");
+        double price = rs.getDouble("base_price_per_day");
+        boolean isAvailable = rs.getBoolean("is_available");
+
+        Vehicle vehicle = new Vehicle(id, type, brand, model, price);
+        if (!isAvailable) {
+            vehicle.rent(); // Set as rented if not available
+        }
+        vehicle.setVersion(rs.getLong("version"));
+        return vehicle;
+    }
+
+    // Binds the expected version of a "version = COALESCE(?, version)" condition;
+    // ANY_VERSION binds NULL, which matches every version
+    static void setExpectedVersion(PreparedStatement stmt, int index, long expectedVersion) throws SQLException {
+        if (expectedVersion == VehicleRepository.ANY_VERSION) {
+            stmt.setNull(index, Types.BIGINT);
+        } else {
+            stmt.setLong(index, expectedVersion);
+        }
+    }
+
+    // Builds a Customer from the current row of a customers result set
+    static Customer mapCustomer(ResultSet rs) throws SQLException {
+        return new Customer(rs.getString("customer_id"), rs.getString("name"), rs.getString("password"));
+    }
+
+    // Runs a query as a lazily consumed stream. PostgreSQL only honours the fetch size
+    // inside a transaction, so auto-commit is turned off; returning the connection to
+    // the pool on close rolls the read-only transaction back. Errors reading later rows
+    // surface from the stream operations as UncheckedSQLException.
+    static <T> Stream<T> streamQuery(String sql, RowMapper<T> mapper) throws SQLException {
+        Connection conn = DatabaseConnection.getConnection();
+        PreparedStatement stmt = null;
+        try {
+            conn.setAutoCommit(false);
+            // Not the single-argument form, so the statement is not shared with the statement cache
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            ResultSet rs = stmt.executeQuery();
+            PreparedStatement openStmt = stmt;
+
+            Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    try {
+                        if (!rs.next()) {
+                            return false;
+                        }
+                        action.accept(mapper.map(rs));
+                        return true;
+                    } catch (SQLException e) {
+                        throw new UncheckedSQLException("Error reading streamed row: " + e.getMessage(), e);
+                    }
+                }
+            };
+
+            return StreamSupport.stream(rows, false).onClose(() -> {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    EventLog.warn("streamQuery").cause(e).log("Error closing result set");
+                }
+                close(openStmt, conn);
+            });
+        } catch (SQLException | RuntimeException e) {
+            close(stmt, conn);
+            throw e;
+        }
+    }
+
+    private static void close(PreparedStatement stmt, Connection conn) {
+        try {
+            if (stmt != null) stmt.close();
+        } catch (SQLException e) {
+            EventLog.warn("streamQuery").cause(e).log("Error closing statement");
+        }
+        DatabaseConnection.closeConnection(conn);
+    }
+}
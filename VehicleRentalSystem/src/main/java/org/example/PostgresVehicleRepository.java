@@ -0,0 +1,154 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The vehicles table
+ */
+class PostgresVehicleRepository extends PostgresRepository implements VehicleRepository {
+
+    @Override
+    public List<Vehicle> findAll() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM vehicles")) {
+            return mapVehicles(rs);
+        }
+    }
+
+    @Override
+    public List<Vehicle> findByIds(Collection<String> vehicleIds) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM vehicles WHERE vehicle_id = ANY (?)")) {
+            stmt.setArray(1, conn.createArrayOf("varchar", vehicleIds.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return mapVehicles(rs);
+            }
+        }
+    }
+
+    @Override
+    public List<Vehicle> find(VehicleQuery query) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query.toSql(params))) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return mapVehicles(rs);
+            }
+        }
+    }
+
+    // Keyset pagination keeps every page an index range scan, however deep the page
+    @Override
+    public List<Vehicle> findPage(String afterVehicleId, int limit) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT * FROM vehicles WHERE vehicle_id > ? ORDER BY vehicle_id LIMIT ?")) {
+            stmt.setString(1, afterVehicleId == null ? "" : afterVehicleId);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return mapVehicles(rs);
+            }
+        }
+    }
+
+    @Override
+    public Stream<Vehicle> stream() throws SQLException {
+        return streamQuery("SELECT * FROM vehicles ORDER BY vehicle_id", PostgresRepository::mapVehicle);
+    }
+
+    @Override
+    public int count() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM vehicles")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    @Override
+    public void add(Vehicle vehicle) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("INSERT INTO vehicles " +
+                     "(vehicle_id, type, brand, model, base_price_per_day, is_available) VALUES (?, ?, ?, ?, ?, ?)")) {
+            stmt.setString(1, vehicle.getVehicleId());
+            stmt.setString(2, vehicle.getType());
+            stmt.setString(3, vehicle.getBrand());
+            stmt.setString(4, vehicle.getModel());
+            stmt.setDouble(5, vehicle.getBasePricePerDay());
+            stmt.setBoolean(6, true); // New vehicles are available by default
+            stmt.executeUpdate();
+        }
+    }
+
+    // The compare-and-set is the UPDATE's own WHERE clause. Only when it misses is the row read
+    // again, by a separate statement so it sees the change that beat this one.
+    @Override
+    public UpdateOutcome updatePrice(String vehicleId, double newPrice, long expectedVersion) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE vehicles SET base_price_per_day = ?, version = version + 1 " +
+                            "WHERE vehicle_id = ? AND version = COALESCE(?, version) RETURNING *")) {
+                stmt.setDouble(1, newPrice);
+                stmt.setString(2, vehicleId);
+                setExpectedVersion(stmt, 3, expectedVersion);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        return new UpdateOutcome(UpdateResult.UPDATED, mapVehicle(rs));
+                    }
+                }
+            }
+            Vehicle current = findOne(conn, vehicleId);
+            return new UpdateOutcome(current == null ? UpdateResult.NOT_FOUND : UpdateResult.CONFLICT, current);
+        }
+    }
+
+    // Availability and version are checked by the DELETE itself, so a vehicle rented or changed
+    // after the caller looked at it is never deleted
+    @Override
+    public DeleteResult delete(String vehicleId, long expectedVersion) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM vehicles " +
+                    "WHERE vehicle_id = ? AND is_available AND version = COALESCE(?, version)")) {
+                stmt.setString(1, vehicleId);
+                setExpectedVersion(stmt, 2, expectedVersion);
+                if (stmt.executeUpdate() > 0) {
+                    return DeleteResult.DELETED;
+                }
+            }
+            Vehicle current = findOne(conn, vehicleId);
+            if (current == null) {
+                return DeleteResult.NOT_FOUND;
+            }
+            return current.isAvailable() ? DeleteResult.CONFLICT : DeleteResult.RENTED;
+        }
+    }
+
+    private Vehicle findOne(Connection conn, String vehicleId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM vehicles WHERE vehicle_id = ?")) {
+            stmt.setString(1, vehicleId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapVehicle(rs) : null;
+            }
+        }
+    }
+
+    private List<Vehicle> mapVehicles(ResultSet rs) throws SQLException {
+        List<Vehicle> vehicles = new ArrayList<>();
+        while (rs.next()) {
+            vehicles.add(mapVehicle(rs));
+        }
+        return vehicles;
+    }
+}
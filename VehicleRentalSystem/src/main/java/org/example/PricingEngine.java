@@ -0,0 +1,128 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+
+/**
+ * Prices rentals. An engine only decides the factor applied to a vehicle's base daily price
+ * for a rental period; totals are that factor times the base price, rounded half-up to
+ * whole cents once. Because the factor is independent of the base price, the rent statement
+ * can apply it to the price row it claims and store exactly the quoted total.
+ */
+interface PricingEngine {
+
+    /**
+     * base price * days, the pricing used before rules existed
+     */
+    PricingEngine FLAT = (type, start, days) -> BigDecimal.valueOf(days);
+
+    /**
+     * Factor applied to the base daily price for a rental
+     * @param type vehicle type
+     * @param start first rental day
+     * @param days number of rental days
+     * @return exact multiplier of the base daily price
+     */
+    BigDecimal priceFactor(String type, LocalDate start, int days);
+
+    /**
+     * Quote a rental of a vehicle
+     * @param vehicle vehicle to rent
+     * @param start first rental day
+     * @param days number of rental days
+     * @return the quote
+     */
+    default Quote quote(Vehicle vehicle, LocalDate start, int days) {
+        BigDecimal factor = priceFactor(vehicle.getType(), start, days);
+        return new Quote(vehicle.getVehicleId(), start, days, factor,
+                totalCents(toCents(vehicle.getBasePricePerDay()), factor));
+    }
+
+    /**
+     * Convert a price to whole cents
+     * @param price price in dollars
+     * @return cents, rounded half-up
+     */
+    static long toCents(double price) {
+        return BigDecimal.valueOf(price).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Apply a price factor to a base price, rounding once
+     * @param baseCents base daily price in cents
+     * @param factor price factor
+     * @return total in cents, rounded half-up
+     */
+    static long totalCents(long baseCents, BigDecimal factor) {
+        return factor.multiply(BigDecimal.valueOf(baseCents)).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    // Engine used where no engine is passed explicitly, such as Vehicle.calculatePrice
+    static PricingEngine getDefault() {
+        return Holder.defaultEngine;
+    }
+
+    static void setDefault(PricingEngine engine) {
+        Holder.defaultEngine = engine;
+    }
+
+    /**
+     * Mutable default engine; interfaces cannot have non-final fields
+     */
+    final class Holder {
+        private static volatile PricingEngine defaultEngine = FLAT;
+
+        private Holder() {
+        }
+    }
+
+    /**
+     * A priced rental, exact to the cent
+     */
+    final class Quote {
+        private final String vehicleId;
+        private final LocalDate start;
+        private final int days;
+        private final BigDecimal factor;
+        private final long totalCents;
+
+        Quote(String vehicleId, LocalDate start, int days, BigDecimal factor, long totalCents) {
+            this.vehicleId = vehicleId;
+            this.start = start;
+            this.days = days;
+            this.factor = factor;
+            this.totalCents = totalCents;
+        }
+
+        public String getVehicleId() {
+            return vehicleId;
+        }
+
+        public LocalDate getStart() {
+            return start;
+        }
+
+        public int getDays() {
+            return days;
+        }
+
+        // Multiplier of the base daily price this quote was computed with
+        public BigDecimal getFactor() {
+            return factor;
+        }
+
+        public long getTotalCents() {
+            return totalCents;
+        }
+
+        public BigDecimal getTotal() {
+            return BigDecimal.valueOf(totalCents, 2);
+        }
+
+        @Override
+        public String toString() {
+            return "Quote{" + vehicleId + ", " + start + " for " + days + " days: $" + getTotal() + "}";
+        }
+    }
+}
@@ -0,0 +1,728 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless JSON HTTP API over {@link VehicleRentalSystem}, on the JDK HttpServer.
+ * Every request runs on its own virtual thread. A semaphore caps how many requests work
+ * against the rental system at once so a burst queues briefly and is then turned away with
+ * 503 instead of piling up on the connection pool.
+ * <p>
+ * Callers authenticate with HTTP Basic: the admin with the admin username, customers with
+ * their customer ID. Endpoints:
+ * <pre>
+ * GET    /vehicles?type=&amp;brand=&amp;model=&amp;minPrice=&amp;maxPrice=&amp;available=&amp;sort=&amp;limit=
+ * GET    /vehicles/{id}
+ * GET    /vehicles/{id}/quote?days=          price of renting from today
+ * POST   /vehicles                           admin; {vehicleId, type, brand, model, basePricePerDay}
+ * PUT    /vehicles/{id}                      admin; {basePricePerDay, version}
+ * DELETE /vehicles/{id}?version=             admin
+ * POST   /customers                          {name, password}, open registration
+ * GET    /customers                          admin
+ * GET    /customers/{id}                     admin or that customer
+ * GET    /customers/{id}/rentals             admin or that customer; rental history
+ * GET    /rentals?after=&amp;limit=                admin; pages of open rentals
+ * POST   /rentals                            customer; {vehicleId, days}
+ * POST   /returns                            customer; {vehicleId}
+ * GET    /metrics                            Prometheus text format, outside the concurrency limit
+ * </pre>
+ * Vehicles carry the version of their row. PUT and DELETE given the version the caller read
+ * only apply if nobody changed the vehicle since, and answer 409 otherwise; without a version
+ * they apply regardless.
+ */
+class RentalApiServer {
+    static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_MAX_CONCURRENT = 64;
+    static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 1000;
+    static final int DEFAULT_BACKLOG = 256;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final VehicleRentalSystem rentalSystem;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final long acquireTimeoutMillis;
+
+    /**
+     * @param rentalSystem service layer
+     * @param port TCP port, 0 for any free port
+     * @param backlog pending TCP connections the OS queues before refusing
+     * @param maxConcurrent requests allowed to work against the rental system at once
+     * @param acquireTimeoutMillis how long a request waits for a slot before getting 503
+     * @throws IOException if the port cannot be bound
+     */
+    RentalApiServer(VehicleRentalSystem rentalSystem, int port, int backlog, int maxConcurrent,
+                    long acquireTimeoutMillis) throws IOException {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent must be positive: " + maxConcurrent);
+        }
+        this.rentalSystem = rentalSystem;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.server = HttpServer.create(new InetSocketAddress(port), backlog);
+        server.setExecutor(executor);
+        server.createContext("/vehicles", limited(this::vehicles));
+        server.createContext("/customers", limited(this::customers));
+        server.createContext("/rentals", limited(this::rentals));
+        server.createContext("/returns", limited(this::returns));
+        server.createContext("/metrics", RentalApiServer::metrics);
+    }
+
+    /**
+     * Run the API until the process is stopped. Configured with system properties
+     * api.port, api.backlog, api.maxConcurrent and api.acquireTimeoutMillis, plus the usual
+     * db.* properties.
+     */
+    public static void main(String[] args) throws IOException {
+        VehicleRentalSystem rentalSystem = new VehicleRentalSystem();
+        Metrics.registerMBeans();
+        RentalApiServer api = new RentalApiServer(rentalSystem,
+                Integer.getInteger("api.port", DEFAULT_PORT),
+                Integer.getInteger("api.backlog", DEFAULT_BACKLOG),
+                Integer.getInteger("api.maxConcurrent", DEFAULT_MAX_CONCURRENT),
+                Long.getLong("api.acquireTimeoutMillis", DEFAULT_ACQUIRE_TIMEOUT_MILLIS));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.stop(2);
+            rentalSystem.shutdown();
+        }));
+        api.start();
+        EventLog.info("apiServer").with("port", api.getPort()).log("Rental API listening");
+    }
+
+    void start() {
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests and wait for running ones
+     * @param delaySeconds longest wait for running requests
+     */
+    void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // ---- Resources ----
+
+    private Object vehicles(HttpExchange exchange, String[] path) throws ApiException {
+        String method = exchange.getRequestMethod();
+        if (path.length == 1) {
+            if ("GET".equals(method)) {
+                return findVehicles(queryParams(exchange));
+            }
+            if ("POST".equals(method)) {
+                requireAdmin(exchange);
+                Map<String, Object> body = readBody(exchange);
+                Vehicle vehicle = new Vehicle(requireString(body, "vehicleId"), requireString(body, "type"),
+                        requireString(body, "brand"), requireString(body, "model"),
+                        requirePrice(body, "basePricePerDay"));
+                if (rentalSystem.getVehicle(vehicle.getVehicleId()) != null) {
+                    throw new ApiException(409, "Vehicle " + vehicle.getVehicleId() + " already exists");
+                }
+                if (!rentalSystem.addVehicle(vehicle)) {
+                    throw new ApiException(500, "Vehicle could not be added");
+                }
+                exchange.getResponseHeaders().set("Location", "/vehicles/" + vehicle.getVehicleId());
+                return created(vehicleJson(vehicle));
+            }
+            throw methodNotAllowed();
+        }
+        String vehicleId = path[1];
+        if (path.length == 3 && "quote".equals(path[2]) && "GET".equals(method)) {
+            int days = parseInt(queryParams(exchange).get("days"), "days", 1);
+            if (days <= 0) {
+                throw new ApiException(400, "days must be positive");
+            }
+            PricingEngine.Quote quote = rentalSystem.quote(requireVehicle(vehicleId), days);
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("vehicleId", quote.getVehicleId());
+            json.put("start", quote.getStart().toString());
+            json.put("days", quote.getDays());
+            json.put("total", quote.getTotal());
+            return json;
+        }
+        if (path.length != 2) {
+            throw notFound();
+        }
+        switch (method) {
+            case "GET":
+                return vehicleJson(requireVehicle(vehicleId));
+            case "PUT": {
+                requireAdmin(exchange);
+                Map<String, Object> body = readBody(exchange);
+                double price = requirePrice(body, "basePricePerDay");
+                UpdateResult result = rentalSystem.updateVehicle(vehicleId, price, optionalVersion(body.get("version")));
+                switch (result) {
+                    case UPDATED:
+                        return vehicleJson(requireVehicle(vehicleId));
+                    case CONFLICT:
+                        throw new ApiException(409, "Vehicle " + vehicleId + " was changed; read it again");
+                    case NOT_FOUND:
+                        throw new ApiException(404, "Vehicle " + vehicleId + " not found");
+                    default:
+                        throw new ApiException(500, "Vehicle could not be updated");
+                }
+            }
+            case "DELETE": {
+                requireAdmin(exchange);
+                long version = optionalVersion(queryParams(exchange).get("version"));
+                DeleteResult result = rentalSystem.deleteVehicle(vehicleId, version);
+                switch (result) {
+                    case DELETED:
+                        return null;
+                    case RENTED:
+                        throw new ApiException(409, "Vehicle " + vehicleId + " is rented out");
+                    case CONFLICT:
+                        throw new ApiException(409, "Vehicle " + vehicleId + " was changed; read it again");
+                    case NOT_FOUND:
+                        throw new ApiException(404, "Vehicle " + vehicleId + " not found");
+                    default:
+                        throw new ApiException(500, "Vehicle could not be deleted");
+                }
+            }
+            default:
+                throw methodNotAllowed();
+        }
+    }
+
+    private Object customers(HttpExchange exchange, String[] path) throws ApiException {
+        String method = exchange.getRequestMethod();
+        if (path.length == 1) {
+            if ("POST".equals(method)) {
+                Map<String, Object> body = readBody(exchange);
+                String name = requireString(body, "name");
+                String password = requireString(body, "password");
+                String customerId = rentalSystem.nextCustomerId();
+                if (customerId == null) {
+                    throw new ApiException(503, "Customer ID could not be allocated; try again later");
+                }
+                Customer customer = new Customer(customerId, name, password);
+                if (!rentalSystem.addCustomer(customer)) {
+                    throw new ApiException(500, "Customer could not be registered");
+                }
+                exchange.getResponseHeaders().set("Location", "/customers/" + customer.getCustomerId());
+                return created(customerJson(customer));
+            }
+            if ("GET".equals(method)) {
+                requireAdmin(exchange);
+                List<Object> customers = new ArrayList<>();
+                for (Customer customer : rentalSystem.getCustomers()) {
+                    customers.add(customerJson(customer));
+                }
+                return customers;
+            }
+            throw methodNotAllowed();
+        }
+        if (!"GET".equals(method)) {
+            throw methodNotAllowed();
+        }
+        String customerId = path[1];
+        requireAdminOrCustomer(exchange, customerId);
+        if (path.length == 2) {
+            Customer customer = rentalSystem.findCustomerById(customerId);
+            if (customer == null) {
+                throw notFound();
+            }
+            return customerJson(customer);
+        }
+        if (path.length == 3 && "rentals".equals(path[2])) {
+            return rentalsJson(rentalSystem.getRentalHistory(customerId));
+        }
+        throw notFound();
+    }
+
+    private Object rentals(HttpExchange exchange, String[] path) throws ApiException {
+        if (path.length != 1) {
+            throw notFound();
+        }
+        String method = exchange.getRequestMethod();
+        if ("GET".equals(method)) {
+            requireAdmin(exchange);
+            Map<String, String> params = queryParams(exchange);
+            int after = parseInt(params.get("after"), "after", 0);
+            return rentalsJson(rentalSystem.getRentalsPage(after, parseLimit(params)));
+        }
+        if (!"POST".equals(method)) {
+            throw methodNotAllowed();
+        }
+        Customer customer = requireCustomer(exchange);
+        Map<String, Object> body = readBody(exchange);
+        Vehicle vehicle = requireVehicle(requireString(body, "vehicleId"));
+        int days = requireInt(body, "days");
+        if (days <= 0) {
+            throw new ApiException(400, "days must be positive");
+        }
+        RentResult result = rentalSystem.rentVehicle(vehicle, customer, days);
+        switch (result) {
+            case RENTED:
+                return created(resultJson(result));
+            case ALREADY_RENTED:
+            case RESERVED:
+            case CONFLICT:
+                throw new ApiException(409, result.name());
+            case NOT_FOUND:
+                throw new ApiException(404, result.name());
+            default:
+                throw new ApiException(500, result.name());
+        }
+    }
+
+    private Object returns(HttpExchange exchange, String[] path) throws ApiException {
+        if (path.length != 1) {
+            throw notFound();
+        }
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            throw methodNotAllowed();
+        }
+        Customer customer = requireCustomer(exchange);
+        String vehicleId = requireString(readBody(exchange), "vehicleId");
+        ReturnResult result = rentalSystem.returnVehicleFor(customer.getCustomerId(), vehicleId);
+        switch (result) {
+            case RETURNED:
+                return resultJson(result);
+            case NOT_RENTED:
+                throw new ApiException(409, result.name());
+            case NOT_FOUND:
+                throw new ApiException(404, result.name());
+            default:
+                throw new ApiException(500, result.name());
+        }
+    }
+
+    // Served without a permit so scrapes still work while the API is saturated
+    private static void metrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            byte[] bytes = Metrics.prometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private List<Object> findVehicles(Map<String, String> params) throws ApiException {
+        VehicleQuery.Builder query = VehicleQuery.builder()
+                .type(params.get("type"))
+                .brand(params.get("brand"))
+                .model(params.get("model"))
+                .limit(parseLimit(params));
+        if (params.containsKey("minPrice")) {
+            query.minPrice(parseDouble(params.get("minPrice"), "minPrice"));
+        }
+        if (params.containsKey("maxPrice")) {
+            query.maxPrice(parseDouble(params.get("maxPrice"), "maxPrice"));
+        }
+        if (params.containsKey("available")) {
+            query.available(Boolean.parseBoolean(params.get("available")));
+        }
+        if (params.containsKey("sort")) {
+            try {
+                query.sortBy(VehicleQuery.Sort.valueOf(params.get("sort").toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new ApiException(400, "Unknown sort " + params.get("sort"));
+            }
+        }
+        List<Object> vehicles = new ArrayList<>();
+        try {
+            for (Vehicle vehicle : rentalSystem.findVehicles(query.build())) {
+                vehicles.add(vehicleJson(vehicle));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, e.getMessage());
+        }
+        return vehicles;
+    }
+
+    // ---- Authentication ----
+
+    private void requireAdmin(HttpExchange exchange) throws ApiException {
+        String[] credentials = basicCredentials(exchange);
+        if (credentials == null || !rentalSystem.adminLogin(credentials[0], credentials[1])) {
+            throw unauthorized();
+        }
+    }
+
+    private Customer requireCustomer(HttpExchange exchange) throws ApiException {
+        String[] credentials = basicCredentials(exchange);
+        if (credentials == null) {
+            throw unauthorized();
+        }
+        Customer customer = rentalSystem.authenticateCustomer(credentials[0], credentials[1]);
+        if (customer == null) {
+            throw unauthorized();
+        }
+        return customer;
+    }
+
+    private void requireAdminOrCustomer(HttpExchange exchange, String customerId) throws ApiException {
+        String[] credentials = basicCredentials(exchange);
+        if (credentials == null) {
+            throw unauthorized();
+        }
+        if (credentials[0].equals(customerId)) {
+            requireCustomer(exchange);
+        } else if (!rentalSystem.adminLogin(credentials[0], credentials[1])) {
+            throw new ApiException(403, "Forbidden");
+        }
+    }
+
+    // Returns {user, password}, or null if the request has no Basic credentials
+    private static String[] basicCredentials(HttpExchange exchange) throws ApiException {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Basic ", 0, 6)) {
+            return null;
+        }
+        String decoded;
+        try {
+            decoded = new String(Base64.getDecoder().decode(header.substring(6).trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Malformed Authorization header");
+        }
+        int colon = decoded.indexOf(':');
+        if (colon < 0) {
+            throw new ApiException(400, "Malformed Authorization header");
+        }
+        return new String[] {decoded.substring(0, colon), decoded.substring(colon + 1)};
+    }
+
+    // ---- Request handling ----
+
+    /**
+     * A resource method: receives the exchange and the decoded path segments, returns the
+     * response body (or {@link Created}, or null for 204)
+     */
+    private interface Resource {
+        Object handle(HttpExchange exchange, String[] path) throws ApiException;
+    }
+
+    // Wraps a resource with the concurrency limit, error mapping and JSON encoding
+    private HttpHandler limited(Resource resource) {
+        return exchange -> {
+            long started = System.nanoTime();
+            try {
+                boolean acquired;
+                try {
+                    acquired = permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    acquired = false;
+                }
+                if (!acquired) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    sendError(exchange, 503, "Server busy");
+                    return;
+                }
+                try {
+                    Object result = resource.handle(exchange, pathSegments(exchange));
+                    if (result == null) {
+                        send(exchange, 204, null);
+                    } else if (result instanceof Created) {
+                        send(exchange, 201, ((Created) result).body);
+                    } else {
+                        send(exchange, 200, result);
+                    }
+                } catch (ApiException e) {
+                    if (e.status == 401) {
+                        exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"rentals\"");
+                    }
+                    if (e.status == 405) {
+                        exchange.getResponseHeaders().set("Allow", "GET, POST, PUT, DELETE");
+                    }
+                    sendError(exchange, e.status, e.getMessage());
+                } catch (RejectedExecutionException e) {
+                    // Password hashing is saturated
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    sendError(exchange, 503, "Server busy");
+                } catch (RuntimeException e) {
+                    EventLog.error("apiServer").with("method", exchange.getRequestMethod())
+                            .with("path", exchange.getRequestURI().getPath()).cause(e).log("Error handling request");
+                    sendError(exchange, 500, "Internal error");
+                } finally {
+                    permits.release();
+                }
+            } finally {
+                exchange.close();
+                EventLog.debug("apiServer").with("method", exchange.getRequestMethod())
+                        .with("path", exchange.getRequestURI().getPath()).with("status", exchange.getResponseCode())
+                        .elapsed(started).log("Request handled");
+            }
+        };
+    }
+
+    private static String[] pathSegments(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getRawPath();
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(URLDecoder.decode(segment, StandardCharsets.UTF_8));
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    private static Map<String, String> queryParams(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readBody(HttpExchange exchange) throws ApiException {
+        byte[] bytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        } catch (IOException e) {
+            throw new ApiException(400, "Could not read request body");
+        }
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new ApiException(413, "Request body larger than " + MAX_BODY_BYTES + " bytes");
+        }
+        Object body;
+        try {
+            body = Json.parse(new String(bytes, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, e.getMessage());
+        }
+        if (!(body instanceof Map)) {
+            throw new ApiException(400, "Request body must be a JSON object");
+        }
+        return (Map<String, Object>) body;
+    }
+
+    private static void send(HttpExchange exchange, int status, Object body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", message);
+        send(exchange, status, body);
+    }
+
+    // ---- Field helpers ----
+
+    private Vehicle requireVehicle(String vehicleId) throws ApiException {
+        Vehicle vehicle = rentalSystem.getVehicle(vehicleId);
+        if (vehicle == null) {
+            throw new ApiException(404, "Vehicle " + vehicleId + " not found");
+        }
+        return vehicle;
+    }
+
+    private static String requireString(Map<String, Object> body, String field) throws ApiException {
+        Object value = body.get(field);
+        if (!(value instanceof String) || ((String) value).isBlank()) {
+            throw new ApiException(400, field + " is required");
+        }
+        return ((String) value).trim();
+    }
+
+    private static int requireInt(Map<String, Object> body, String field) throws ApiException {
+        Object value = body.get(field);
+        if (!(value instanceof BigDecimal)) {
+            throw new ApiException(400, field + " must be a number");
+        }
+        try {
+            return ((BigDecimal) value).intValueExact();
+        } catch (ArithmeticException e) {
+            throw new ApiException(400, field + " must be a whole number");
+        }
+    }
+
+    private static double requirePrice(Map<String, Object> body, String field) throws ApiException {
+        Object value = body.get(field);
+        if (!(value instanceof BigDecimal) || ((BigDecimal) value).signum() <= 0) {
+            throw new ApiException(400, field + " must be a positive number");
+        }
+        return ((BigDecimal) value).doubleValue();
+    }
+
+    // The version a conditional write expects, from a JSON number or a query parameter;
+    // ANY_VERSION if absent
+    private static long optionalVersion(Object value) throws ApiException {
+        if (value == null || "".equals(value)) {
+            return VehicleRepository.ANY_VERSION;
+        }
+        long version = -1;
+        try {
+            if (value instanceof BigDecimal) {
+                version = ((BigDecimal) value).longValueExact();
+            } else if (value instanceof String) {
+                version = Long.parseLong((String) value);
+            }
+        } catch (ArithmeticException | NumberFormatException e) {
+            version = -1;
+        }
+        if (version < 0) {
+            throw new ApiException(400, "version must be a non-negative whole number");
+        }
+        return version;
+    }
+
+    private static int parseInt(String value, String name, int defaultValue) throws ApiException {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, name + " must be a whole number");
+        }
+    }
+
+    // Page size from the limit parameter; 0 would mean unlimited to the repository, so it is refused too
+    private static int parseLimit(Map<String, String> params) throws ApiException {
+        int limit = parseInt(params.get("limit"), "limit", DEFAULT_PAGE_SIZE);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ApiException(400, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    private static double parseDouble(String value, String name) throws ApiException {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, name + " must be a number");
+        }
+    }
+
+    // ---- JSON views ----
+
+    private static Map<String, Object> vehicleJson(Vehicle vehicle) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("vehicleId", vehicle.getVehicleId());
+        json.put("type", vehicle.getType());
+        json.put("brand", vehicle.getBrand());
+        json.put("model", vehicle.getModel());
+        json.put("basePricePerDay", vehicle.getBasePricePerDay());
+        json.put("available", vehicle.isAvailable());
+        json.put("version", vehicle.getVersion());
+        return json;
+    }
+
+    // Never includes the password
+    private static Map<String, Object> customerJson(Customer customer) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("customerId", customer.getCustomerId());
+        json.put("name", customer.getName());
+        return json;
+    }
+
+    private static List<Object> rentalsJson(List<Rental> rentals) {
+        List<Object> list = new ArrayList<>(rentals.size());
+        for (Rental rental : rentals) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("rentalId", rental.getRentalId());
+            json.put("vehicleId", rental.getVehicle().getVehicleId());
+            json.put("customerId", rental.getCustomer().getCustomerId());
+            json.put("days", rental.getDays());
+            json.put("rentedAt", timestamp(rental.getRentedAt()));
+            json.put("returnedAt", timestamp(rental.getReturnedAt()));
+            json.put("totalPrice", rental.getTotalPrice());
+            list.add(json);
+        }
+        return list;
+    }
+
+    private static Map<String, Object> resultJson(Enum<?> result) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("result", result.name());
+        return json;
+    }
+
+    private static String timestamp(OffsetDateTime time) {
+        return time == null ? null : time.toString();
+    }
+
+    private static Created created(Object body) {
+        return new Created(body);
+    }
+
+    private static ApiException notFound() {
+        return new ApiException(404, "Not found");
+    }
+
+    private static ApiException methodNotAllowed() {
+        return new ApiException(405, "Method not allowed");
+    }
+
+    private static ApiException unauthorized() {
+        return new ApiException(401, "Unauthorized");
+    }
+
+    // Marks a response body to be sent with 201 Created
+    private static final class Created {
+        final Object body;
+
+        Created(Object body) {
+            this.body = body;
+        }
+    }
+
+    // An error response with its HTTP status
+    private static final class ApiException extends Exception {
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,701 @@
+package org.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * Local write-ahead journal for rent and return events, so a desk clerk's rental is confirmed
+ * once it is on local disk instead of after a PostgreSQL commit. Enabled with
+ * {@code -Djournal.enabled=true} on the PostgreSQL backend.
+ * <p>
+ * Events are appended to a memory-mapped file of {@code -Djournal.sizeBytes} (64 MB) and forced
+ * to disk in groups: a flusher thread forces everything appended so far once
+ * {@code -Djournal.flushEvents} (64) events are waiting or {@code -Djournal.flushMillis} (2 ms)
+ * after the first one, and every appender waits for the force that covers its event. A shipper
+ * thread then applies the durable events to the database in batches of up to
+ * {@code -Djournal.shipBatch} (500), one transaction each, retrying every
+ * {@code -Djournal.shipRetryMillis} (1000 ms) while the database is unreachable.
+ * <p>
+ * Rent and return decisions are made locally: the latest unshipped event of a vehicle answers
+ * whether it is available, and the caller's view of the database answers for the others. The
+ * database can still refuse a shipped rental, e.g. when another app instance rented the vehicle first;
+ * {@link Listener} hears about every shipped and refused event.
+ * <p>
+ * A record is {@code [int length][int crc32][payload]} after a 32-byte header holding the magic
+ * number, the format version, the sequence number of the first record and the journal ID.
+ * Sequence numbers run without gaps, so a record that does not continue the sequence, or fails
+ * its checksum, ends the journal on recovery. The database remembers the last sequence number
+ * shipped per journal ID, so events shipped before a crash are not applied twice. Once
+ * everything is shipped the file is reused from the start.
+ */
+final class RentalJournal {
+    static final boolean ENABLED = Boolean.getBoolean("journal.enabled");
+    static final String FILE = System.getProperty("journal.file", "rental-journal.bin");
+    private static final long SIZE_BYTES = Long.getLong("journal.sizeBytes", 64L * 1024 * 1024);
+    private static final long FLUSH_MILLIS = Long.getLong("journal.flushMillis", 2);
+    private static final int FLUSH_EVENTS = Integer.getInteger("journal.flushEvents", 64);
+    private static final int SHIP_BATCH = Integer.getInteger("journal.shipBatch", 500);
+    private static final long SHIP_RETRY_MILLIS = Long.getLong("journal.shipRetryMillis", 1000);
+
+    // How long callers wait for a force, for free space or for the shipper to catch up
+    private static final long WAIT_MILLIS = Long.getLong("journal.waitMillis", 5000);
+
+    // Event types; existing journals depend on these values
+    static final byte RENT = 1;
+    static final byte RETURN = 2;
+
+    private static final int MAGIC = 0x524a4e4c;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int FIRST_SEQ_OFFSET = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private static final String IO_ERROR = "58030";
+    private static final String DISK_FULL = "53100";
+    private static final String TIMED_OUT = "57014";
+
+    private static final Metrics.Operation SHIP_METRICS = Metrics.operation("journalShip");
+
+    /**
+     * One rent or return, as accepted by the journal
+     */
+    static final class Event {
+        private final long seq;
+        private final byte type;
+        private final long timeMillis;
+        private final String vehicleId;
+        private final String customerId;
+        private final int days;
+        private final BigDecimal priceFactor;
+
+        Event(long seq, byte type, long timeMillis, String vehicleId, String customerId, int days,
+              BigDecimal priceFactor) {
+            this.seq = seq;
+            this.type = type;
+            this.timeMillis = timeMillis;
+            this.vehicleId = vehicleId;
+            this.customerId = customerId;
+            this.days = days;
+            this.priceFactor = priceFactor;
+        }
+
+        long getSeq() {
+            return seq;
+        }
+
+        byte getType() {
+            return type;
+        }
+
+        // When the event was accepted; the database records this time, not the time it was shipped
+        OffsetDateTime getTime() {
+            return Instant.ofEpochMilli(timeMillis).atOffset(ZoneOffset.UTC);
+        }
+
+        String getVehicleId() {
+            return vehicleId;
+        }
+
+        // Null for returns
+        String getCustomerId() {
+            return customerId;
+        }
+
+        int getDays() {
+            return days;
+        }
+
+        BigDecimal getPriceFactor() {
+            return priceFactor;
+        }
+    }
+
+    /**
+     * Where events are shipped to
+     */
+    interface Target {
+        /**
+         * Apply the events after the target's checkpoint for this journal and move the checkpoint
+         * past them, then tell the listener about each event applied or refused. Events up to the
+         * checkpoint were shipped before and are skipped silently.
+         * @throws SQLException if the target is unavailable; the same events are shipped again later
+         */
+        void ship(String journalId, List<Event> events, Listener listener) throws SQLException;
+    }
+
+    /**
+     * Told about every shipped event, on the shipper thread and before the journal stops
+     * answering availability questions for the vehicle
+     */
+    interface Listener {
+        void rentShipped(Event event, RentalRepository.RentOutcome outcome);
+
+        /**
+         * @param outcome RETURNED, NOT_RENTED if the vehicle was returned some other way first, or
+         *                NOT_FOUND if it no longer exists
+         */
+        void returnShipped(Event event, RentalRepository.ReturnOutcome outcome);
+
+        /**
+         * The target refused the event for good; it will not be shipped again
+         */
+        void rejected(Event event, SQLException e);
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final String journalId;
+    private final Target target;
+    private final Listener listener;
+    private final long flushNanos;
+    private final int flushEvents;
+    private final int shipBatch;
+    private final long shipRetryMillis;
+    private final long waitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private final Condition shipped = lock.newCondition();
+
+    // Guarded by lock
+    private final ArrayDeque<Event> unshipped = new ArrayDeque<>();
+    private final Map<String, Event> latestByVehicle = new HashMap<>();
+    private long nextSeq;
+    private long durableSeq;
+    private long shippedSeq;
+    private int writeOffset;
+    private int forcedOffset;
+    private int unforcedEvents;
+    private long firstUnforcedAt;
+    private boolean closed;
+
+    private final Thread flusher;
+    private final Thread shipper;
+    private volatile boolean stopping;
+
+    /**
+     * Open or create a journal with the sizes and intervals from the system properties, recover
+     * its unshipped events and start shipping them
+     * @param file journal file, created if missing; an existing file keeps its size
+     * @param target where events are shipped to
+     * @param listener told about shipped events
+     * @throws IOException if the file cannot be opened or is not a rental journal
+     */
+    static RentalJournal open(Path file, Target target, Listener listener) throws IOException {
+        RentalJournal journal = new RentalJournal(file, SIZE_BYTES, FLUSH_MILLIS, FLUSH_EVENTS, SHIP_BATCH,
+                SHIP_RETRY_MILLIS, WAIT_MILLIS, target, listener);
+        journal.start();
+        return journal;
+    }
+
+    RentalJournal(Path file, long sizeBytes, long flushMillis, int flushEvents, int shipBatch, long shipRetryMillis,
+                  long waitMillis, Target target, Listener listener) throws IOException {
+        if (sizeBytes < HEADER_BYTES + 1024 || sizeBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal size must be between 1 KB and 2 GB: " + sizeBytes);
+        }
+        this.file = file;
+        this.target = target;
+        this.listener = listener;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.flushEvents = Math.max(1, flushEvents);
+        this.shipBatch = Math.max(1, shipBatch);
+        this.shipRetryMillis = shipRetryMillis;
+        this.waitNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, created ? sizeBytes : channel.size());
+            if (created) {
+                UUID id = UUID.randomUUID();
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(FIRST_SEQ_OFFSET, 1);
+                buffer.putLong(16, id.getMostSignificantBits());
+                buffer.putLong(24, id.getLeastSignificantBits());
+                buffer.force();
+            } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a rental journal: " + file);
+            }
+            journalId = new UUID(buffer.getLong(16), buffer.getLong(24)).toString();
+            recover();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        flusher = new Thread(this::flushLoop, "rental-journal-flusher");
+        flusher.setDaemon(true);
+        shipper = new Thread(this::shipLoop, "rental-journal-shipper");
+        shipper.setDaemon(true);
+    }
+
+    void start() {
+        flusher.start();
+        shipper.start();
+    }
+
+    /**
+     * Journal a rental if the vehicle is available, and wait until it is on disk
+     * @param availableOtherwise whether the vehicle is available as far as the database is
+     *                           concerned; asked only when the journal holds no unshipped event
+     *                           for it, under the journal's lock, so it must be fast
+     * @return the event's sequence number, or 0 if the vehicle is rented
+     * @throws SQLException if the journal is full, closed or cannot be forced to disk in time;
+     *                      in the last case the event may still be shipped
+     */
+    long rent(String vehicleId, String customerId, int days, BigDecimal priceFactor,
+              BooleanSupplier availableOtherwise) throws SQLException {
+        long seq;
+        lock.lock();
+        try {
+            Event latest = latestByVehicle.get(vehicleId);
+            boolean available = latest != null ? latest.getType() == RETURN : availableOtherwise.getAsBoolean();
+            if (!available) {
+                return 0;
+            }
+            seq = append(RENT, vehicleId, customerId, days, priceFactor);
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(seq);
+        return seq;
+    }
+
+    /**
+     * Journal a return if the vehicle is rented, and wait until it is on disk
+     * @param availableOtherwise like {@link #rent}
+     * @return the event's sequence number, or 0 if the vehicle is not rented
+     * @throws SQLException like {@link #rent}
+     */
+    long returnVehicle(String vehicleId, BooleanSupplier availableOtherwise) throws SQLException {
+        long seq;
+        lock.lock();
+        try {
+            Event latest = latestByVehicle.get(vehicleId);
+            boolean rented = latest != null ? latest.getType() == RENT : !availableOtherwise.getAsBoolean();
+            if (!rented) {
+                return 0;
+            }
+            seq = append(RETURN, vehicleId, null, 0, BigDecimal.ZERO);
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(seq);
+        return seq;
+    }
+
+    /**
+     * Wait until every event journaled so far has been shipped, so the database reflects them
+     * @throws SQLException if the shipper does not catch up within journal.waitMillis
+     */
+    void awaitShipped() throws SQLException {
+        lock.lock();
+        try {
+            long seq = nextSeq - 1;
+            long remaining = waitNanos;
+            while (shippedSeq < seq) {
+                if (remaining <= 0) {
+                    throw new SQLException("Timed out waiting for the rental journal to ship "
+                            + (seq - shippedSeq) + " events", TIMED_OUT);
+                }
+                remaining = shipped.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for the rental journal to ship", TIMED_OUT, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Events journaled but not yet shipped
+     */
+    int getBacklog() {
+        lock.lock();
+        try {
+            return unshipped.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop accepting events, ship what is waiting for up to journal.waitMillis and stop the
+     * background threads. Anything left unshipped is recovered on the next open.
+     */
+    void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signalAll();
+            long remaining = waitNanos;
+            while (shippedSeq < nextSeq - 1 && remaining > 0) {
+                remaining = shipped.awaitNanos(remaining);
+            }
+            if (unshipped.isEmpty()) {
+                rewind(); // Nothing to recover on the next open
+            } else {
+                EventLog.warn("rentalJournal").with("file", file.toString()).with("events", unshipped.size())
+                        .log("Closing with unshipped events; they are shipped on the next start");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+
+        stopping = true;
+        shipper.interrupt();
+        flusher.interrupt();
+        try {
+            shipper.join(waitNanos / 1_000_000);
+            flusher.join(waitNanos / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException | UncheckedIOException e) {
+            EventLog.error("rentalJournal").with("file", file.toString()).cause(e).log("Error closing journal");
+        }
+    }
+
+    // Writes one record at the end of the journal, making room first. Called with the lock held.
+    private long append(byte type, String vehicleId, String customerId, int days, BigDecimal priceFactor)
+            throws SQLException {
+        if (closed) {
+            throw new SQLException("Rental journal is closed");
+        }
+        long timeMillis = System.currentTimeMillis();
+        byte[] payload = encode(type, timeMillis, vehicleId, customerId, days, priceFactor);
+        makeRoom(RECORD_HEADER_BYTES + payload.length);
+
+        // Numbered only now: other appenders may get in while this one waits for room
+        Event event = new Event(nextSeq++, type, timeMillis, vehicleId, customerId, days, priceFactor);
+        ByteBuffer.wrap(payload).putLong(0, event.getSeq());
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        buffer.putInt(writeOffset, payload.length);
+        buffer.putInt(writeOffset + 4, (int) crc.getValue());
+        buffer.put(writeOffset + RECORD_HEADER_BYTES, payload);
+        writeOffset += RECORD_HEADER_BYTES + payload.length;
+        terminate();
+
+        unshipped.addLast(event);
+        latestByVehicle.put(vehicleId, event);
+        if (unforcedEvents++ == 0) {
+            firstUnforcedAt = System.nanoTime();
+        }
+        appended.signal();
+        return event.getSeq();
+    }
+
+    // Waits for the shipper when the journal is full, and starts over at the front of the file
+    // once everything in it has been shipped
+    private void makeRoom(int recordBytes) throws SQLException {
+        if (recordBytes > buffer.capacity() - HEADER_BYTES) {
+            throw new SQLException("Journal record of " + recordBytes + " bytes does not fit", DISK_FULL);
+        }
+        long remaining = waitNanos;
+        try {
+            while (writeOffset + recordBytes > buffer.capacity()) {
+                if (shippedSeq == nextSeq - 1) {
+                    rewind();
+                    return;
+                }
+                if (remaining <= 0 || closed) {
+                    throw new SQLException("Rental journal is full, " + unshipped.size()
+                            + " events are waiting to be shipped", DISK_FULL);
+                }
+                remaining = shipped.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for journal space", DISK_FULL, e);
+        }
+    }
+
+    // Everything is shipped, hence forced: record where the sequence continues and end the
+    // journal at the front, so old records are never read again
+    private void rewind() {
+        buffer.putLong(FIRST_SEQ_OFFSET, nextSeq);
+        writeOffset = HEADER_BYTES;
+        forcedOffset = HEADER_BYTES;
+        terminate();
+        buffer.force(0, HEADER_BYTES + 4);
+    }
+
+    // A zero length after the last record marks the end of the journal, so recovery does not
+    // mistake older records beyond it for a torn write
+    private void terminate() {
+        if (writeOffset + 4 <= buffer.capacity()) {
+            buffer.putInt(writeOffset, 0);
+        }
+    }
+
+    private void awaitDurable(long seq) throws SQLException {
+        lock.lock();
+        try {
+            long remaining = waitNanos;
+            while (durableSeq < seq) {
+                if (remaining <= 0) {
+                    throw new SQLException("Timed out forcing the rental journal to disk", IO_ERROR);
+                }
+                remaining = durable.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted forcing the rental journal to disk", IO_ERROR, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Group commit: one force covers every event appended while the previous one ran or
+    // during the flush window
+    private void flushLoop() {
+        lock.lock();
+        try {
+            while (true) {
+                while (unforcedEvents == 0) {
+                    if (closed) {
+                        return;
+                    }
+                    appended.await();
+                }
+                long deadline = firstUnforcedAt + flushNanos;
+                long remaining;
+                while (unforcedEvents < flushEvents && !closed && (remaining = deadline - System.nanoTime()) > 0) {
+                    appended.awaitNanos(remaining);
+                }
+
+                int from = forcedOffset;
+                int to = writeOffset;
+                long seq = nextSeq - 1;
+                int events = unforcedEvents;
+                unforcedEvents = 0;
+                boolean forced = false;
+                lock.unlock();
+                try {
+                    buffer.force(from, Math.min(to + 4, buffer.capacity()) - from);
+                    forced = true;
+                } catch (UncheckedIOException e) {
+                    EventLog.error("rentalJournal").with("file", file.toString()).cause(e)
+                            .log("Error forcing journal to disk, retrying");
+                } finally {
+                    lock.lock();
+                }
+
+                if (forced) {
+                    forcedOffset = to;
+                    durableSeq = seq;
+                    durable.signalAll();
+                } else {
+                    unforcedEvents += events;
+                    if (stopping) {
+                        return;
+                    }
+                    appended.await(shipRetryMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped by close()
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void shipLoop() {
+        while (!stopping) {
+            List<Event> batch;
+            try {
+                batch = nextBatch();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long started = Metrics.start();
+            boolean done = false;
+            try {
+                target.ship(journalId, batch, listener);
+                SHIP_METRICS.rows(batch.size());
+                done = true;
+            } catch (SQLException | RuntimeException e) {
+                SHIP_METRICS.error();
+                EventLog.warn("rentalJournal").with("events", batch.size()).with("firstSeq", batch.get(0).getSeq())
+                        .cause(e).elapsed(started).log("Error shipping journal, retrying");
+            } finally {
+                SHIP_METRICS.record(started);
+            }
+
+            if (done) {
+                shipped(batch);
+            } else {
+                try {
+                    Thread.sleep(shipRetryMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Up to shipBatch of the oldest durable, unshipped events
+    private List<Event> nextBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            while (durableSeq == shippedSeq) {
+                durable.await();
+            }
+            List<Event> batch = new ArrayList<>(Math.min(shipBatch, unshipped.size()));
+            Iterator<Event> events = unshipped.iterator();
+            while (batch.size() < shipBatch && events.hasNext()) {
+                Event event = events.next();
+                if (event.getSeq() > durableSeq) {
+                    break;
+                }
+                batch.add(event);
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void shipped(List<Event> batch) {
+        lock.lock();
+        try {
+            for (Event event : batch) {
+                unshipped.removeFirst();
+                latestByVehicle.remove(event.getVehicleId(), event);
+            }
+            shippedSeq = batch.get(batch.size() - 1).getSeq();
+            // Start over early rather than when an append runs out of room, which may be while
+            // the database is down
+            if (shippedSeq == nextSeq - 1 && writeOffset > buffer.capacity() / 2) {
+                rewind();
+            }
+            shipped.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Reads back the records that continue the sequence; they are all durable but may or may
+    // not have been shipped before the journal was closed
+    private void recover() throws IOException {
+        long firstSeq = buffer.getLong(FIRST_SEQ_OFFSET);
+        long seq = firstSeq - 1;
+        int offset = HEADER_BYTES;
+        boolean torn = false;
+
+        while (buffer.capacity() - offset >= RECORD_HEADER_BYTES) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > buffer.capacity() - offset - RECORD_HEADER_BYTES) {
+                torn = true;
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(offset + RECORD_HEADER_BYTES, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                torn = true;
+                break;
+            }
+            Event event = decode(payload);
+            if (event.getSeq() != seq + 1) {
+                // An older record beyond the end of the journal, left from before a rewind
+                break;
+            }
+            unshipped.addLast(event);
+            latestByVehicle.put(event.getVehicleId(), event);
+            seq = event.getSeq();
+            offset += RECORD_HEADER_BYTES + length;
+        }
+
+        if (torn) {
+            EventLog.warn("rentalJournal").with("file", file.toString()).with("offset", offset)
+                    .log("Discarding torn or corrupt end of journal");
+        }
+        if (!unshipped.isEmpty()) {
+            EventLog.info("rentalJournal").with("file", file.toString()).with("events", unshipped.size())
+                    .with("firstSeq", firstSeq).log("Recovered unshipped journal events");
+        }
+        nextSeq = seq + 1;
+        durableSeq = seq;
+        shippedSeq = firstSeq - 1;
+        writeOffset = offset;
+        forcedOffset = offset;
+        terminate();
+    }
+
+    // The payload starts with room for the sequence number
+    private static byte[] encode(byte type, long timeMillis, String vehicleId, String customerId, int days,
+                                 BigDecimal priceFactor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(0);
+            out.writeByte(type);
+            out.writeLong(timeMillis);
+            out.writeUTF(vehicleId);
+            out.writeUTF(customerId == null ? "" : customerId);
+            out.writeInt(days);
+            out.writeUTF(priceFactor.toPlainString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Event decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long seq = in.readLong();
+        byte type = in.readByte();
+        long timeMillis = in.readLong();
+        String vehicleId = in.readUTF();
+        String customerId = in.readUTF();
+        int days = in.readInt();
+        BigDecimal priceFactor = new BigDecimal(in.readUTF());
+        return new Event(seq, type, timeMillis, vehicleId, customerId.isEmpty() ? null : customerId, days,
+                priceFactor);
+    }
+}
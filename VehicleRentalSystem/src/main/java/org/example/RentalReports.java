@@ -0,0 +1,234 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Revenue and utilization reports read from summary tables instead of the rentals ledger.
+ * The summaries are kept current by the rent and return statements themselves: they embed
+ * the CTEs built by {@link #recordRentalSql} and {@link #recordReturnSql}, so every report
+ * costs O(groups) however long the history is.
+ * <p>
+ * Revenue is booked on the rental day from the price snapshot. When a rental is returned its
+ * hours are booked on each day it covered, and the return itself on the return day; open
+ * rentals are added by {@link #utilization} when it is asked. rental_daily_summary rows are
+ * spread over {@link #SUMMARY_SLOTS} slots per (day, type) so concurrent rentals of one type
+ * do not queue on a single row lock.
+ */
+class RentalReports {
+    static final int SUMMARY_SLOTS = 8;
+
+    // Power-of-two mask, and never negative unlike abs(hashtext(...))
+    private static final String SLOT_SQL = "(hashtext(vehicle_id) & " + (SUMMARY_SLOTS - 1) + ")";
+    static final String HOURS_SQL = "extract(epoch FROM returned_at - rented_at) / 3600";
+
+    /**
+     * One group of a report
+     */
+    static class Row {
+        final String key;
+        final long rentals;
+        final double revenue;
+        final long returns;
+        final double rentedHours;
+
+        Row(String key, long rentals, double revenue, long returns, double rentedHours) {
+            this.key = key;
+            this.rentals = rentals;
+            this.revenue = revenue;
+            this.returns = returns;
+            this.rentedHours = rentedHours;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        long getRentals() {
+            return rentals;
+        }
+
+        double getRevenue() {
+            return revenue;
+        }
+
+        long getReturns() {
+            return returns;
+        }
+
+        double getRentedHours() {
+            return rentedHours;
+        }
+
+        @Override
+        public String toString() {
+            return key + ": " + rentals + " rentals, $" + String.format("%.2f", revenue) + " revenue, " +
+                    returns + " returns, " + String.format("%.1f", rentedHours) + " hours rented";
+        }
+    }
+
+    /**
+     * CTEs that add a new rental to the summaries, for a data-modifying WITH statement
+     * @param source CTE with vehicle_id, type, customer_id, rented_at and total_price of the rental
+     * @return comma-separated CTE definitions, without a leading or trailing comma
+     */
+    static String recordRentalSql(String source) {
+        return "summary_day AS (" +
+                "INSERT INTO rental_daily_summary AS s (day, vehicle_type, slot, rentals, revenue) " +
+                "SELECT rented_at::date, type, " + SLOT_SQL + ", 1, total_price FROM " + source + " " +
+                "ON CONFLICT (day, vehicle_type, slot) DO UPDATE " +
+                "SET rentals = s.rentals + 1, revenue = s.revenue + EXCLUDED.revenue), " +
+                "summary_vehicle AS (" +
+                "INSERT INTO rental_vehicle_summary AS s (vehicle_id, vehicle_type, rentals, revenue, last_rented_at) " +
+                "SELECT vehicle_id, type, 1, total_price, rented_at FROM " + source + " " +
+                "ON CONFLICT (vehicle_id) DO UPDATE " +
+                "SET rentals = s.rentals + 1, revenue = s.revenue + EXCLUDED.revenue, " +
+                "last_rented_at = EXCLUDED.last_rented_at), " +
+                "summary_customer AS (" +
+                "INSERT INTO rental_customer_summary AS s (customer_id, rentals, revenue) " +
+                "SELECT customer_id, 1, total_price FROM " + source + " " +
+                "ON CONFLICT (customer_id) DO UPDATE " +
+                "SET rentals = s.rentals + 1, revenue = s.revenue + EXCLUDED.revenue)";
+    }
+
+    /**
+     * CTEs that add a closed rental's duration to the summaries
+     * @param source CTE with vehicle_id, type, rented_at and returned_at of the closed rental
+     * @return comma-separated CTE definitions, without a leading or trailing comma
+     */
+    static String recordReturnSql(String source) {
+        return "summary_day AS (" +
+                "INSERT INTO rental_daily_summary AS s (day, vehicle_type, slot, returns, rented_hours) " +
+                returnDaysSql(source) + " " +
+                "ON CONFLICT (day, vehicle_type, slot) DO UPDATE " +
+                "SET returns = s.returns + EXCLUDED.returns, " +
+                "rented_hours = s.rented_hours + EXCLUDED.rented_hours), " +
+                "summary_vehicle AS (" +
+                "UPDATE rental_vehicle_summary s SET rented_hours = s.rented_hours + " + HOURS_SQL + " " +
+                "FROM " + source + " src WHERE s.vehicle_id = src.vehicle_id)";
+    }
+
+    /**
+     * Query of one row per day that closed rentals covered, with the hours rented on that day
+     * and the return counted on the last one
+     * @param source table or CTE with vehicle_id, type, rented_at and returned_at of each rental
+     * @return SELECT of day, type, slot, returns and rented_hours, one row per rental and day
+     */
+    static String returnDaysSql(String source) {
+        return "SELECT d::date AS day, type, " + SLOT_SQL + " AS slot, " +
+                "(d::date = returned_at::date)::int AS returns, " +
+                "extract(epoch FROM least(returned_at, d + interval '1 day') - greatest(rented_at, d)) / 3600 " +
+                "AS rented_hours FROM " + source + ", " +
+                "generate_series(date_trunc('day', rented_at), returned_at, interval '1 day') d";
+    }
+
+    /**
+     * Revenue and activity per day in [from, to)
+     * @param from first day
+     * @param to day after the last day
+     * @return one row per day with activity, oldest first
+     * @throws SQLException if the query fails
+     */
+    List<Row> byDay(LocalDate from, LocalDate to) throws SQLException {
+        return query("SELECT day::text AS key, sum(rentals) AS rentals, sum(revenue) AS revenue, " +
+                "sum(returns) AS returns, sum(rented_hours) AS rented_hours FROM rental_daily_summary " +
+                "WHERE day >= ? AND day < ? GROUP BY day ORDER BY day", from, to);
+    }
+
+    /**
+     * Revenue and activity per vehicle type in [from, to)
+     * @param from first day
+     * @param to day after the last day
+     * @return one row per type, highest revenue first
+     * @throws SQLException if the query fails
+     */
+    List<Row> byType(LocalDate from, LocalDate to) throws SQLException {
+        return query("SELECT vehicle_type AS key, sum(rentals) AS rentals, sum(revenue) AS revenue, " +
+                "sum(returns) AS returns, sum(rented_hours) AS rented_hours FROM rental_daily_summary " +
+                "WHERE day >= ? AND day < ? GROUP BY vehicle_type ORDER BY revenue DESC", from, to);
+    }
+
+    /**
+     * All-time revenue per vehicle, including deleted vehicles
+     * @param limit maximum number of rows
+     * @return highest revenue first
+     * @throws SQLException if the query fails
+     */
+    List<Row> topVehicles(int limit) throws SQLException {
+        return query("SELECT vehicle_id AS key, rentals, revenue, 0 AS returns, rented_hours " +
+                "FROM rental_vehicle_summary ORDER BY revenue DESC, vehicle_id LIMIT ?", limit);
+    }
+
+    /**
+     * All-time revenue per customer
+     * @param limit maximum number of rows
+     * @return highest revenue first
+     * @throws SQLException if the query fails
+     */
+    List<Row> topCustomers(int limit) throws SQLException {
+        return query("SELECT customer_id AS key, rentals, revenue, 0 AS returns, 0 AS rented_hours " +
+                "FROM rental_customer_summary ORDER BY revenue DESC, customer_id LIMIT ?", limit);
+    }
+
+    /**
+     * Share of the current fleet's hours in [from, to) that vehicles spent rented. Closed
+     * rentals count with the hours they covered inside the window; open rentals with their
+     * hours from the start of the window, or their rental if later, up to now or the end of
+     * the window. The fleet is today's, so a window before vehicles were added or deleted is
+     * measured against the wrong number of vehicles; the result is capped at 1.
+     * @param from first day
+     * @param to day after the last day
+     * @return utilization from 0 to 1
+     * @throws SQLException if the query fails
+     */
+    double utilization(LocalDate from, LocalDate to) throws SQLException {
+        long days = ChronoUnit.DAYS.between(from, to);
+        if (days <= 0) {
+            return 0;
+        }
+        // Open rentals are few and found through the partial index on returned_at IS NULL
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("WITH window_bounds AS (" +
+                     "SELECT ?::timestamptz AS lo, least(now(), ?::timestamptz) AS hi) SELECT " +
+                     "(SELECT coalesce(sum(rented_hours), 0) FROM rental_daily_summary WHERE day >= ? AND day < ?) " +
+                     "AS closed_hours, " +
+                     "(SELECT coalesce(sum(extract(epoch FROM hi - greatest(rented_at, lo))), 0) / 3600 " +
+                     "FROM rentals, window_bounds WHERE returned_at IS NULL AND rented_at < hi AND hi > lo) " +
+                     "AS open_hours, " +
+                     "(SELECT count(*) FROM vehicles) AS fleet")) {
+            stmt.setObject(1, from);
+            stmt.setObject(2, to);
+            stmt.setObject(3, from);
+            stmt.setObject(4, to);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                long fleet = rs.getLong("fleet");
+                double rentedHours = rs.getDouble("closed_hours") + rs.getDouble("open_hours");
+                return fleet == 0 ? 0 : Math.min(1, rentedHours / (fleet * 24.0 * days));
+            }
+        }
+    }
+
+    private List<Row> query(String sql, Object... params) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            List<Row> rows = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new Row(rs.getString("key"), rs.getLong("rentals"), rs.getDouble("revenue"),
+                            rs.getLong("returns"), rs.getDouble("rented_hours")));
+                }
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Persistent store of rentals, open and closed. Renting and returning also flip the
+ * vehicle's availability and bump its version, atomically with the rental change.
+ * @see Storage
+ * @see VehicleRepository#ANY_VERSION
+ */
+interface RentalRepository {
+
+    /**
+     * Outcome of {@link #rent}
+     */
+    final class RentOutcome {
+        private final RentResult result;
+        private final int rentalId;
+        private final Reservation booking;
+        private final long version;
+
+        RentOutcome(RentResult result, int rentalId, Reservation booking, long version) {
+            this.result = result;
+            this.rentalId = rentalId;
+            this.booking = booking;
+            this.version = version;
+        }
+
+        RentOutcome(RentResult result) {
+            this(result, 0, null, 0);
+        }
+
+        RentResult getResult() {
+            return result;
+        }
+
+        // 0 unless rented
+        int getRentalId() {
+            return rentalId;
+        }
+
+        // The booking that holds the vehicle for the rental period, null if the store keeps no bookings
+        Reservation getBooking() {
+            return booking;
+        }
+
+        // The vehicle's version after the rental; 0 unless rented
+        long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * Outcome of {@link #returnVehicle}
+     */
+    final class ReturnOutcome {
+        private final ReturnResult result;
+        private final long version;
+
+        ReturnOutcome(ReturnResult result, long version) {
+            this.result = result;
+            this.version = version;
+        }
+
+        ReturnOutcome(ReturnResult result) {
+            this(result, 0);
+        }
+
+        ReturnResult getResult() {
+            return result;
+        }
+
+        // The vehicle's version after the return; 0 unless returned
+        long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * Claim an available vehicle still at expectedVersion and open a rental at its current base
+     * price times priceFactor
+     * @return RENTED, or why not: RESERVED, ALREADY_RENTED, CONFLICT (available, but at another
+     *         version) or NOT_FOUND
+     */
+    RentOutcome rent(String vehicleId, String customerId, int days, BigDecimal priceFactor, long expectedVersion)
+            throws SQLException;
+
+    /**
+     * Make a rented vehicle still at expectedVersion available again and close its open rental
+     * @return RETURNED, or why not: NOT_RENTED (already available), CONFLICT (rented, but at another
+     *         version) or NOT_FOUND
+     */
+    ReturnOutcome returnVehicle(String vehicleId, long expectedVersion) throws SQLException;
+
+    /**
+     * Close a customer's open rental of a vehicle and make the vehicle available
+     * @return RETURNED, NOT_RENTED (not rented by this customer) or NOT_FOUND
+     */
+    ReturnResult returnVehicleFor(String customerId, String vehicleId) throws SQLException;
+
+    /**
+     * Every open rental
+     */
+    List<Rental> findOpen() throws SQLException;
+
+    /**
+     * Up to limit open rentals ordered by rental ID, starting after afterRentalId (0 for the first page)
+     */
+    List<Rental> findOpenPage(int afterRentalId, int limit) throws SQLException;
+
+    /**
+     * Every rental of a customer, open and closed, newest first
+     */
+    List<Rental> findByCustomer(String customerId) throws SQLException;
+
+    /**
+     * Every open rental ordered by rental ID. The stream may hold a database connection and
+     * must be closed. Errors while it is consumed are thrown as {@link UncheckedSQLException}.
+     */
+    Stream<Rental> streamOpen() throws SQLException;
+
+    /**
+     * Number of open rentals
+     */
+    int countOpen() throws SQLException;
+}
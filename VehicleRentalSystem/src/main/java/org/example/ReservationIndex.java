@@ -0,0 +1,244 @@
+package org.example;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory interval index of the active bookings of the whole fleet, for answering
+ * "which vehicles are free between X and Y" without a database round trip.
+ * The reservations table and its exclusion constraint stay authoritative; this index is a
+ * snapshot reloaded when older than the TTL and updated directly by writes made through
+ * {@link VehicleRentalSystem}, like {@link VehicleCache}.
+ */
+class ReservationIndex {
+
+    /**
+     * Source of truth the index is loaded from
+     */
+    interface Loader {
+        List<Reservation> loadActive() throws SQLException;
+    }
+
+    private final Loader loader;
+    private final long ttlMillis;
+    private final Object loadLock = new Object();
+
+    // Guarded by this
+    private final IntervalTree<Reservation> tree = new IntervalTree<>();
+    private final Map<Integer, Reservation> byId = new HashMap<>();
+    private final Set<Integer> touchedDuringLoad = new HashSet<>();
+    private boolean loading;
+
+    private volatile long loadedAt;
+    private volatile boolean complete;
+
+    /**
+     * @param loader database access used to (re)build the index
+     * @param ttlMillis how long a snapshot is trusted; 0 or less reloads on every query
+     */
+    ReservationIndex(Loader loader, long ttlMillis) {
+        this.loader = loader;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * IDs of the vehicles booked at any point in [startMillis, endMillis)
+     * @param startMillis inclusive start, epoch milliseconds
+     * @param endMillis exclusive end, epoch milliseconds
+     * @return a new set the caller may modify
+     * @throws SQLException if a reload fails
+     */
+    Set<String> bookedVehicles(long startMillis, long endMillis) throws SQLException {
+        ensureFresh();
+        Set<String> booked = new HashSet<>();
+        synchronized (this) {
+            tree.forEachOverlapping(startMillis, endMillis, r -> booked.add(r.getVehicleId()));
+        }
+        return booked;
+    }
+
+    /**
+     * Check whether one vehicle has no booking overlapping [startMillis, endMillis)
+     * @param vehicleId vehicle ID
+     * @param startMillis inclusive start, epoch milliseconds
+     * @param endMillis exclusive end, epoch milliseconds
+     * @return true if the vehicle looks free; the database has the final word
+     * @throws SQLException if a reload fails
+     */
+    boolean isFree(String vehicleId, long startMillis, long endMillis) throws SQLException {
+        return isFreeFor(vehicleId, null, startMillis, endMillis);
+    }
+
+    /**
+     * Check whether one vehicle has no booking by another customer overlapping
+     * [startMillis, endMillis), the check a rental makes
+     * @param vehicleId vehicle ID
+     * @param customerId customer whose own bookings are ignored, null to ignore none
+     * @param startMillis inclusive start, epoch milliseconds
+     * @param endMillis exclusive end, epoch milliseconds
+     * @return true if the vehicle looks free; the database has the final word
+     * @throws SQLException if a reload fails
+     */
+    boolean isFreeFor(String vehicleId, String customerId, long startMillis, long endMillis) throws SQLException {
+        ensureFresh();
+        boolean[] free = {true};
+        synchronized (this) {
+            tree.forEachOverlapping(startMillis, endMillis, r -> {
+                if (r.getVehicleId().equals(vehicleId) && !r.getCustomerId().equals(customerId)) {
+                    free[0] = false;
+                }
+            });
+        }
+        return free[0];
+    }
+
+    /**
+     * Write-through of a new booking
+     * @param reservation the booking
+     */
+    synchronized void add(Reservation reservation) {
+        remove(reservation.getReservationId());
+        tree.insert(reservation.getStartMillis(), reservation.getEndMillis(),
+                reservation.getReservationId(), reservation);
+        byId.put(reservation.getReservationId(), reservation);
+        if (loading) {
+            touchedDuringLoad.add(reservation.getReservationId());
+        }
+    }
+
+    /**
+     * Write-through of a cancelled or ended booking
+     * @param reservationId reservation ID
+     */
+    synchronized void remove(int reservationId) {
+        Reservation existing = byId.remove(reservationId);
+        if (existing != null) {
+            tree.remove(existing.getStartMillis(), reservationId);
+        }
+        if (loading) {
+            touchedDuringLoad.add(reservationId);
+        }
+    }
+
+    /**
+     * Drop the bookings held by rentals of a vehicle, once the vehicle is back
+     * @param vehicleId vehicle ID
+     */
+    synchronized void releaseRental(String vehicleId) {
+        for (Reservation reservation : matching(vehicleId)) {
+            if (reservation.getRentalId() != 0) {
+                remove(reservation.getReservationId());
+            }
+        }
+    }
+
+    /**
+     * Drop a customer's own reservations of a vehicle that a rental over [startMillis, endMillis)
+     * has picked up
+     * @param vehicleId vehicle ID
+     * @param customerId customer ID
+     * @param startMillis inclusive start, epoch milliseconds
+     * @param endMillis exclusive end, epoch milliseconds
+     */
+    synchronized void pickUp(String vehicleId, String customerId, long startMillis, long endMillis) {
+        List<Reservation> pickedUp = new ArrayList<>();
+        tree.forEachOverlapping(startMillis, endMillis, r -> {
+            if (r.getRentalId() == 0 && r.getVehicleId().equals(vehicleId)
+                    && r.getCustomerId().equals(customerId)) {
+                pickedUp.add(r);
+            }
+        });
+        for (Reservation reservation : pickedUp) {
+            remove(reservation.getReservationId());
+        }
+    }
+
+    /**
+     * Write-through of a vehicle deletion, which cascades to its bookings
+     * @param vehicleId vehicle ID
+     */
+    synchronized void removeVehicle(String vehicleId) {
+        for (Reservation reservation : matching(vehicleId)) {
+            remove(reservation.getReservationId());
+        }
+    }
+
+    /**
+     * Drop the snapshot so the next query reloads it
+     */
+    void invalidateAll() {
+        complete = false;
+    }
+
+    private List<Reservation> matching(String vehicleId) {
+        List<Reservation> matches = new ArrayList<>();
+        for (Reservation reservation : byId.values()) {
+            if (reservation.getVehicleId().equals(vehicleId)) {
+                matches.add(reservation);
+            }
+        }
+        return matches;
+    }
+
+    private boolean isFresh() {
+        return complete && ttlMillis > 0 && System.currentTimeMillis() - loadedAt < ttlMillis;
+    }
+
+    private void ensureFresh() throws SQLException {
+        if (isFresh()) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (isFresh()) {
+                return;
+            }
+            synchronized (this) {
+                loading = true;
+                touchedDuringLoad.clear();
+            }
+
+            try {
+                long startedAt = System.currentTimeMillis();
+                List<Reservation> loaded = loader.loadActive();
+
+                synchronized (this) {
+                    // Writes that raced with the load are newer than the loaded rows
+                    Map<Integer, Reservation> touched = new HashMap<>();
+                    for (Integer reservationId : touchedDuringLoad) {
+                        touched.put(reservationId, byId.get(reservationId));
+                    }
+                    tree.clear();
+                    byId.clear();
+                    for (Reservation reservation : loaded) {
+                        if (!touched.containsKey(reservation.getReservationId())) {
+                            install(reservation);
+                        }
+                    }
+                    for (Reservation reservation : touched.values()) {
+                        if (reservation != null) {
+                            install(reservation);
+                        }
+                    }
+                    loadedAt = startedAt;
+                    complete = true;
+                }
+            } finally {
+                synchronized (this) {
+                    loading = false;
+                    touchedDuringLoad.clear();
+                }
+            }
+        }
+    }
+
+    private void install(Reservation reservation) {
+        tree.insert(reservation.getStartMillis(), reservation.getEndMillis(),
+                reservation.getReservationId(), reservation);
+        byId.put(reservation.getReservationId(), reservation);
+    }
+}
@@ -0,0 +1,171 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Pricing from weekend, seasonal, duration-tier and vehicle-type multipliers.
+ * The per-day factors (weekend times matching seasons) are compiled once into a prefix-sum
+ * table in millionths over a date horizon, so the factor for any rental inside the horizon
+ * costs two array reads plus the tier and type lookups, whatever its length. Days outside the
+ * horizon are evaluated from the rules directly. Day factors are kept to six decimal places;
+ * everything else is exact.
+ */
+final class RuleBasedPricingEngine implements PricingEngine {
+    private static final int MICROS_SCALE = 6;
+    private static final BigDecimal MICROS = BigDecimal.ONE.movePointRight(MICROS_SCALE);
+
+    private final Rules rules;
+    private final long firstEpochDay;
+    // dayFactorPrefix[i] = sum of day factors, in millionths, of the i days from firstEpochDay
+    private final long[] dayFactorPrefix;
+
+    private RuleBasedPricingEngine(Rules rules, LocalDate from, int horizonDays) {
+        this.rules = rules;
+        this.firstEpochDay = from.toEpochDay();
+        this.dayFactorPrefix = new long[horizonDays + 1];
+        for (int i = 0; i < horizonDays; i++) {
+            dayFactorPrefix[i + 1] = dayFactorPrefix[i] + rules.dayFactorMicros(from.plusDays(i));
+        }
+    }
+
+    /**
+     * The rules the app ships with: weekends +15%, summer +20%, year-end holidays +25%,
+     * 10% off from 7 days and 25% off from 30 days
+     * @return rules builder, open for further rules
+     */
+    static Rules standardRules() {
+        return new Rules()
+                .weekend(new BigDecimal("1.15"))
+                .season(MonthDay.of(6, 15), MonthDay.of(8, 31), new BigDecimal("1.20"))
+                .season(MonthDay.of(12, 20), MonthDay.of(1, 3), new BigDecimal("1.25"))
+                .durationTier(7, new BigDecimal("0.90"))
+                .durationTier(30, new BigDecimal("0.75"));
+    }
+
+    @Override
+    public BigDecimal priceFactor(String type, LocalDate start, int days) {
+        if (days <= 0) {
+            return BigDecimal.ZERO;
+        }
+        long offset = start.toEpochDay() - firstEpochDay;
+        long dayMicros;
+        if (offset >= 0 && offset + days < dayFactorPrefix.length) {
+            dayMicros = dayFactorPrefix[(int) (offset + days)] - dayFactorPrefix[(int) offset];
+        } else {
+            dayMicros = 0;
+            for (int i = 0; i < days; i++) {
+                dayMicros += rules.dayFactorMicros(start.plusDays(i));
+            }
+        }
+        return BigDecimal.valueOf(dayMicros, MICROS_SCALE)
+                .multiply(rules.tierMultiplier(days))
+                .multiply(rules.typeMultiplier(type))
+                .stripTrailingZeros();
+    }
+
+    /**
+     * Pricing rules. Multipliers of matching rules combine by multiplication.
+     */
+    static final class Rules {
+        private BigDecimal weekend = BigDecimal.ONE;
+        private final List<Season> seasons = new ArrayList<>();
+        private final NavigableMap<Integer, BigDecimal> tiers = new TreeMap<>();
+        private final Map<String, BigDecimal> types = new HashMap<>();
+
+        /**
+         * Multiplier for Saturdays and Sundays
+         */
+        Rules weekend(BigDecimal multiplier) {
+            this.weekend = multiplier;
+            return this;
+        }
+
+        /**
+         * Multiplier for days between from and to inclusive, every year; from may be after to
+         * for seasons that span the new year
+         */
+        Rules season(MonthDay from, MonthDay to, BigDecimal multiplier) {
+            seasons.add(new Season(from, to, multiplier));
+            return this;
+        }
+
+        /**
+         * Multiplier for whole rentals of at least minDays; the longest matching tier applies
+         */
+        Rules durationTier(int minDays, BigDecimal multiplier) {
+            tiers.put(minDays, multiplier);
+            return this;
+        }
+
+        /**
+         * Multiplier for vehicles of one type, matched case-insensitively
+         */
+        Rules type(String type, BigDecimal multiplier) {
+            types.put(type.toLowerCase(), multiplier);
+            return this;
+        }
+
+        /**
+         * Compile the rules into rate tables
+         * @param from first day of the precomputed horizon
+         * @param horizonDays number of precomputed days
+         * @return the engine
+         */
+        RuleBasedPricingEngine compile(LocalDate from, int horizonDays) {
+            return new RuleBasedPricingEngine(this, from, horizonDays);
+        }
+
+        private long dayFactorMicros(LocalDate date) {
+            BigDecimal factor = BigDecimal.ONE;
+            DayOfWeek day = date.getDayOfWeek();
+            if (day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY) {
+                factor = factor.multiply(weekend);
+            }
+            MonthDay monthDay = MonthDay.from(date);
+            for (Season season : seasons) {
+                if (season.contains(monthDay)) {
+                    factor = factor.multiply(season.multiplier);
+                }
+            }
+            return factor.multiply(MICROS).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+
+        private BigDecimal tierMultiplier(int days) {
+            Map.Entry<Integer, BigDecimal> tier = tiers.floorEntry(days);
+            return tier == null ? BigDecimal.ONE : tier.getValue();
+        }
+
+        private BigDecimal typeMultiplier(String type) {
+            return type == null ? BigDecimal.ONE : types.getOrDefault(type.toLowerCase(), BigDecimal.ONE);
+        }
+    }
+
+    private static final class Season {
+        final MonthDay from;
+        final MonthDay to;
+        final BigDecimal multiplier;
+
+        Season(MonthDay from, MonthDay to, BigDecimal multiplier) {
+            this.from = from;
+            this.to = to;
+            this.multiplier = multiplier;
+        }
+
+        boolean contains(MonthDay day) {
+            if (!from.isAfter(to)) {
+                return !day.isBefore(from) && !day.isAfter(to);
+            }
+            return !day.isBefore(from) || !day.isAfter(to);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.example;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.postgresql.PGStatement;
+
+/**
+ * LRU cache of prepared statements keyed by SQL text, owned by a single pooled connection.
+ * Callers get a proxy whose close() parks the statement for reuse instead of closing it,
+ * so PostgreSQL can keep the parsed and planned server-side statement.
+ */
+class StatementCache {
+    // Promote cached statements to named server-side statements on their first execution
+    private static final int SERVER_PREPARE_THRESHOLD = 1;
+
+    private final int maxSize;
+    private final LinkedHashMap<String, Entry> entries;
+    private long hits;
+    private long misses;
+
+    StatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Return a cached statement for the SQL text or prepare and cache a new one
+     * @param physical the underlying connection
+     * @param owner the connection handle returned from getConnection() on the statement
+     * @param sql SQL text
+     * @return PreparedStatement whose close() returns it to this cache
+     * @throws SQLException if preparing fails
+     */
+    synchronized PreparedStatement prepare(Connection physical, Connection owner, String sql) throws SQLException {
+        Entry entry = entries.get(sql);
+        if (entry != null && !entry.inUse) {
+            hits++;
+            entry.inUse = true;
+            return entry.newHandle(owner);
+        }
+        misses++;
+
+        PreparedStatement statement = physical.prepareStatement(sql);
+        promoteToServerSide(statement);
+
+        if (entry != null) {
+            // Same SQL is already checked out (nested use); hand out an uncached statement
+            return statement;
+        }
+
+        entry = new Entry(sql, statement);
+        entry.inUse = true;
+        entries.put(sql, entry);
+        evictOverflow();
+        return entry.newHandle(owner);
+    }
+
+    private void promoteToServerSide(PreparedStatement statement) {
+        try {
+            if (statement.isWrapperFor(PGStatement.class)) {
+                statement.unwrap(PGStatement.class).setPrepareThreshold(SERVER_PREPARE_THRESHOLD);
+            }
+        } catch (SQLException e) {
+            // Not fatal, the statement simply stays client-side prepared
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            eldest.evicted = true;
+            if (!eldest.inUse) {
+                eldest.closeQuietly();
+            }
+        }
+    }
+
+    // Parks a statement after its borrower closed it
+    private synchronized void giveBack(Entry entry) {
+        entry.inUse = false;
+        if (entry.evicted) {
+            entry.closeQuietly();
+            return;
+        }
+        try {
+            entry.statement.clearParameters();
+            entry.statement.clearWarnings();
+        } catch (SQLException e) {
+            entries.remove(entry.sql);
+            entry.closeQuietly();
+        }
+    }
+
+    /**
+     * Mark every statement as free again; called when the owning connection goes back to the pool
+     */
+    synchronized void releaseAll() {
+        for (Entry entry : entries.values()) {
+            if (entry.inUse) {
+                entry.handle = null;
+                giveBack(entry);
+            }
+        }
+    }
+
+    /**
+     * Close every cached statement
+     */
+    synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            entry.closeQuietly();
+        }
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    private class Entry {
+        final String sql;
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+        StatementHandle handle;
+
+        Entry(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        PreparedStatement newHandle(Connection owner) {
+            handle = new StatementHandle(this, owner);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    handle);
+        }
+
+        void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                EventLog.warn("statementCache").cause(e).log("Error closing cached statement");
+            }
+        }
+    }
+
+    // Routes calls to the cached statement until the borrower closes it
+    private class StatementHandle implements InvocationHandler {
+        private final Entry entry;
+        private final Connection owner;
+        private boolean closed;
+
+        StatementHandle(Entry entry, Connection owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean stale = closed || entry.handle != this;
+            switch (method.getName()) {
+                case "close":
+                    if (!stale) {
+                        closed = true;
+                        giveBack(entry);
+                    }
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return stale || entry.statement.isClosed();
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + entry.sql + "]";
+                default:
+                    break;
+            }
+
+            if (stale) {
+                throw new SQLException("Statement is closed");
+            }
+
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
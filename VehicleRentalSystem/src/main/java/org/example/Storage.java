@@ -0,0 +1,133 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The repositories behind {@link VehicleRentalSystem}. The backend is chosen with
+ * {@code -Dstorage}:
+ * <ul>
+ *   <li>{@code postgres} (default): the PostgreSQL database configured in {@link DatabaseConnection}</li>
+ *   <li>{@code embedded}: an in-process {@link EmbeddedStore} logging to {@code -Dstorage.file}
+ *       (default {@code rental-data.wal}), forced to disk on every write with
+ *       {@code -Dstorage.fsync=true}</li>
+ * </ul>
+ * Reservations, revenue reports, bulk imports and change notifications need PostgreSQL, and so
+ * does the {@link RentalJournal} enabled with {@code -Djournal.enabled=true}.
+ */
+final class Storage {
+    private static final String BACKEND = System.getProperty("storage", "postgres");
+    private static final String FILE = System.getProperty("storage.file", "rental-data.wal");
+    private static final boolean FSYNC = Boolean.getBoolean("storage.fsync");
+
+    private final VehicleRepository vehicles;
+    private final CustomerRepository customers;
+    private final RentalRepository rentals;
+    private final EmbeddedStore embedded;
+    private RentalJournal journal;
+
+    private Storage(VehicleRepository vehicles, CustomerRepository customers, RentalRepository rentals,
+                    EmbeddedStore embedded) {
+        this.vehicles = vehicles;
+        this.customers = customers;
+        this.rentals = rentals;
+        this.embedded = embedded;
+    }
+
+    /**
+     * The backend selected by the system properties
+     * @throws UncheckedIOException if the embedded store cannot be opened
+     */
+    static Storage fromSystemProperties() {
+        switch (BACKEND) {
+            case "postgres":
+                return postgres();
+            case "embedded":
+                try {
+                    return embedded(Paths.get(FILE), FSYNC);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot open embedded store " + FILE, e);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown storage backend: " + BACKEND);
+        }
+    }
+
+    static Storage postgres() {
+        return new Storage(new PostgresVehicleRepository(), new PostgresCustomerRepository(),
+                new PostgresRentalRepository(), null);
+    }
+
+    /**
+     * Open an embedded store, replaying its write-ahead log
+     * @param file write-ahead log, created if missing
+     * @param fsync force every write to disk before it returns
+     */
+    static Storage embedded(Path file, boolean fsync) throws IOException {
+        EmbeddedStore store = new EmbeddedStore(file, fsync);
+        return new Storage(store.getVehicleRepository(), store.getCustomerRepository(),
+                store.getRentalRepository(), store);
+    }
+
+    VehicleRepository getVehicleRepository() {
+        return vehicles;
+    }
+
+    CustomerRepository getCustomerRepository() {
+        return customers;
+    }
+
+    RentalRepository getRentalRepository() {
+        return rentals;
+    }
+
+    boolean isEmbedded() {
+        return embedded != null;
+    }
+
+    /**
+     * Prepare the backend for use: creates missing PostgreSQL tables; nothing to do for the embedded store
+     */
+    void initialize() {
+        if (!isEmbedded()) {
+            DatabaseConnection.initializeDatabase();
+        }
+    }
+
+    /**
+     * Open the rent/return journal in front of the rentals table if -Djournal.enabled is set.
+     * Call after {@link #initialize}; the journal starts shipping recovered events right away.
+     * @param listener told about shipped events
+     * @return the journal, or null if disabled or on the embedded store, whose log already
+     *         makes every write local
+     * @throws IOException if the journal file cannot be opened
+     */
+    RentalJournal openJournal(RentalJournal.Listener listener) throws IOException {
+        if (!RentalJournal.ENABLED) {
+            return null;
+        }
+        if (isEmbedded()) {
+            EventLog.warn("openJournal").log("The rental journal needs PostgreSQL; ignoring journal.enabled");
+            return null;
+        }
+        journal = RentalJournal.open(Paths.get(RentalJournal.FILE),
+                new JournalShipper((PostgresRentalRepository) rentals), listener);
+        return journal;
+    }
+
+    /**
+     * Ship and close the journal, if open, then close pooled connections or the embedded store's log
+     */
+    void close() {
+        if (journal != null) {
+            journal.close();
+        }
+        if (isEmbedded()) {
+            embedded.close();
+        } else {
+            DatabaseConnection.shutdown();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.example;
+
+/**
+ * JMX view of a striped lock's contention, registered as
+ * {@code org.example:type=Stripes,name="<lock>"}. Each array has one element per stripe.
+ */
+public interface StripeMetricsMBean {
+
+    long[] getAdmitted();
+
+    long[] getContended();
+
+    long[] getCoalesced();
+
+    long[] getTimedOut();
+
+    double[] getWaitMillis();
+
+    /**
+     * Clear all counters
+     */
+    void reset();
+}
@@ -0,0 +1,18 @@
+package org.example;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps an {@link SQLException} thrown while a repository stream is being consumed, where
+ * stream operations cannot throw checked exceptions. Unwrap it with {@link #getCause()}.
+ */
+class UncheckedSQLException extends RuntimeException {
+    UncheckedSQLException(String message, SQLException cause) {
+        super(message, cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,161 @@
+package org.example;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Per-vehicle admission in front of rents and returns. At most one rent or return of a vehicle
+ * runs at a time in this process; callers for the same vehicle wait for it, and when its result
+ * settles theirs too they return without touching the store. Once one renter got the vehicle,
+ * every renter waiting behind it has lost, so a burst on a popular vehicle costs one round trip
+ * instead of one per caller.
+ * <p>
+ * Vehicle IDs hash onto a fixed number of stripes ({@code -Dadmission.stripes}, 64), each a lock
+ * with the in-flight operations of its vehicles, so unrelated vehicles rarely contend and memory
+ * does not grow with the fleet. A caller waits at most {@code -Dadmission.waitMillis} (2000) and
+ * then runs anyway. The store stays the authority: admission saves round trips, it is not what
+ * makes rents correct, and it does not span app instances.
+ * <p>
+ * Contention is counted per stripe in {@link Metrics#stripes}.
+ */
+final class VehicleAdmission {
+    static final int STRIPES = Integer.getInteger("admission.stripes", 64);
+    static final long WAIT_MILLIS = Long.getLong("admission.waitMillis", 2000);
+
+    /**
+     * Decides, from the result of the operation a caller waited for, whether the caller's own
+     * operation still needs to run
+     */
+    interface Settler<R> {
+        /**
+         * @param previous result of the rent or return that just finished on the same vehicle
+         * @return the caller's result, or null to run its operation
+         */
+        R settle(Object previous);
+    }
+
+    // One rent or return in flight on a vehicle; guarded by its stripe's lock
+    private static final class InFlight {
+        private Object result;
+        private boolean finished;
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition finished = lock.newCondition();
+        private final Map<String, InFlight> inFlight = new HashMap<>();
+    }
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final long waitNanos;
+    private final Metrics.Stripes metrics;
+
+    VehicleAdmission() {
+        this(STRIPES, WAIT_MILLIS);
+    }
+
+    /**
+     * @param stripes number of stripes, rounded up to a power of two
+     * @param waitMillis longest wait for another caller's operation before running regardless
+     */
+    VehicleAdmission(int stripes, long waitMillis) {
+        int count = Integer.highestOneBit(Math.max(1, stripes));
+        if (count < stripes) {
+            count <<= 1;
+        }
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        mask = count - 1;
+        waitNanos = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        metrics = Metrics.stripes("vehicleAdmission", count);
+    }
+
+    /**
+     * Run a rent or return of a vehicle once no other one is in flight
+     * @param vehicleId vehicle the operation changes
+     * @param settler asked after each operation waited for whether this one is still needed
+     * @param operation the rent or return; must not throw
+     * @return the operation's result, or the settled one
+     */
+    <R> R admit(String vehicleId, Settler<R> settler, Supplier<R> operation) {
+        int hash = vehicleId.hashCode();
+        int index = (hash ^ (hash >>> 16)) & mask;
+        Stripe stripe = stripes[index];
+        InFlight mine = new InFlight();
+        boolean admitted = false;
+        long waitStarted = 0;
+
+        stripe.lock.lock();
+        try {
+            while (true) {
+                InFlight current = stripe.inFlight.putIfAbsent(vehicleId, mine);
+                if (current == null) {
+                    admitted = true;
+                    break;
+                }
+                if (waitStarted == 0) {
+                    waitStarted = System.nanoTime();
+                }
+                if (!awaitFinished(stripe, current, waitStarted + waitNanos)) {
+                    metrics.timedOut(index);
+                    break;
+                }
+                R settled = settler.settle(current.result);
+                if (settled != null) {
+                    metrics.coalesced(index);
+                    return settled;
+                }
+            }
+        } finally {
+            if (waitStarted != 0) {
+                metrics.contended(index, System.nanoTime() - waitStarted);
+            }
+            stripe.lock.unlock();
+        }
+
+        if (!admitted) {
+            return operation.get();
+        }
+        metrics.admitted(index);
+        R result = null;
+        try {
+            result = operation.get();
+            return result;
+        } finally {
+            stripe.lock.lock();
+            try {
+                mine.result = result;
+                mine.finished = true;
+                stripe.inFlight.remove(vehicleId, mine);
+                stripe.finished.signalAll();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    // Waits, holding the stripe's lock, until the operation finishes or the deadline passes.
+    // An interrupt ends the wait early; the flag is kept for the caller's code to see.
+    private static boolean awaitFinished(Stripe stripe, InFlight current, long deadline) {
+        while (!current.finished) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return false;
+            }
+            try {
+                stripe.finished.awaitNanos(left);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,270 @@
+package org.example;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-memory inventory of vehicles keyed by vehicle ID.
+ * Reads are served from memory while the snapshot is younger than the TTL; writes made
+ * through {@link VehicleRentalSystem} update the cache directly, and invalidations
+ * (e.g. from other app instances) mark single entries dirty so only those rows are reloaded.
+ * <p>
+ * Cached vehicles are never handed out or changed in place: writes store a copy, reads return
+ * one, and {@link #update} replaces an entry with a changed copy, so threads never see another
+ * thread's half-made change to a shared {@link Vehicle}.
+ */
+class VehicleCache {
+
+    /**
+     * Source of truth the cache reads through to
+     */
+    interface Loader {
+        List<Vehicle> loadAll() throws SQLException;
+
+        List<Vehicle> loadByIds(Collection<String> vehicleIds) throws SQLException;
+    }
+
+    /**
+     * Told about every vehicle written, removed or invalidated through the cache, so derived
+     * views such as {@link FleetSnapshot} can refresh just those rows
+     */
+    interface ChangeListener {
+        void vehicleChanged(String vehicleId);
+    }
+
+    private final Loader loader;
+    private final long ttlMillis;
+    private final Object loadLock = new Object();
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+
+    private volatile ConcurrentSkipListMap<String, Vehicle> entries = new ConcurrentSkipListMap<>();
+    private volatile long loadedAt;
+    private volatile boolean complete;
+
+    // Guarded by this
+    private final Set<String> dirty = new HashSet<>();
+    private final Set<String> touchedDuringLoad = new HashSet<>();
+    private boolean loading;
+
+    /**
+     * @param loader database access used on misses
+     * @param ttlMillis how long a full snapshot is trusted; 0 or less disables caching
+     */
+    VehicleCache(Loader loader, long ttlMillis) {
+        this.loader = loader;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * All vehicles ordered by ID, reloading from the database when the snapshot has expired
+     * @return a new list of copies the caller may modify
+     * @throws SQLException if a reload fails
+     */
+    List<Vehicle> getAll() throws SQLException {
+        if (!isFresh()) {
+            reload();
+        }
+        refreshDirty();
+        List<Vehicle> all = new ArrayList<>(entries.size());
+        for (Vehicle vehicle : entries.values()) {
+            all.add(vehicle.copy());
+        }
+        return all;
+    }
+
+    /**
+     * Look up one vehicle, reading through to the database if it is not cached
+     * @param vehicleId vehicle ID
+     * @return a copy of the vehicle, or null if it does not exist
+     * @throws SQLException if the lookup fails
+     */
+    Vehicle get(String vehicleId) throws SQLException {
+        Vehicle cached;
+        synchronized (this) {
+            cached = entries.get(vehicleId);
+            if (cached != null && isFresh() && !dirty.contains(vehicleId)) {
+                return cached.copy();
+            }
+        }
+
+        List<Vehicle> loaded = loader.loadByIds(Collections.singletonList(vehicleId));
+        Vehicle vehicle = loaded.isEmpty() ? null : loaded.get(0);
+        synchronized (this) {
+            if (vehicle != null) {
+                install(vehicle);
+            } else {
+                remove(vehicleId);
+            }
+        }
+        return vehicle == null ? null : vehicle.copy();
+    }
+
+    /**
+     * True if the vehicle is cached as available, stale or not, without reading through to the database
+     * @param vehicleId vehicle ID
+     */
+    boolean isAvailable(String vehicleId) {
+        Vehicle cached = entries.get(vehicleId);
+        return cached != null && cached.isAvailable();
+    }
+
+    /**
+     * Register a listener for vehicle changes
+     * @param listener listener to call; must be fast and must not call back into the cache
+     */
+    void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Write-through of a vehicle's current state
+     * @param vehicle vehicle to store; the cache keeps a copy, so the caller may go on using it
+     */
+    synchronized void put(Vehicle vehicle) {
+        install(vehicle.copy());
+    }
+
+    /**
+     * Replace a cached vehicle with a changed copy of it; nothing happens if it is not cached
+     * @param vehicleId vehicle ID
+     * @param change applied to the copy, under the cache's lock; must be fast
+     */
+    synchronized void update(String vehicleId, Consumer<Vehicle> change) {
+        Vehicle cached = entries.get(vehicleId);
+        if (cached == null) {
+            return;
+        }
+        Vehicle changed = cached.copy();
+        change.accept(changed);
+        install(changed);
+    }
+
+    /**
+     * Write-through of a deletion
+     * @param vehicleId vehicle ID
+     */
+    synchronized void remove(String vehicleId) {
+        entries.remove(vehicleId);
+        dirty.remove(vehicleId);
+        if (loading) {
+            touchedDuringLoad.add(vehicleId);
+        }
+        fireChanged(vehicleId);
+    }
+
+    /**
+     * Mark one vehicle stale so its row is reloaded on next access
+     * @param vehicleId vehicle ID
+     */
+    synchronized void invalidate(String vehicleId) {
+        dirty.add(vehicleId);
+        if (loading) {
+            // Keep the in-flight load from clearing this, it may have read the old row
+            touchedDuringLoad.add(vehicleId);
+        }
+        fireChanged(vehicleId);
+    }
+
+    /**
+     * Drop the whole snapshot so the next read reloads every row
+     */
+    void invalidateAll() {
+        complete = false;
+    }
+
+    private void install(Vehicle vehicle) {
+        entries.put(vehicle.getVehicleId(), vehicle);
+        dirty.remove(vehicle.getVehicleId());
+        if (loading) {
+            touchedDuringLoad.add(vehicle.getVehicleId());
+        }
+        fireChanged(vehicle.getVehicleId());
+    }
+
+    private void fireChanged(String vehicleId) {
+        for (ChangeListener listener : changeListeners) {
+            listener.vehicleChanged(vehicleId);
+        }
+    }
+
+    private boolean isFresh() {
+        return complete && ttlMillis > 0 && System.currentTimeMillis() - loadedAt < ttlMillis;
+    }
+
+    private void reload() throws SQLException {
+        synchronized (loadLock) {
+            if (isFresh()) {
+                return;
+            }
+            synchronized (this) {
+                loading = true;
+                touchedDuringLoad.clear();
+            }
+
+            try {
+                long startedAt = System.currentTimeMillis();
+                List<Vehicle> loaded = loader.loadAll();
+
+                synchronized (this) {
+                    // Writes that raced with the load are newer than the loaded rows
+                    ConcurrentSkipListMap<String, Vehicle> fresh = new ConcurrentSkipListMap<>();
+                    for (Vehicle vehicle : loaded) {
+                        if (!touchedDuringLoad.contains(vehicle.getVehicleId())) {
+                            fresh.put(vehicle.getVehicleId(), vehicle);
+                            dirty.remove(vehicle.getVehicleId());
+                        }
+                    }
+                    for (String vehicleId : touchedDuringLoad) {
+                        Vehicle current = entries.get(vehicleId);
+                        if (current != null) {
+                            fresh.put(vehicleId, current);
+                        }
+                    }
+                    entries = fresh;
+                    loadedAt = startedAt;
+                    complete = true;
+                }
+            } finally {
+                synchronized (this) {
+                    loading = false;
+                    touchedDuringLoad.clear();
+                }
+            }
+        }
+    }
+
+    private void refreshDirty() throws SQLException {
+        List<String> ids;
+        synchronized (this) {
+            if (dirty.isEmpty()) {
+                return;
+            }
+            ids = new ArrayList<>(dirty);
+        }
+
+        List<Vehicle> loaded = loader.loadByIds(ids);
+
+        synchronized (this) {
+            Set<String> found = new HashSet<>();
+            for (Vehicle vehicle : loaded) {
+                found.add(vehicle.getVehicleId());
+                if (dirty.contains(vehicle.getVehicleId())) {
+                    install(vehicle);
+                }
+            }
+            for (String vehicleId : ids) {
+                if (!found.contains(vehicleId) && dirty.contains(vehicleId)) {
+                    remove(vehicleId);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.example;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * Background listener for PostgreSQL NOTIFY messages about vehicle rows.
+ * Triggers created by {@link DatabaseConnection#initializeDatabase()} publish the ID of every
+ * vehicle whose price changed or that was deleted, so caches in other app instances do not
+ * keep serving those rows until they expire.
+ */
+class VehicleChangeListener implements Runnable {
+    private static final int POLL_TIMEOUT_MS = 5000;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final VehicleCache cache;
+    private volatile boolean running = true;
+    private Thread thread;
+
+    VehicleChangeListener(VehicleCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Start listening on a daemon thread
+     */
+    synchronized void start() {
+        if (thread == null) {
+            thread = new Thread(this, "vehicle-change-listener");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop listening and close the dedicated connection
+     */
+    synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try (Connection conn = DatabaseConnection.openDedicatedConnection()) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("LISTEN " + DatabaseConnection.VEHICLE_CHANGE_CHANNEL);
+                }
+                // Anything may have changed while we were not listening
+                cache.invalidateAll();
+
+                PGConnection pgConn = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConn.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        cache.invalidate(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                EventLog.warn("vehicleChangeListener").cause(e).log("Vehicle change listener disconnected");
+                cache.invalidateAll();
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+}
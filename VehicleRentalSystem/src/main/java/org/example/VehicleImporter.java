@@ -0,0 +1,395 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Bulk loading of vehicles, either with JDBC batches or with PostgreSQL COPY.
+ * Invalid rows and duplicate vehicle IDs are skipped and reported individually;
+ * everything else is imported.
+ */
+class VehicleImporter {
+    private static final String INSERT_SQL = "INSERT INTO vehicles " +
+            "(vehicle_id, type, brand, model, base_price_per_day, is_available) " +
+            "VALUES (?, ?, ?, ?, ?, TRUE) ON CONFLICT (vehicle_id) DO NOTHING";
+    private static final int COPY_BUFFER_ROWS = 1000;
+    private static final int MAX_TEXT_LENGTH = 50;
+
+    /**
+     * A row that was not imported
+     */
+    static class RowError {
+        final long row;
+        final String vehicleId;
+        final String message;
+
+        RowError(long row, String vehicleId, String message) {
+            this.row = row;
+            this.vehicleId = vehicleId;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return "Row " + row + (vehicleId == null ? "" : " (" + vehicleId + ")") + ": " + message;
+        }
+    }
+
+    /**
+     * Outcome of an import
+     */
+    static class Result {
+        long imported;
+        final List<RowError> errors = new ArrayList<>();
+
+        long getImported() {
+            return imported;
+        }
+
+        List<RowError> getErrors() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            return imported + " vehicles imported, " + errors.size() + " rows rejected";
+        }
+    }
+
+    /**
+     * Insert vehicles with JDBC batches of the given size, one transaction per batch.
+     * If a batch fails as a whole, its rows are retried one by one so only the bad rows are lost.
+     * @param vehicles vehicles to insert
+     * @param batchSize rows per batch
+     * @param progress called with the number of rows processed so far after each batch, may be null
+     * @return imported count and rejected rows
+     * @throws SQLException if the database cannot be reached
+     */
+    Result importBatched(Iterable<Vehicle> vehicles, int batchSize, LongConsumer progress) throws SQLException {
+        Result result = new Result();
+        List<Vehicle> batch = new ArrayList<>(batchSize);
+        List<Long> rows = new ArrayList<>(batchSize);
+        long row = 0;
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+            conn.setAutoCommit(false);
+
+            for (Vehicle vehicle : vehicles) {
+                row++;
+                String problem = validate(vehicle);
+                if (problem != null) {
+                    result.errors.add(new RowError(row, vehicle == null ? null : vehicle.getVehicleId(), problem));
+                    continue;
+                }
+                batch.add(vehicle);
+                rows.add(row);
+
+                if (batch.size() == batchSize) {
+                    flushBatch(conn, stmt, batch, rows, result);
+                    report(progress, row);
+                }
+            }
+            flushBatch(conn, stmt, batch, rows, result);
+            report(progress, row);
+        }
+
+        return result;
+    }
+
+    private void flushBatch(Connection conn, PreparedStatement stmt, List<Vehicle> batch, List<Long> rows,
+                            Result result) throws SQLException {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (Vehicle vehicle : batch) {
+                bind(stmt, vehicle);
+                stmt.addBatch();
+            }
+            int[] counts = stmt.executeBatch();
+            conn.commit();
+            for (int i = 0; i < counts.length; i++) {
+                countRow(counts[i], rows.get(i), batch.get(i), result);
+            }
+        } catch (BatchUpdateException e) {
+            conn.rollback();
+            stmt.clearBatch();
+            retryOneByOne(conn, stmt, batch, rows, result);
+        }
+
+        batch.clear();
+        rows.clear();
+    }
+
+    private void retryOneByOne(Connection conn, PreparedStatement stmt, List<Vehicle> batch, List<Long> rows,
+                               Result result) throws SQLException {
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                bind(stmt, batch.get(i));
+                int count = stmt.executeUpdate();
+                conn.commit();
+                countRow(count, rows.get(i), batch.get(i), result);
+            } catch (SQLException e) {
+                conn.rollback();
+                result.errors.add(new RowError(rows.get(i), batch.get(i).getVehicleId(), e.getMessage()));
+            }
+        }
+    }
+
+    private void countRow(int count, long row, Vehicle vehicle, Result result) {
+        if (count == 0) {
+            result.errors.add(new RowError(row, vehicle.getVehicleId(), "Duplicate vehicle ID"));
+        } else {
+            result.imported++;
+        }
+    }
+
+    private void bind(PreparedStatement stmt, Vehicle vehicle) throws SQLException {
+        stmt.setString(1, vehicle.getVehicleId());
+        stmt.setString(2, vehicle.getType());
+        stmt.setString(3, vehicle.getBrand());
+        stmt.setString(4, vehicle.getModel());
+        stmt.setDouble(5, vehicle.getBasePricePerDay());
+    }
+
+    /**
+     * Load vehicles with COPY FROM STDIN into a temporary table, then move them into vehicles
+     * in one INSERT ... ON CONFLICT DO NOTHING so duplicates are skipped instead of failing the COPY.
+     * The whole import is a single transaction.
+     * @param vehicles vehicles to insert
+     * @param progress called with the number of rows streamed so far, may be null
+     * @return imported count and rejected rows
+     * @throws SQLException if the COPY fails
+     */
+    Result importCopy(Iterable<Vehicle> vehicles, LongConsumer progress) throws SQLException {
+        Result result = new Result();
+        // Row number of each streamed vehicle ID, in stream order
+        Map<String, Long> streamed = new LinkedHashMap<>();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("CREATE TEMP TABLE vehicle_import " +
+                            "(vehicle_id VARCHAR(50), type VARCHAR(50), brand VARCHAR(50), " +
+                            "model VARCHAR(50), base_price_per_day DECIMAL(10, 2)) ON COMMIT DROP");
+                }
+
+                CopyIn copy = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                        "COPY vehicle_import (vehicle_id, type, brand, model, base_price_per_day) " +
+                                "FROM STDIN WITH (FORMAT csv)");
+                try {
+                    StringBuilder buffer = new StringBuilder();
+                    int buffered = 0;
+                    long row = 0;
+                    for (Vehicle vehicle : vehicles) {
+                        row++;
+                        String problem = validate(vehicle);
+                        if (problem != null) {
+                            result.errors.add(new RowError(row, vehicle == null ? null : vehicle.getVehicleId(), problem));
+                            continue;
+                        }
+                        if (streamed.containsKey(vehicle.getVehicleId())) {
+                            result.errors.add(new RowError(row, vehicle.getVehicleId(), "Duplicate vehicle ID"));
+                            continue;
+                        }
+                        streamed.put(vehicle.getVehicleId(), row);
+                        appendCsv(buffer, vehicle);
+
+                        if (++buffered == COPY_BUFFER_ROWS) {
+                            writeCopy(copy, buffer);
+                            buffered = 0;
+                            report(progress, row);
+                        }
+                    }
+                    writeCopy(copy, buffer);
+                    copy.endCopy();
+                    report(progress, row);
+                } finally {
+                    if (copy.isActive()) {
+                        copy.cancelCopy();
+                    }
+                }
+
+                Set<String> inserted = new HashSet<>();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("INSERT INTO vehicles " +
+                             "(vehicle_id, type, brand, model, base_price_per_day, is_available) " +
+                             "SELECT vehicle_id, type, brand, model, base_price_per_day, TRUE FROM vehicle_import " +
+                             "ON CONFLICT (vehicle_id) DO NOTHING RETURNING vehicle_id")) {
+                    while (rs.next()) {
+                        inserted.add(rs.getString(1));
+                    }
+                }
+                conn.commit();
+
+                result.imported = inserted.size();
+                for (Map.Entry<String, Long> entry : streamed.entrySet()) {
+                    if (!inserted.contains(entry.getKey())) {
+                        result.errors.add(new RowError(entry.getValue(), entry.getKey(), "Duplicate vehicle ID"));
+                    }
+                }
+                result.errors.sort((a, b) -> Long.compare(a.row, b.row));
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+
+        return result;
+    }
+
+    private void writeCopy(CopyIn copy, StringBuilder buffer) throws SQLException {
+        if (buffer.length() > 0) {
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copy.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+    }
+
+    private void appendCsv(StringBuilder buffer, Vehicle vehicle) {
+        appendCsvField(buffer, vehicle.getVehicleId()).append(',');
+        appendCsvField(buffer, vehicle.getType()).append(',');
+        appendCsvField(buffer, vehicle.getBrand()).append(',');
+        appendCsvField(buffer, vehicle.getModel()).append(',');
+        buffer.append(vehicle.getBasePricePerDay()).append('\n');
+    }
+
+    private StringBuilder appendCsvField(StringBuilder buffer, String value) {
+        return buffer.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Parse CSV rows of vehicle_id,type,brand,model,base_price_per_day (header line optional)
+     * and import them with either the COPY or the batched path.
+     * Lines that cannot be parsed are reported with their line number.
+     * @param csv CSV source
+     * @param useCopy true for COPY, false for JDBC batches
+     * @param batchSize rows per batch for the batched path
+     * @param progress called with the number of rows processed so far, may be null
+     * @return imported count and rejected rows
+     * @throws IOException if reading the CSV fails
+     * @throws SQLException if the database cannot be reached
+     */
+    Result importCsv(Reader csv, boolean useCopy, int batchSize, LongConsumer progress)
+            throws IOException, SQLException {
+        List<Vehicle> vehicles = new ArrayList<>();
+        List<Long> lineNumbers = new ArrayList<>();
+        List<RowError> parseErrors = new ArrayList<>();
+
+        BufferedReader reader = new BufferedReader(csv);
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || (lineNumber == 1 && line.toLowerCase().startsWith("vehicle_id"))) {
+                continue;
+            }
+            List<String> fields = parseCsvLine(line);
+            if (fields.size() != 5) {
+                parseErrors.add(new RowError(lineNumber, null, "Expected 5 fields but found " + fields.size()));
+                continue;
+            }
+            try {
+                double price = Double.parseDouble(fields.get(4).trim());
+                vehicles.add(new Vehicle(fields.get(0).trim(), fields.get(1).trim(), fields.get(2).trim(),
+                        fields.get(3).trim(), price));
+                lineNumbers.add(lineNumber);
+            } catch (NumberFormatException e) {
+                parseErrors.add(new RowError(lineNumber, fields.get(0).trim(), "Invalid price: " + fields.get(4)));
+            }
+        }
+
+        Result result = useCopy ? importCopy(vehicles, progress) : importBatched(vehicles, batchSize, progress);
+
+        // Report rows by CSV line number rather than position among the parsed vehicles
+        List<RowError> errors = new ArrayList<>(parseErrors);
+        for (RowError error : result.errors) {
+            errors.add(new RowError(lineNumbers.get((int) error.row - 1), error.vehicleId, error.message));
+        }
+        errors.sort((a, b) -> Long.compare(a.row, b.row));
+        result.errors.clear();
+        result.errors.addAll(errors);
+        return result;
+    }
+
+    // Splits one CSV line, honouring double-quoted fields with "" escapes
+    private List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // Returns why a vehicle cannot be stored, or null if it is fine
+    private String validate(Vehicle vehicle) {
+        if (vehicle == null) {
+            return "Missing vehicle";
+        }
+        if (isBlank(vehicle.getVehicleId()) || isBlank(vehicle.getType())
+                || isBlank(vehicle.getBrand()) || isBlank(vehicle.getModel())) {
+            return "Vehicle ID, type, brand and model are required";
+        }
+        if (vehicle.getVehicleId().length() > MAX_TEXT_LENGTH || vehicle.getType().length() > MAX_TEXT_LENGTH
+                || vehicle.getBrand().length() > MAX_TEXT_LENGTH || vehicle.getModel().length() > MAX_TEXT_LENGTH) {
+            return "Text fields are limited to " + MAX_TEXT_LENGTH + " characters";
+        }
+        double price = vehicle.getBasePricePerDay();
+        if (Double.isNaN(price) || Double.isInfinite(price) || price < 0 || price >= 100000000) {
+            return "Invalid price: " + price;
+        }
+        return null;
+    }
+
+    private boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private void report(LongConsumer progress, long processed) {
+        if (progress != null) {
+            progress.accept(processed);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.example;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable vehicle search, compiled by {@link VehicleRentalSystem#findVehicles(VehicleQuery)}
+ * into one parameterized SQL statement, or evaluated in memory by the embedded store.
+ * Unset criteria are left out of the WHERE clause. Type, brand and model match case-insensitively.
+ * <pre>
+ * VehicleQuery query = VehicleQuery.builder()
+ *         .type("Truck").maxPrice(100).availableOnly()
+ *         .sortBy(VehicleQuery.Sort.PRICE_ASC).limit(20)
+ *         .build();
+ * </pre>
+ */
+public final class VehicleQuery {
+
+    /**
+     * Result order; every order ends with vehicle_id so results are deterministic
+     */
+    public enum Sort {
+        VEHICLE_ID("vehicle_id", Comparator.comparing(Vehicle::getVehicleId)),
+        PRICE_ASC("base_price_per_day, vehicle_id",
+                Comparator.comparingDouble(Vehicle::getBasePricePerDay).thenComparing(Vehicle::getVehicleId)),
+        PRICE_DESC("base_price_per_day DESC, vehicle_id",
+                Comparator.comparingDouble(Vehicle::getBasePricePerDay).reversed()
+                        .thenComparing(Vehicle::getVehicleId));
+
+        private final String orderBy;
+        private final Comparator<Vehicle> comparator;
+
+        Sort(String orderBy, Comparator<Vehicle> comparator) {
+            this.orderBy = orderBy;
+            this.comparator = comparator;
+        }
+    }
+
+    private final String type;
+    private final String brand;
+    private final String model;
+    private final Double minPrice;
+    private final Double maxPrice;
+    private final Boolean available;
+    private final Sort sort;
+    private final int limit;
+
+    private VehicleQuery(Builder builder) {
+        this.type = builder.type;
+        this.brand = builder.brand;
+        this.model = builder.model;
+        this.minPrice = builder.minPrice;
+        this.maxPrice = builder.maxPrice;
+        this.available = builder.available;
+        this.sort = builder.sort;
+        this.limit = builder.limit;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Build the SELECT for this query
+     * @param params receives the parameter values in placeholder order
+     * @return SQL with ? placeholders
+     */
+    String toSql(List<Object> params) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM vehicles");
+        String glue = " WHERE ";
+
+        // The lower(...) forms match idx_vehicles_type_price and idx_vehicles_brand_model
+        if (type != null) {
+            sql.append(glue).append("lower(type) = lower(?)");
+            params.add(type);
+            glue = " AND ";
+        }
+        if (brand != null) {
+            sql.append(glue).append("lower(brand) = lower(?)");
+            params.add(brand);
+            glue = " AND ";
+        }
+        if (model != null) {
+            sql.append(glue).append("lower(model) = lower(?)");
+            params.add(model);
+            glue = " AND ";
+        }
+        if (minPrice != null) {
+            sql.append(glue).append("base_price_per_day >= ?");
+            params.add(minPrice);
+            glue = " AND ";
+        }
+        if (maxPrice != null) {
+            sql.append(glue).append("base_price_per_day <= ?");
+            params.add(maxPrice);
+            glue = " AND ";
+        }
+        if (available != null) {
+            sql.append(glue).append("is_available = ?");
+            params.add(available);
+        }
+
+        sql.append(" ORDER BY ").append(sort.orderBy);
+        if (limit > 0) {
+            sql.append(" LIMIT ?");
+            params.add(limit);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Evaluate the WHERE clause of this query against one vehicle
+     * @param vehicle vehicle to test
+     * @return true if the vehicle meets every set criterion
+     */
+    boolean matches(Vehicle vehicle) {
+        return (type == null || type.equalsIgnoreCase(vehicle.getType()))
+                && (brand == null || brand.equalsIgnoreCase(vehicle.getBrand()))
+                && (model == null || model.equalsIgnoreCase(vehicle.getModel()))
+                && (minPrice == null || vehicle.getBasePricePerDay() >= minPrice)
+                && (maxPrice == null || vehicle.getBasePricePerDay() <= maxPrice)
+                && (available == null || vehicle.isAvailable() == available);
+    }
+
+    // The ORDER BY of this query as a comparator
+    Comparator<Vehicle> comparator() {
+        return sort.comparator;
+    }
+
+    // Maximum number of rows; 0 for no limit
+    int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return "VehicleQuery{type=" + type + ", brand=" + brand + ", model=" + model +
+                ", minPrice=" + minPrice + ", maxPrice=" + maxPrice + ", available=" + available +
+                ", sort=" + sort + ", limit=" + limit + "}";
+    }
+
+    /**
+     * Collects search criteria. Blank strings are treated as unset, so form fields can be
+     * passed straight through.
+     */
+    public static final class Builder {
+        private String type;
+        private String brand;
+        private String model;
+        private Double minPrice;
+        private Double maxPrice;
+        private Boolean available;
+        private Sort sort = Sort.VEHICLE_ID;
+        private int limit;
+
+        private Builder() {
+        }
+
+        public Builder type(String type) {
+            this.type = blankToNull(type);
+            return this;
+        }
+
+        public Builder brand(String brand) {
+            this.brand = blankToNull(brand);
+            return this;
+        }
+
+        public Builder model(String model) {
+            this.model = blankToNull(model);
+            return this;
+        }
+
+        public Builder minPrice(double minPrice) {
+            this.minPrice = minPrice;
+            return this;
+        }
+
+        public Builder maxPrice(double maxPrice) {
+            this.maxPrice = maxPrice;
+            return this;
+        }
+
+        // Only vehicles that can be rented right now
+        public Builder availableOnly() {
+            this.available = true;
+            return this;
+        }
+
+        // Filter on availability; null matches both
+        public Builder available(Boolean available) {
+            this.available = available;
+            return this;
+        }
+
+        public Builder sortBy(Sort sort) {
+            this.sort = sort;
+            return this;
+        }
+
+        // Maximum number of rows; 0 for no limit
+        public Builder limit(int limit) {
+            if (limit < 0) {
+                throw new IllegalArgumentException("limit must not be negative: " + limit);
+            }
+            this.limit = limit;
+            return this;
+        }
+
+        public VehicleQuery build() {
+            if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+                throw new IllegalArgumentException("minPrice " + minPrice + " is above maxPrice " + maxPrice);
+            }
+            return new VehicleQuery(this);
+        }
+
+        private static String blankToNull(String value) {
+            return value == null || value.trim().isEmpty() ? null : value.trim();
+        }
+    }
+}
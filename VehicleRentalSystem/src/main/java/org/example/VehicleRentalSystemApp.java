@@ -6,13 +6,32 @@ import java.awt.Font;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -23,7 +42,8 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPasswordField;
 import javax.swing.JScrollPane;
-import javax.swing.JTextArea;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
@@ -36,6 +56,7 @@ class Vehicle {
     private String model;
     private double basePricePerDay;
     private boolean isAvailable;
+    private long version; // Row version, bumped by every stored change; see VehicleRepository
 
     public Vehicle(String vehicleId, String type, String brand, String model, double basePricePerDay) {
         this.vehicleId = vehicleId;
@@ -72,9 +93,18 @@ class Vehicle {
         this.basePricePerDay = basePricePerDay;
     }
 
-    // Calculates the total rental price for a given number of days
+    // Calculates the total rental price for a given number of days starting today
     public double calculatePrice(int rentalDays) {
-        return basePricePerDay * rentalDays;
+        return PricingEngine.getDefault().quote(this, LocalDate.now(), rentalDays).getTotal().doubleValue();
+    }
+
+    // Version of the stored vehicle this object was read at
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
     }
 
     // Checks if the vehicle is currently available
@@ -92,6 +122,14 @@ class Vehicle {
         isAvailable = true;
     }
 
+    // Independent copy of the vehicle's current state, for holders that must not share it
+    public Vehicle copy() {
+        Vehicle copy = new Vehicle(vehicleId, type, brand, model, basePricePerDay);
+        copy.isAvailable = isAvailable;
+        copy.version = version;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return vehicleId + " - " + type + " " + brand + " " + model + " ($" + basePricePerDay + "/day, " + (isAvailable ? "Available" : "Rented") + ")";
@@ -161,17 +199,38 @@ class Admin {
 
 // Represents a rental transaction
 class Rental {
+    private int rentalId;
     private Vehicle vehicle;
     private Customer customer;
     private int days;
+    private OffsetDateTime rentedAt;
+    private OffsetDateTime returnedAt;  // null while the rental is open
+    private double totalPrice;          // price snapshot taken when the vehicle was rented
 
     public Rental(Vehicle vehicle, Customer customer, int days) {
+        this(0, vehicle, customer, days);
+    }
+
+    public Rental(int rentalId, Vehicle vehicle, Customer customer, int days) {
+        this(rentalId, vehicle, customer, days, null, null, vehicle.calculatePrice(days));
+    }
+
+    public Rental(int rentalId, Vehicle vehicle, Customer customer, int days,
+                  OffsetDateTime rentedAt, OffsetDateTime returnedAt, double totalPrice) {
+        this.rentalId = rentalId;
         this.vehicle = vehicle;
         this.customer = customer;
         this.days = days;
+        this.rentedAt = rentedAt;
+        this.returnedAt = returnedAt;
+        this.totalPrice = totalPrice;
     }
 
     // Getters for rental details
+    public int getRentalId() {
+        return rentalId;
+    }
+
     public Vehicle getVehicle() {
         return vehicle;
     }
@@ -184,65 +243,407 @@ class Rental {
         return days;
     }
 
+    public OffsetDateTime getRentedAt() {
+        return rentedAt;
+    }
+
+    public OffsetDateTime getReturnedAt() {
+        return returnedAt;
+    }
+
+    public double getTotalPrice() {
+        return totalPrice;
+    }
+
+    public boolean isOpen() {
+        return returnedAt == null;
+    }
+
     @Override
     public String toString() {
         return "Vehicle: " + vehicle.getVehicleId() + " (" + vehicle.getBrand() + " " + vehicle.getModel() + "), Customer: " + customer.getName() + " (ID: " + customer.getCustomerId() + "), Days: " + days;
     }
 }
 
-// The main system class managing vehicles, customers, and rentals using PostgreSQL database
+// A booking of a vehicle for the half-open period [start, end).
+// Rentals hold a booking too, linked through rentalId (0 for plain reservations).
+class Reservation {
+    private int reservationId;
+    private String vehicleId;
+    private String customerId;
+    private OffsetDateTime start;
+    private OffsetDateTime end;
+    private int rentalId;
+
+    public Reservation(int reservationId, String vehicleId, String customerId,
+                       OffsetDateTime start, OffsetDateTime end, int rentalId) {
+        this.reservationId = reservationId;
+        this.vehicleId = vehicleId;
+        this.customerId = customerId;
+        this.start = start;
+        this.end = end;
+        this.rentalId = rentalId;
+    }
+
+    // Getters for reservation details
+    public int getReservationId() {
+        return reservationId;
+    }
+
+    public String getVehicleId() {
+        return vehicleId;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public OffsetDateTime getStart() {
+        return start;
+    }
+
+    public OffsetDateTime getEnd() {
+        return end;
+    }
+
+    public int getRentalId() {
+        return rentalId;
+    }
+
+    public long getStartMillis() {
+        return start.toInstant().toEpochMilli();
+    }
+
+    public long getEndMillis() {
+        return end.toInstant().toEpochMilli();
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation " + reservationId + ": Vehicle " + vehicleId + ", Customer " + customerId +
+                ", " + start + " to " + end;
+    }
+}
+
+// Outcome of a rent attempt
+enum RentResult {
+    RENTED,          // Vehicle claimed and rental recorded
+    ALREADY_RENTED,  // Vehicle exists but is not available
+    RESERVED,        // Vehicle is booked by another customer during the rental period
+    CONFLICT,        // Vehicle was repriced since the caller read it; quote again
+    NOT_FOUND,       // No vehicle with that ID
+    FAILED           // Database error, nothing was changed
+}
+
+// Outcome of a reservation attempt
+enum ReserveResult {
+    RESERVED,       // Booking recorded
+    CONFLICT,       // Vehicle is already booked for part of the period
+    INVALID_RANGE,  // Period is empty or already over
+    NOT_FOUND,      // No vehicle with that ID
+    FAILED          // Database error, nothing was changed
+}
+
+// Outcome of a return attempt
+enum ReturnResult {
+    RETURNED,    // Rental closed and vehicle available again
+    NOT_RENTED,  // Vehicle exists but is not rented, or not by this customer
+    CONFLICT,    // Vehicle kept changing while the return was retried
+    NOT_FOUND,   // No vehicle with that ID
+    FAILED       // Database error, nothing was changed
+}
+
+// Outcome of a vehicle price change
+enum UpdateResult {
+    UPDATED,    // New price stored
+    CONFLICT,   // Vehicle changed since the caller read it; nothing was changed
+    NOT_FOUND,  // No vehicle with that ID
+    FAILED      // Database error, nothing was changed
+}
+
+// Outcome of a vehicle deletion
+enum DeleteResult {
+    DELETED,    // Vehicle removed; its closed rentals stay as history
+    RENTED,     // Vehicle is rented out and cannot be deleted
+    CONFLICT,   // Vehicle changed since the caller read it; nothing was changed
+    NOT_FOUND,  // No vehicle with that ID
+    FAILED      // Database error, nothing was changed
+}
+
+// The main system class managing vehicles, customers, and rentals, stored in PostgreSQL
+// or in the embedded store (see Storage)
 class VehicleRentalSystem {
-    // No need to store lists in memory as we'll use the database
+    // Active bookings that have not ended yet; served by idx_reservations_active_end
+    private static final String RESERVATIONS_QUERY = "SELECT reservation_id, vehicle_id, customer_id, " +
+            "lower(period) AS starts_at, upper(period) AS ends_at, rental_id FROM reservations " +
+            "WHERE cancelled_at IS NULL AND upper(period) > now()";
+
+    // Rows per JDBC batch for bulk vehicle imports
+    private static final int IMPORT_BATCH_SIZE = 500;
+
+    // Pricing rate tables cover this window around the start date; quotes outside it are slower
+    private static final int PRICING_HORIZON_PAST_DAYS = 7;
+    private static final int PRICING_HORIZON_DAYS = 2 * 366;
+    private static final int QUOTE_CACHE_SIZE = 100000;
+
+    // Vehicle inventory settings
+    private static final long VEHICLE_CACHE_TTL_MS = 60000;
+    private static final boolean LISTEN_FOR_VEHICLE_CHANGES =
+            Boolean.parseBoolean(System.getProperty("vehicle.listenForChanges", "true"));
+
+    // How often a rent or return that lost a version race is retried at the vehicle's new version
+    private static final int CONFLICT_RETRIES = Integer.getInteger("vehicle.conflictRetries", 3);
+
+    // Renters waiting behind a successful rental of the same vehicle have lost, and returns
+    // waiting behind a successful return have nothing left to return
+    private static final VehicleAdmission.Settler<RentResult> RENT_SETTLER =
+            previous -> previous == RentResult.RENTED ? RentResult.ALREADY_RENTED : null;
+    private static final VehicleAdmission.Settler<ReturnResult> RETURN_SETTLER =
+            previous -> previous == ReturnResult.RETURNED ? ReturnResult.NOT_RENTED : null;
+
+    // SQLSTATE of an exclusion constraint violation: the booking overlaps another one
+    private static final String EXCLUSION_VIOLATION = "23P01";
+
+    // Per-operation latency, error and row counters; no-ops unless -Dmetrics.enabled=true
+    private static final Metrics.Operation ADD_VEHICLE_METRICS = Metrics.operation("addVehicle");
+    private static final Metrics.Operation ADD_VEHICLES_METRICS = Metrics.operation("addVehicles");
+    private static final Metrics.Operation COPY_VEHICLES_METRICS = Metrics.operation("copyVehicles");
+    private static final Metrics.Operation IMPORT_VEHICLES_CSV_METRICS = Metrics.operation("importVehiclesCsv");
+    private static final Metrics.Operation ADD_CUSTOMER_METRICS = Metrics.operation("addCustomer");
+    private static final Metrics.Operation RENT_VEHICLE_METRICS = Metrics.operation("rentVehicle");
+    private static final Metrics.Operation RETURN_VEHICLE_METRICS = Metrics.operation("returnVehicle");
+    private static final Metrics.Operation RETURN_VEHICLE_FOR_METRICS = Metrics.operation("returnVehicleFor");
+    private static final Metrics.Operation RESERVE_VEHICLE_METRICS = Metrics.operation("reserveVehicle");
+    private static final Metrics.Operation CANCEL_RESERVATION_METRICS = Metrics.operation("cancelReservation");
+    private static final Metrics.Operation GET_RESERVATIONS_METRICS = Metrics.operation("getReservations");
+    private static final Metrics.Operation UPDATE_VEHICLE_METRICS = Metrics.operation("updateVehicle");
+    private static final Metrics.Operation DELETE_VEHICLE_METRICS = Metrics.operation("deleteVehicle");
+    private static final Metrics.Operation ADMIN_LOGIN_METRICS = Metrics.operation("adminLogin");
+    private static final Metrics.Operation CHANGE_ADMIN_PASSWORD_METRICS = Metrics.operation("changeAdminPassword");
+    private static final Metrics.Operation UPDATE_CUSTOMER_PASSWORD_METRICS = Metrics.operation("updateCustomerPassword");
+    private static final Metrics.Operation GET_CUSTOMERS_METRICS = Metrics.operation("getCustomers");
+    private static final Metrics.Operation FIND_CUSTOMER_BY_ID_METRICS = Metrics.operation("findCustomerById");
+    private static final Metrics.Operation FIND_CUSTOMER_BY_NAME_METRICS = Metrics.operation("findCustomerByName");
+    private static final Metrics.Operation GET_RENTALS_METRICS = Metrics.operation("getRentals");
+    private static final Metrics.Operation GET_RENTAL_HISTORY_METRICS = Metrics.operation("getRentalHistory");
+    private static final Metrics.Operation FIND_VEHICLES_METRICS = Metrics.operation("findVehicles");
+    private static final Metrics.Operation GET_VEHICLES_PAGE_METRICS = Metrics.operation("getVehiclesPage");
+    private static final Metrics.Operation GET_RENTALS_PAGE_METRICS = Metrics.operation("getRentalsPage");
+    private static final Metrics.Operation LOAD_VEHICLES_METRICS = Metrics.operation("loadVehicles");
+    private static final Metrics.Operation LOAD_VEHICLES_BY_IDS_METRICS = Metrics.operation("loadVehiclesByIds");
+    private static final Metrics.Operation JOURNAL_REJECTED_METRICS = Metrics.operation("journalRejected");
+
+    // Where vehicles, customers and rentals are persisted
+    private final Storage storage;
+    private final VehicleRepository vehicleRepository;
+    private final CustomerRepository customerRepository;
+    private final RentalRepository rentalRepository;
+
+    // With -Djournal.enabled, rents and returns are confirmed from a local journal and shipped
+    // to the database in the background; null otherwise
+    private final RentalJournal journal;
+
+    // Vehicles are cached in memory; customers and rentals are read from the repositories
+    private final VehicleCache vehicleCache;
+    private final ReservationIndex reservationIndex;
+
+    // One rent or return per vehicle at a time; callers behind a successful one are answered locally
+    private final VehicleAdmission admission = new VehicleAdmission();
+
+    // Password hashing on its own bounded pool, and recently verified passwords
+    private final Credentials credentials = new Credentials();
+
+    // Columnar fleet view for analytics, patched with the vehicles changed since it was built
+    private final long fleetSnapshotTtlMillis;
+    private final Set<String> fleetChanges = ConcurrentHashMap.newKeySet();
+    private final Object fleetSnapshotLock = new Object();
+    private FleetSnapshot fleetSnapshot;
+    private final VehicleChangeListener vehicleChangeListener;
+    private final RentalReports reports = new RentalReports();
+    private final CachingPricingEngine pricingEngine;
 
     public VehicleRentalSystem() {
+        this(VEHICLE_CACHE_TTL_MS, LISTEN_FOR_VEHICLE_CHANGES);
+    }
+
+    // Creates the system with a custom vehicle cache TTL and optional LISTEN/NOTIFY invalidation
+    public VehicleRentalSystem(long vehicleCacheTtlMillis, boolean listenForVehicleChanges) {
+        this(vehicleCacheTtlMillis, listenForVehicleChanges, RuleBasedPricingEngine.standardRules()
+                .compile(LocalDate.now().minusDays(PRICING_HORIZON_PAST_DAYS), PRICING_HORIZON_DAYS));
+    }
+
+    // Creates the system with a custom pricing engine, e.g. PricingEngine.FLAT
+    public VehicleRentalSystem(long vehicleCacheTtlMillis, boolean listenForVehicleChanges, PricingEngine pricing) {
+        this(Storage.fromSystemProperties(), vehicleCacheTtlMillis, listenForVehicleChanges, pricing);
+    }
+
+    // Creates the system on the given storage; LISTEN/NOTIFY invalidation only applies to PostgreSQL
+    VehicleRentalSystem(Storage storage, long vehicleCacheTtlMillis, boolean listenForVehicleChanges,
+                        PricingEngine pricing) {
+        this.storage = storage;
+        vehicleRepository = storage.getVehicleRepository();
+        customerRepository = storage.getCustomerRepository();
+        rentalRepository = storage.getRentalRepository();
+
         // Initialize database tables
-        DatabaseConnection.initializeDatabase();
+        storage.initialize();
+
+        pricingEngine = new CachingPricingEngine(pricing, QUOTE_CACHE_SIZE);
+        PricingEngine.setDefault(pricingEngine);
+
+        vehicleCache = new VehicleCache(new VehicleCache.Loader() {
+            @Override
+            public List<Vehicle> loadAll() throws SQLException {
+                return loadAllVehicles();
+            }
+
+            @Override
+            public List<Vehicle> loadByIds(Collection<String> vehicleIds) throws SQLException {
+                return loadVehiclesByIds(vehicleIds);
+            }
+        }, vehicleCacheTtlMillis);
+        reservationIndex = new ReservationIndex(this::loadActiveReservations, vehicleCacheTtlMillis);
+        fleetSnapshotTtlMillis = vehicleCacheTtlMillis;
+        vehicleCache.addChangeListener(fleetChanges::add);
+
+        if (listenForVehicleChanges && !storage.isEmbedded()) {
+            vehicleChangeListener = new VehicleChangeListener(vehicleCache);
+            vehicleChangeListener.start();
+        } else {
+            vehicleChangeListener = null;
+        }
+
+        try {
+            journal = storage.openJournal(new JournalListener());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open rental journal " + RentalJournal.FILE, e);
+        }
     }
 
-    // Adds a new vehicle to the system
-    public void addVehicle(Vehicle vehicle) {
-        Connection conn = null;
-        PreparedStatement stmt = null;
+    // Stops background work, ships what the journal holds and closes pooled database
+    // connections or the embedded store
+    public void shutdown() {
+        if (vehicleChangeListener != null) {
+            vehicleChangeListener.stop();
+        }
+        storage.close();
+        credentials.close();
+    }
 
+    // Adds a new vehicle to the system, returns false if it could not be added
+    public boolean addVehicle(Vehicle vehicle) {
+        long started = Metrics.start();
         try {
-            conn = DatabaseConnection.getConnection();
-            String sql = "INSERT INTO vehicles (vehicle_id, type, brand, model, base_price_per_day, is_available) VALUES (?, ?, ?, ?, ?, ?)";
-            stmt = conn.prepareStatement(sql);
-            stmt.setString(1, vehicle.getVehicleId());
-            stmt.setString(2, vehicle.getType());
-            stmt.setString(3, vehicle.getBrand());
-            stmt.setString(4, vehicle.getModel());
-            stmt.setDouble(5, vehicle.getBasePricePerDay());
-            stmt.setBoolean(6, true); // New vehicles are available by default
-
-            stmt.executeUpdate();
-            System.out.println("Vehicle added successfully to database.");
+            vehicleRepository.add(vehicle);
+            vehicleCache.put(vehicle);
+            EventLog.info("addVehicle").with("vehicleId", vehicle.getVehicleId()).elapsed(started)
+                    .log("Vehicle added successfully to database");
+            return true;
         } catch (SQLException e) {
-            System.err.println("Error adding vehicle: " + e.getMessage());
+            ADD_VEHICLE_METRICS.error();
+            EventLog.error("addVehicle").with("vehicleId", vehicle.getVehicleId()).cause(e).elapsed(started)
+                    .log("Error adding vehicle");
+            return false;
         } finally {
-            closeResources(stmt, conn);
+            ADD_VEHICLE_METRICS.record(started);
         }
     }
 
-    // Adds a new customer to the system
-    public void addCustomer(Customer customer) {
-        Connection conn = null;
-        PreparedStatement stmt = null;
+    // Adds many vehicles using JDBC batches; invalid and duplicate rows are skipped and reported
+    public VehicleImporter.Result addVehicles(Iterable<Vehicle> vehicles) {
+        return addVehicles(vehicles, IMPORT_BATCH_SIZE, null);
+    }
 
+    // Adds many vehicles using JDBC batches of the given size, reporting rows processed to progress
+    public VehicleImporter.Result addVehicles(Iterable<Vehicle> vehicles, int batchSize, LongConsumer progress) {
+        if (needsDatabase("addVehicles")) {
+            return failedImport(new UnsupportedOperationException("Bulk imports need PostgreSQL"));
+        }
+        long started = Metrics.start();
         try {
-            conn = DatabaseConnection.getConnection();
-            String sql = "INSERT INTO customers (customer_id, name, password) VALUES (?, ?, ?)";
-            stmt = conn.prepareStatement(sql);
-            stmt.setString(1, customer.getCustomerId());
-            stmt.setString(2, customer.getName());
-            stmt.setString(3, customer.getPassword());
+            return new VehicleImporter().importBatched(vehicles, batchSize, progress);
+        } catch (SQLException e) {
+            ADD_VEHICLES_METRICS.error();
+            EventLog.error("addVehicles").cause(e).elapsed(started).log("Error importing vehicles");
+            return failedImport(e);
+        } finally {
+            ADD_VEHICLES_METRICS.record(started);
+            vehicleCache.invalidateAll();
+        }
+    }
 
-            stmt.executeUpdate();
-            System.out.println("Customer added successfully to database.");
+    // Adds many vehicles through PostgreSQL COPY, the fastest path for large fleets
+    public VehicleImporter.Result copyVehicles(Iterable<Vehicle> vehicles, LongConsumer progress) {
+        if (needsDatabase("copyVehicles")) {
+            return failedImport(new UnsupportedOperationException("Bulk imports need PostgreSQL"));
+        }
+        long started = Metrics.start();
+        try {
+            return new VehicleImporter().importCopy(vehicles, progress);
         } catch (SQLException e) {
-            System.err.println("Error adding customer: " + e.getMessage());
+            COPY_VEHICLES_METRICS.error();
+            EventLog.error("copyVehicles").cause(e).elapsed(started).log("Error copying vehicles");
+            return failedImport(e);
         } finally {
-            closeResources(stmt, conn);
+            COPY_VEHICLES_METRICS.record(started);
+            vehicleCache.invalidateAll();
+        }
+    }
+
+    // Imports vehicle_id,type,brand,model,base_price_per_day CSV rows via COPY or JDBC batches
+    public VehicleImporter.Result importVehiclesCsv(Reader csv, boolean useCopy, LongConsumer progress) {
+        if (needsDatabase("importVehiclesCsv")) {
+            return failedImport(new UnsupportedOperationException("Bulk imports need PostgreSQL"));
+        }
+        long started = Metrics.start();
+        try {
+            return new VehicleImporter().importCsv(csv, useCopy, IMPORT_BATCH_SIZE, progress);
+        } catch (SQLException | IOException e) {
+            IMPORT_VEHICLES_CSV_METRICS.error();
+            EventLog.error("importVehiclesCsv").cause(e).elapsed(started).log("Error importing vehicles from CSV");
+            return failedImport(e);
+        } finally {
+            IMPORT_VEHICLES_CSV_METRICS.record(started);
+            vehicleCache.invalidateAll();
+        }
+    }
+
+    private VehicleImporter.Result failedImport(Exception e) {
+        VehicleImporter.Result result = new VehicleImporter.Result();
+        result.errors.add(new VehicleImporter.RowError(0, null, "Import failed: " + e.getMessage()));
+        return result;
+    }
+
+    // Reservations, reports and bulk imports run on PostgreSQL only. Returns true, after logging,
+    // when the system runs on the embedded store and the operation must be skipped.
+    private boolean needsDatabase(String operation) {
+        if (!storage.isEmbedded()) {
+            return false;
+        }
+        EventLog.warn(operation).log("Not supported by the embedded store");
+        return true;
+    }
+
+    // Adds a new customer to the system, returns false if it could not be added.
+    // Only a hash of the password is stored, and it replaces the password in the customer object.
+    // Throws RejectedExecutionException if too many passwords are being hashed at once.
+    public boolean addCustomer(Customer customer) {
+        long started = Metrics.start();
+        try {
+            String hash = credentials.hash(customer.getPassword());
+            customerRepository.add(new Customer(customer.getCustomerId(), customer.getName(), hash));
+            credentials.remember(customerPrincipal(customer.getCustomerId()), customer.getPassword(), hash);
+            customer.setPassword(hash);
+            EventLog.info("addCustomer").with("customerId", customer.getCustomerId()).elapsed(started)
+                    .log("Customer added successfully to database");
+            return true;
+        } catch (SQLException e) {
+            ADD_CUSTOMER_METRICS.error();
+            EventLog.error("addCustomer").with("customerId", customer.getCustomerId()).cause(e).elapsed(started)
+                    .log("Error adding customer");
+            return false;
+        } finally {
+            ADD_CUSTOMER_METRICS.record(started);
         }
     }
 
@@ -251,7 +652,7 @@ class VehicleRentalSystem {
         try {
             if (stmt != null) stmt.close();
         } catch (SQLException e) {
-            System.err.println("Error closing statement: " + e.getMessage());
+            EventLog.warn("closeResources").cause(e).log("Error closing statement");
         }
 
         if (conn != null) {
@@ -259,174 +660,552 @@ class VehicleRentalSystem {
         }
     }
 
-    // Handles the rental process for a vehicle
-    public void rentVehicle(Vehicle vehicle, Customer customer, int days) {
-        Connection conn = null;
-        PreparedStatement updateStmt = null;
-        PreparedStatement insertStmt = null;
+    // Handles the rental process for a vehicle.
+    // The repository claims the vehicle and records the rental atomically, so two
+    // concurrent renters can never both claim the same vehicle. The claim only succeeds at the
+    // version the caller read, so nobody rents at a price they were not shown.
+    // Concurrent rents of the same vehicle queue up in this process first; see VehicleAdmission.
+    public RentResult rentVehicle(Vehicle vehicle, Customer customer, int days) {
+        return admission.admit(vehicle.getVehicleId(), RENT_SETTLER, () -> rentAdmitted(vehicle, customer, days));
+    }
 
+    private RentResult rentAdmitted(Vehicle vehicle, Customer customer, int days) {
+        long started = Metrics.start();
         try {
-            conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false); // Start transaction
-
-            // First check if vehicle is available
-            String checkSql = "SELECT is_available FROM vehicles WHERE vehicle_id = ?";
-            PreparedStatement checkStmt = conn.prepareStatement(checkSql);
-            checkStmt.setString(1, vehicle.getVehicleId());
-            ResultSet rs = checkStmt.executeQuery();
-
-            if (rs.next() && rs.getBoolean("is_available")) {
-                // Update vehicle availability
-                String updateSql = "UPDATE vehicles SET is_available = false WHERE vehicle_id = ?";
-                updateStmt = conn.prepareStatement(updateSql);
-                updateStmt.setString(1, vehicle.getVehicleId());
-                updateStmt.executeUpdate();
-
-                // Create rental record
-                String insertSql = "INSERT INTO rentals (vehicle_id, customer_id, days) VALUES (?, ?, ?)";
-                insertStmt = conn.prepareStatement(insertSql);
-                insertStmt.setString(1, vehicle.getVehicleId());
-                insertStmt.setString(2, customer.getCustomerId());
-                insertStmt.setInt(3, days);
-                insertStmt.executeUpdate();
-
-                conn.commit();
-                vehicle.rent(); // Update the in-memory object state
-                System.out.println("Vehicle rented successfully.");
-            } else {
-                System.out.println("Vehicle is not available for rent.");
-                conn.rollback();
+            if (journal != null) {
+                return rentThroughJournal(vehicle, customer, days, started);
             }
+            // The pricing factor applies to the price row being claimed, not our cached copy
+            BigDecimal priceFactor = pricingEngine.priceFactor(vehicle.getType(), LocalDate.now(), days);
+            RentalRepository.RentOutcome outcome = rentalRepository.rent(vehicle.getVehicleId(),
+                    customer.getCustomerId(), days, priceFactor, vehicle.getVersion());
+            for (int retries = 0; outcome.getResult() == RentResult.CONFLICT && retries < CONFLICT_RETRIES; retries++) {
+                // Only a new price needs a new quote; a rental that came and went since the
+                // caller looked is retried at the new version
+                Vehicle current = reloadVehicle(vehicle.getVehicleId());
+                if (current == null || !current.isAvailable()
+                        || current.getBasePricePerDay() != vehicle.getBasePricePerDay()) {
+                    break;
+                }
+                outcome = rentalRepository.rent(vehicle.getVehicleId(), customer.getCustomerId(), days, priceFactor,
+                        current.getVersion());
+            }
+            RentResult result = outcome.getResult();
 
-            rs.close();
-            checkStmt.close();
+            if (result == RentResult.RENTED) {
+                vehicle.rent(); // Update the in-memory object state
+                vehicle.setVersion(outcome.getVersion());
+                vehicleCache.put(vehicle);
+                Reservation booking = outcome.getBooking();
+                if (booking != null) {
+                    reservationIndex.pickUp(vehicle.getVehicleId(), customer.getCustomerId(),
+                            booking.getStartMillis(), booking.getEndMillis());
+                    reservationIndex.add(booking);
+                }
+                EventLog.info("rentVehicle").with("vehicleId", vehicle.getVehicleId())
+                        .with("customerId", customer.getCustomerId()).with("days", days)
+                        .with("rentalId", outcome.getRentalId()).elapsed(started).log("Vehicle rented");
+            } else if (result == RentResult.ALREADY_RENTED || result == RentResult.CONFLICT) {
+                // Our view of the vehicle was stale
+                vehicleCache.invalidate(vehicle.getVehicleId());
+                return rentConflictResult(vehicle, result);
+            } else if (result == RentResult.NOT_FOUND) {
+                vehicleCache.remove(vehicle.getVehicleId());
+            }
+            return result;
         } catch (SQLException e) {
-            try {
-                if (conn != null) conn.rollback();
-            } catch (SQLException ex) {
-                System.err.println("Error rolling back transaction: " + ex.getMessage());
+            if (EXCLUSION_VIOLATION.equals(e.getSQLState())) {
+                // A reservation for the same period was committed concurrently
+                reservationIndex.invalidateAll();
+                return RentResult.RESERVED;
             }
-            System.err.println("Error renting vehicle: " + e.getMessage());
+            RENT_VEHICLE_METRICS.error();
+            EventLog.error("rentVehicle").with("vehicleId", vehicle.getVehicleId())
+                    .with("customerId", customer.getCustomerId()).with("days", days).cause(e).elapsed(started)
+                    .log("Error renting vehicle");
+            return RentResult.FAILED;
         } finally {
-            try {
-                if (conn != null) conn.setAutoCommit(true);
-            } catch (SQLException e) {
-                System.err.println("Error resetting auto-commit: " + e.getMessage());
+            RENT_VEHICLE_METRICS.record(started);
+        }
+    }
+
+    // A conflict that outlasted the retries is reported as what the vehicle turned into, if that
+    // is something the renter can act on
+    private RentResult rentConflictResult(Vehicle vehicle, RentResult result) throws SQLException {
+        if (result != RentResult.CONFLICT) {
+            return result;
+        }
+        Vehicle current = vehicleCache.get(vehicle.getVehicleId());
+        if (current == null) {
+            return RentResult.NOT_FOUND;
+        }
+        return current.isAvailable() ? RentResult.CONFLICT : RentResult.ALREADY_RENTED;
+    }
+
+    // Rereads one vehicle from the store, bypassing the cached row
+    private Vehicle reloadVehicle(String vehicleId) throws SQLException {
+        vehicleCache.invalidate(vehicleId);
+        return vehicleCache.get(vehicleId);
+    }
+
+    // Journal mode: the rental is decided against the cached vehicle, the journal's unshipped
+    // events and the reservation index, and confirmed once the journal has it on disk. The
+    // database applies it shortly after; see JournalListener for what happens if it refuses.
+    // The journal serializes rentals itself, so only the price the caller saw is compared.
+    private RentResult rentThroughJournal(Vehicle vehicle, Customer customer, int days, long started)
+            throws SQLException {
+        String vehicleId = vehicle.getVehicleId();
+        Vehicle cached = vehicleCache.get(vehicleId);
+        if (cached == null) {
+            return RentResult.NOT_FOUND;
+        }
+        if (cached.getBasePricePerDay() != vehicle.getBasePricePerDay()) {
+            return RentResult.CONFLICT;
+        }
+        long now = System.currentTimeMillis();
+        if (!reservationIndex.isFreeFor(vehicleId, customer.getCustomerId(), now, now + TimeUnit.DAYS.toMillis(days))) {
+            return RentResult.RESERVED;
+        }
+
+        long seq = journal.rent(vehicleId, customer.getCustomerId(), days,
+                pricingEngine.priceFactor(vehicle.getType(), LocalDate.now(), days),
+                () -> vehicleCache.isAvailable(vehicleId));
+        if (seq == 0) {
+            return RentResult.ALREADY_RENTED;
+        }
+        vehicle.rent(); // Update the in-memory object state
+        EventLog.info("rentVehicle").with("vehicleId", vehicleId).with("customerId", customer.getCustomerId())
+                .with("days", days).with("journalSeq", seq).elapsed(started).log("Vehicle rented");
+        return RentResult.RENTED;
+    }
+
+    // Handles the return process for a vehicle. The return applies at the version the caller
+    // read; if the vehicle changed meanwhile but is still out, it is retried at the new version.
+    public ReturnResult returnVehicle(Vehicle vehicle) {
+        return admission.admit(vehicle.getVehicleId(), RETURN_SETTLER, () -> returnAdmitted(vehicle));
+    }
+
+    private ReturnResult returnAdmitted(Vehicle vehicle) {
+        long started = Metrics.start();
+        try {
+            if (journal != null) {
+                return returnThroughJournal(vehicle, started);
+            }
+            RentalRepository.ReturnOutcome outcome = rentalRepository.returnVehicle(vehicle.getVehicleId(),
+                    vehicle.getVersion());
+            for (int retries = 0; outcome.getResult() == ReturnResult.CONFLICT && retries < CONFLICT_RETRIES;
+                 retries++) {
+                Vehicle current = reloadVehicle(vehicle.getVehicleId());
+                if (current == null) {
+                    outcome = new RentalRepository.ReturnOutcome(ReturnResult.NOT_FOUND);
+                } else if (current.isAvailable()) {
+                    // Returned by someone else in the meantime
+                    outcome = new RentalRepository.ReturnOutcome(ReturnResult.NOT_RENTED);
+                } else {
+                    outcome = rentalRepository.returnVehicle(vehicle.getVehicleId(), current.getVersion());
+                }
             }
-            closeResources(updateStmt, null);
-            closeResources(insertStmt, conn);
+            ReturnResult result = outcome.getResult();
+
+            if (result == ReturnResult.RETURNED) {
+                vehicle.returnVehicle(); // Update the in-memory object state
+                vehicle.setVersion(outcome.getVersion());
+                vehicleCache.put(vehicle);
+                reservationIndex.releaseRental(vehicle.getVehicleId());
+                EventLog.info("returnVehicle").with("vehicleId", vehicle.getVehicleId()).elapsed(started)
+                        .log("Vehicle returned successfully");
+            } else {
+                if (result == ReturnResult.NOT_FOUND) {
+                    vehicleCache.remove(vehicle.getVehicleId());
+                } else {
+                    vehicleCache.invalidate(vehicle.getVehicleId());
+                }
+                EventLog.info("returnVehicle").with("vehicleId", vehicle.getVehicleId()).with("result", result)
+                        .elapsed(started).log("Vehicle was not returned");
+            }
+            return result;
+        } catch (SQLException e) {
+            RETURN_VEHICLE_METRICS.error();
+            EventLog.error("returnVehicle").with("vehicleId", vehicle.getVehicleId()).cause(e).elapsed(started)
+                    .log("Error returning vehicle");
+            return ReturnResult.FAILED;
+        } finally {
+            RETURN_VEHICLE_METRICS.record(started);
         }
     }
 
-    // Handles the return process for a vehicle
-    public void returnVehicle(Vehicle vehicle) {
+    // Journal mode counterpart of the repository return; the cache and booking index are
+    // updated once the return is shipped
+    private ReturnResult returnThroughJournal(Vehicle vehicle, long started) throws SQLException {
+        String vehicleId = vehicle.getVehicleId();
+        if (vehicleCache.get(vehicleId) == null) {
+            EventLog.info("returnVehicle").with("vehicleId", vehicleId).with("result", ReturnResult.NOT_FOUND)
+                    .elapsed(started).log("Vehicle was not returned");
+            return ReturnResult.NOT_FOUND;
+        }
+        long seq = journal.returnVehicle(vehicleId, () -> vehicleCache.isAvailable(vehicleId));
+        if (seq == 0) {
+            EventLog.info("returnVehicle").with("vehicleId", vehicleId).with("result", ReturnResult.NOT_RENTED)
+                    .elapsed(started).log("Vehicle was not returned");
+            return ReturnResult.NOT_RENTED;
+        }
+        vehicle.returnVehicle(); // Update the in-memory object state
+        EventLog.info("returnVehicle").with("vehicleId", vehicle.getVehicleId()).with("journalSeq", seq)
+                .elapsed(started).log("Vehicle returned successfully");
+        return ReturnResult.RETURNED;
+    }
+
+    // Ownership, prices and bookings are checked in the database, so operations that rely on
+    // them first wait for the journal, if any, to ship the rents and returns it holds
+    private void awaitJournal() throws SQLException {
+        if (journal != null) {
+            journal.awaitShipped();
+        }
+    }
+
+    // Brings the vehicle cache and booking index in line with what the database made of each
+    // journaled event. Runs on the journal's shipper thread, before the journal stops answering
+    // for the vehicle, so availability checks never see a gap.
+    private class JournalListener implements RentalJournal.Listener {
+        @Override
+        public void rentShipped(RentalJournal.Event event, RentalRepository.RentOutcome outcome) {
+            if (outcome.getResult() != RentResult.RENTED) {
+                // Rented or booked through another app instance, or deleted, before we shipped
+                JOURNAL_REJECTED_METRICS.error();
+                vehicleCache.invalidate(event.getVehicleId());
+                EventLog.error("rentVehicle").with("vehicleId", event.getVehicleId())
+                        .with("customerId", event.getCustomerId()).with("journalSeq", event.getSeq())
+                        .with("result", outcome.getResult()).log("Journaled rental refused by the database");
+                return;
+            }
+            setCachedAvailability(event.getVehicleId(), false, outcome.getVersion());
+            Reservation booking = outcome.getBooking();
+            reservationIndex.pickUp(event.getVehicleId(), event.getCustomerId(),
+                    booking.getStartMillis(), booking.getEndMillis());
+            reservationIndex.add(booking);
+        }
+
+        @Override
+        public void returnShipped(RentalJournal.Event event, RentalRepository.ReturnOutcome outcome) {
+            if (outcome.getResult() == ReturnResult.NOT_FOUND) {
+                vehicleCache.remove(event.getVehicleId());
+                EventLog.warn("returnVehicle").with("vehicleId", event.getVehicleId())
+                        .with("journalSeq", event.getSeq()).log("Journaled return of a deleted vehicle");
+                return;
+            }
+            if (outcome.getResult() != ReturnResult.RETURNED) {
+                // Returned through another app instance before we shipped
+                vehicleCache.invalidate(event.getVehicleId());
+                EventLog.warn("returnVehicle").with("vehicleId", event.getVehicleId())
+                        .with("journalSeq", event.getSeq()).with("result", outcome.getResult())
+                        .log("Journaled return of a vehicle that was not rented");
+                return;
+            }
+            setCachedAvailability(event.getVehicleId(), true, outcome.getVersion());
+            reservationIndex.releaseRental(event.getVehicleId());
+        }
+
+        @Override
+        public void rejected(RentalJournal.Event event, SQLException e) {
+            JOURNAL_REJECTED_METRICS.error();
+            vehicleCache.invalidate(event.getVehicleId());
+            if (EXCLUSION_VIOLATION.equals(e.getSQLState())) {
+                reservationIndex.invalidateAll();
+            }
+            EventLog.error(event.getType() == RentalJournal.RENT ? "rentVehicle" : "returnVehicle")
+                    .with("vehicleId", event.getVehicleId()).with("customerId", event.getCustomerId())
+                    .with("journalSeq", event.getSeq()).cause(e).log("Journaled event rejected by the database");
+        }
+
+        private void setCachedAvailability(String vehicleId, boolean available, long version) {
+            vehicleCache.update(vehicleId, cached -> {
+                if (available) {
+                    cached.returnVehicle();
+                } else {
+                    cached.rent();
+                }
+                cached.setVersion(version);
+            });
+        }
+    }
+
+    // Returns a vehicle on behalf of a customer, verifying that the customer rented it
+    public ReturnResult returnVehicleFor(String customerId, String vehicleId) {
+        return admission.admit(vehicleId, RETURN_SETTLER, () -> returnForAdmitted(customerId, vehicleId));
+    }
+
+    private ReturnResult returnForAdmitted(String customerId, String vehicleId) {
+        long started = Metrics.start();
+        try {
+            awaitJournal();
+            ReturnResult result = rentalRepository.returnVehicleFor(customerId, vehicleId);
+            if (result == ReturnResult.RETURNED) {
+                vehicleCache.invalidate(vehicleId);
+                reservationIndex.releaseRental(vehicleId);
+                EventLog.info("returnVehicleFor").with("vehicleId", vehicleId).with("customerId", customerId)
+                        .elapsed(started).log("Vehicle returned");
+            }
+            return result;
+        } catch (SQLException e) {
+            RETURN_VEHICLE_FOR_METRICS.error();
+            EventLog.error("returnVehicleFor").with("vehicleId", vehicleId).with("customerId", customerId)
+                    .cause(e).elapsed(started).log("Error returning vehicle");
+            return ReturnResult.FAILED;
+        } finally {
+            RETURN_VEHICLE_FOR_METRICS.record(started);
+        }
+    }
+
+    // Books a vehicle for [start, end). The exclusion constraint on reservations decides
+    // conflicts, so concurrent bookings of the same period cannot both succeed.
+    public ReserveResult reserveVehicle(String vehicleId, String customerId, OffsetDateTime start, OffsetDateTime end) {
+        if (!start.isBefore(end) || !end.isAfter(OffsetDateTime.now())) {
+            return ReserveResult.INVALID_RANGE;
+        }
+        if (needsDatabase("reserveVehicle")) {
+            return ReserveResult.FAILED;
+        }
+
         Connection conn = null;
-        PreparedStatement updateStmt = null;
-        PreparedStatement deleteStmt = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
 
+        long started = Metrics.start();
         try {
+            awaitJournal();
             conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false); // Start transaction
-
-            // Update vehicle availability
-            String updateSql = "UPDATE vehicles SET is_available = true WHERE vehicle_id = ?";
-            updateStmt = conn.prepareStatement(updateSql);
-            updateStmt.setString(1, vehicle.getVehicleId());
-            int updated = updateStmt.executeUpdate();
-
-            if (updated > 0) {
-                // Delete rental record
-                String deleteSql = "DELETE FROM rentals WHERE vehicle_id = ?";
-                deleteStmt = conn.prepareStatement(deleteSql);
-                deleteStmt.setString(1, vehicle.getVehicleId());
-                deleteStmt.executeUpdate();
-
-                conn.commit();
-                vehicle.returnVehicle(); // Update the in-memory object state
-                System.out.println("Vehicle returned successfully.");
-            } else {
-                System.out.println("Vehicle was not found or not rented.");
-                conn.rollback();
+            String sql = "INSERT INTO reservations (vehicle_id, customer_id, period) " +
+                    "SELECT vehicle_id, ?, tstzrange(?, ?) FROM vehicles WHERE vehicle_id = ? " +
+                    "RETURNING reservation_id";
+            stmt = conn.prepareStatement(sql);
+            stmt.setString(1, customerId);
+            stmt.setObject(2, start);
+            stmt.setObject(3, end);
+            stmt.setString(4, vehicleId);
+            rs = stmt.executeQuery();
+
+            if (!rs.next()) {
+                return ReserveResult.NOT_FOUND;
             }
+            int reservationId = rs.getInt("reservation_id");
+            reservationIndex.add(new Reservation(reservationId, vehicleId, customerId, start, end, 0));
+            EventLog.info("reserveVehicle").with("vehicleId", vehicleId).with("customerId", customerId)
+                    .with("reservationId", reservationId).elapsed(started).log("Vehicle reserved");
+            return ReserveResult.RESERVED;
         } catch (SQLException e) {
-            try {
-                if (conn != null) conn.rollback();
-            } catch (SQLException ex) {
-                System.err.println("Error rolling back transaction: " + ex.getMessage());
+            if (EXCLUSION_VIOLATION.equals(e.getSQLState())) {
+                return ReserveResult.CONFLICT;
             }
-            System.err.println("Error returning vehicle: " + e.getMessage());
+            RESERVE_VEHICLE_METRICS.error();
+            EventLog.error("reserveVehicle").with("vehicleId", vehicleId).with("customerId", customerId)
+                    .cause(e).elapsed(started).log("Error reserving vehicle");
+            return ReserveResult.FAILED;
         } finally {
+            RESERVE_VEHICLE_METRICS.record(started);
             try {
-                if (conn != null) conn.setAutoCommit(true);
+                if (rs != null) rs.close();
             } catch (SQLException e) {
-                System.err.println("Error resetting auto-commit: " + e.getMessage());
+                EventLog.warn("reserveVehicle").with("vehicleId", vehicleId).with("customerId", customerId)
+                        .cause(e).log("Error closing result set");
             }
-            closeResources(updateStmt, null);
-            closeResources(deleteStmt, conn);
+            closeResources(stmt, conn);
         }
     }
 
-    // Updates the base price of a vehicle
-    public void updateVehicle(String vehicleId, double newPrice) {
+    // Cancels a customer's reservation. Bookings held by rentals end through a return instead.
+    public boolean cancelReservation(int reservationId, String customerId) {
+        if (needsDatabase("cancelReservation")) {
+            return false;
+        }
         Connection conn = null;
         PreparedStatement stmt = null;
 
+        long started = Metrics.start();
         try {
             conn = DatabaseConnection.getConnection();
-            String sql = "UPDATE vehicles SET base_price_per_day = ? WHERE vehicle_id = ?";
+            String sql = "UPDATE reservations SET cancelled_at = now() " +
+                    "WHERE reservation_id = ? AND customer_id = ? AND rental_id IS NULL AND cancelled_at IS NULL";
             stmt = conn.prepareStatement(sql);
-            stmt.setDouble(1, newPrice);
-            stmt.setString(2, vehicleId);
+            stmt.setInt(1, reservationId);
+            stmt.setString(2, customerId);
 
-            int updated = stmt.executeUpdate();
-            if (updated > 0) {
-                System.out.println("Vehicle " + vehicleId + " updated successfully.");
-            } else {
-                System.out.println("Vehicle ID not found.");
+            if (stmt.executeUpdate() > 0) {
+                reservationIndex.remove(reservationId);
+                EventLog.info("cancelReservation").with("reservationId", reservationId)
+                        .with("customerId", customerId).elapsed(started).log("Reservation cancelled");
+                return true;
             }
+            return false;
         } catch (SQLException e) {
-            System.err.println("Error updating vehicle: " + e.getMessage());
+            CANCEL_RESERVATION_METRICS.error();
+            EventLog.error("cancelReservation").with("reservationId", reservationId)
+                    .with("customerId", customerId).cause(e).elapsed(started).log("Error cancelling reservation");
+            return false;
         } finally {
+            CANCEL_RESERVATION_METRICS.record(started);
             closeResources(stmt, conn);
         }
     }
 
-    // Deletes a vehicle from the system
-    public void deleteVehicle(String vehicleId) {
+    // Returns a customer's active reservations that have not ended yet, soonest first
+    public List<Reservation> getReservations(String customerId) {
+        List<Reservation> reservations = new ArrayList<>();
+        if (needsDatabase("getReservations")) {
+            return reservations;
+        }
         Connection conn = null;
         PreparedStatement stmt = null;
+        ResultSet rs = null;
 
+        long started = Metrics.start();
         try {
             conn = DatabaseConnection.getConnection();
+            stmt = conn.prepareStatement(RESERVATIONS_QUERY + " AND customer_id = ? ORDER BY lower(period)");
+            stmt.setString(1, customerId);
+            rs = stmt.executeQuery();
 
-            // First check if vehicle is available (not rented)
-            String checkSql = "SELECT is_available FROM vehicles WHERE vehicle_id = ?";
-            PreparedStatement checkStmt = conn.prepareStatement(checkSql);
-            checkStmt.setString(1, vehicleId);
-            ResultSet rs = checkStmt.executeQuery();
-
-            if (rs.next() && rs.getBoolean("is_available")) {
-                // Vehicle exists and is available, proceed with deletion
-                String sql = "DELETE FROM vehicles WHERE vehicle_id = ?";
-                stmt = conn.prepareStatement(sql);
-                stmt.setString(1, vehicleId);
-
-                int deleted = stmt.executeUpdate();
-                if (deleted > 0) {
-                    System.out.println("Vehicle " + vehicleId + " deleted successfully.");
-                } else {
-                    System.out.println("Vehicle ID not found.");
+            while (rs.next()) {
+                reservations.add(mapReservation(rs));
+            }
+        } catch (SQLException e) {
+            GET_RESERVATIONS_METRICS.error();
+            EventLog.error("getReservations").with("customerId", customerId).cause(e).elapsed(started)
+                    .log("Error retrieving reservations");
+        } finally {
+            GET_RESERVATIONS_METRICS.record(started);
+            try {
+                if (rs != null) rs.close();
+            } catch (SQLException e) {
+                EventLog.warn("getReservations").with("customerId", customerId).cause(e)
+                        .log("Error closing result set");
+            }
+            closeResources(stmt, conn);
+        }
+
+        GET_RESERVATIONS_METRICS.rows(reservations.size());
+        return reservations;
+    }
+
+    // Returns the vehicles with no booking overlapping [start, end), answered from the
+    // in-memory reservation index and vehicle cache
+    public List<Vehicle> findAvailableVehicles(OffsetDateTime start, OffsetDateTime end) {
+        List<Vehicle> available = new ArrayList<>();
+        if (!start.isBefore(end)) {
+            return available;
+        }
+
+        try {
+            Set<String> booked = reservationIndex.bookedVehicles(
+                    start.toInstant().toEpochMilli(), end.toInstant().toEpochMilli());
+            for (Vehicle vehicle : getVehicles()) {
+                if (!booked.contains(vehicle.getVehicleId())) {
+                    available.add(vehicle);
                 }
+            }
+        } catch (SQLException e) {
+            EventLog.error("findAvailableVehicles").cause(e).log("Error finding available vehicles");
+        }
+
+        return available;
+    }
+
+    // Loads every active booking that has not ended, for the reservation index.
+    // The embedded store keeps no bookings.
+    private List<Reservation> loadActiveReservations() throws SQLException {
+        if (storage.isEmbedded()) {
+            return new ArrayList<>();
+        }
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(RESERVATIONS_QUERY)) {
+            List<Reservation> reservations = new ArrayList<>();
+            while (rs.next()) {
+                reservations.add(mapReservation(rs));
+            }
+            return reservations;
+        }
+    }
+
+    private Reservation mapReservation(ResultSet rs) throws SQLException {
+        return new Reservation(rs.getInt("reservation_id"), rs.getString("vehicle_id"),
+                rs.getString("customer_id"), rs.getObject("starts_at", OffsetDateTime.class),
+                rs.getObject("ends_at", OffsetDateTime.class), rs.getInt("rental_id"));
+    }
+
+    // Updates the base price of a vehicle, returns false if it was not found or the update failed
+    public boolean updateVehicle(String vehicleId, double newPrice) {
+        return updateVehicle(vehicleId, newPrice, VehicleRepository.ANY_VERSION) == UpdateResult.UPDATED;
+    }
+
+    // Updates the base price of a vehicle if it is still at expectedVersion (ANY_VERSION for any).
+    // Conflicts are not retried: the admin decided on a price for the vehicle as it was.
+    public UpdateResult updateVehicle(String vehicleId, double newPrice, long expectedVersion) {
+        long started = Metrics.start();
+        try {
+            awaitJournal(); // Journaled rentals take the price they were accepted at
+            VehicleRepository.UpdateOutcome outcome = vehicleRepository.updatePrice(vehicleId, newPrice,
+                    expectedVersion);
+            UpdateResult result = outcome.getResult();
+            if (result == UpdateResult.UPDATED) {
+                pricingEngine.invalidate(vehicleId);
+                vehicleCache.put(outcome.getVehicle());
+                EventLog.info("updateVehicle").with("vehicleId", vehicleId).with("price", newPrice).elapsed(started)
+                        .log("Vehicle updated successfully");
+            } else if (result == UpdateResult.CONFLICT) {
+                vehicleCache.put(outcome.getVehicle());
+                EventLog.info("updateVehicle").with("vehicleId", vehicleId).with("expectedVersion", expectedVersion)
+                        .with("version", outcome.getVehicle().getVersion()).elapsed(started)
+                        .log("Vehicle changed since it was read");
             } else {
-                System.out.println("Vehicle not found or currently rented.");
+                vehicleCache.remove(vehicleId);
+                EventLog.info("updateVehicle").with("vehicleId", vehicleId).elapsed(started)
+                        .log("Vehicle ID not found");
             }
+            return result;
+        } catch (SQLException e) {
+            UPDATE_VEHICLE_METRICS.error();
+            EventLog.error("updateVehicle").with("vehicleId", vehicleId).cause(e).elapsed(started)
+                    .log("Error updating vehicle");
+            return UpdateResult.FAILED;
+        } finally {
+            UPDATE_VEHICLE_METRICS.record(started);
+        }
+    }
 
-            rs.close();
-            checkStmt.close();
+    // Deletes a vehicle from the system, returns false if it was not found, is rented or the delete failed
+    public boolean deleteVehicle(String vehicleId) {
+        return deleteVehicle(vehicleId, VehicleRepository.ANY_VERSION) == DeleteResult.DELETED;
+    }
+
+    // Deletes a vehicle that is not rented and still at expectedVersion (ANY_VERSION for any).
+    // The store checks both in the delete itself, so a rental cannot slip in between.
+    public DeleteResult deleteVehicle(String vehicleId, long expectedVersion) {
+        long started = Metrics.start();
+        try {
+            awaitJournal();
+            DeleteResult result = vehicleRepository.delete(vehicleId, expectedVersion);
+            if (result == DeleteResult.DELETED || result == DeleteResult.NOT_FOUND) {
+                vehicleCache.remove(vehicleId);
+                reservationIndex.removeVehicle(vehicleId);
+                pricingEngine.invalidate(vehicleId);
+            } else {
+                vehicleCache.invalidate(vehicleId);
+            }
+            if (result == DeleteResult.DELETED) {
+                EventLog.info("deleteVehicle").with("vehicleId", vehicleId).elapsed(started)
+                        .log("Vehicle deleted successfully");
+            } else {
+                EventLog.info("deleteVehicle").with("vehicleId", vehicleId).with("result", result).elapsed(started)
+                        .log("Vehicle not deleted");
+            }
+            return result;
         } catch (SQLException e) {
-            System.err.println("Error deleting vehicle: " + e.getMessage());
+            DELETE_VEHICLE_METRICS.error();
+            EventLog.error("deleteVehicle").with("vehicleId", vehicleId).cause(e).elapsed(started)
+                    .log("Error deleting vehicle");
+            return DeleteResult.FAILED;
         } finally {
-            closeResources(stmt, conn);
+            DELETE_VEHICLE_METRICS.record(started);
         }
     }
 
@@ -456,251 +1235,545 @@ class VehicleRentalSystem {
         }
     }
 
-    // Authenticates admin login
+    // Authenticates admin login.
+    // Throws RejectedExecutionException if too many passwords are being hashed at once.
     public boolean adminLogin(String username, String password) {
-        Connection conn = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
         boolean authenticated = false;
 
+        long started = Metrics.start();
         try {
-            conn = DatabaseConnection.getConnection();
-            String sql = "SELECT * FROM admin WHERE username = ? AND password = ?";
-            stmt = conn.prepareStatement(sql);
-            stmt.setString(1, username);
-            stmt.setString(2, password);
-
-            rs = stmt.executeQuery();
-            authenticated = rs.next(); // If there's a result, authentication is successful
+            Admin admin = customerRepository.findAdmin(username);
+            authenticated = admin != null && verifyPassword(adminPrincipal(username), password, admin.getPassword(),
+                    hash -> customerRepository.updateAdminPassword(username, hash));
         } catch (SQLException e) {
-            System.err.println("Error authenticating admin: " + e.getMessage());
+            ADMIN_LOGIN_METRICS.error();
+            EventLog.error("adminLogin").with("username", username).cause(e).elapsed(started)
+                    .log("Error authenticating admin");
         } finally {
-            try {
-                if (rs != null) rs.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing result set: " + e.getMessage());
-            }
-            closeResources(stmt, conn);
+            ADMIN_LOGIN_METRICS.record(started);
         }
 
         return authenticated;
     }
 
-    // Allows admin to change their password
-    public void changeAdminPassword(String newPassword) {
-        Connection conn = null;
-        PreparedStatement stmt = null;
+    // Allows an admin to change their password, stored as a hash; returns false if it was not stored
+    public boolean changeAdminPassword(String username, String newPassword) {
+        boolean success = false;
 
+        long started = Metrics.start();
         try {
-            conn = DatabaseConnection.getConnection();
-            String sql = "UPDATE admin SET password = ? WHERE username = 'admin'";
-            stmt = conn.prepareStatement(sql);
-            stmt.setString(1, newPassword);
-
-            stmt.executeUpdate();
-            System.out.println("Admin password updated successfully.");
+            String hash = credentials.hash(newPassword);
+            if (customerRepository.updateAdminPassword(username, hash)) {
+                credentials.remember(adminPrincipal(username), newPassword, hash);
+                EventLog.info("changeAdminPassword").with("username", username).elapsed(started)
+                        .log("Admin password updated successfully");
+                success = true;
+            } else {
+                EventLog.info("changeAdminPassword").with("username", username).elapsed(started)
+                        .log("Admin account not found");
+            }
         } catch (SQLException e) {
-            System.err.println("Error updating admin password: " + e.getMessage());
+            CHANGE_ADMIN_PASSWORD_METRICS.error();
+            EventLog.error("changeAdminPassword").with("username", username).cause(e).elapsed(started)
+                    .log("Error updating admin password");
         } finally {
-            closeResources(stmt, conn);
+            CHANGE_ADMIN_PASSWORD_METRICS.record(started);
         }
+
+        return success;
     }
 
-    // Updates customer password in the database
+    // Updates customer password in the database, stored as a hash
     public boolean updateCustomerPassword(String customerId, String newPassword) {
-        Connection conn = null;
-        PreparedStatement stmt = null;
         boolean success = false;
 
+        long started = Metrics.start();
         try {
-            conn = DatabaseConnection.getConnection();
-            String sql = "UPDATE customers SET password = ? WHERE customer_id = ?";
-            stmt = conn.prepareStatement(sql);
-            stmt.setString(1, newPassword);
-            stmt.setString(2, customerId);
-
-            int updated = stmt.executeUpdate();
-            if (updated > 0) {
-                System.out.println("Customer password updated successfully.");
+            String hash = credentials.hash(newPassword);
+            if (customerRepository.updatePassword(customerId, hash)) {
+                credentials.remember(customerPrincipal(customerId), newPassword, hash);
+                EventLog.info("updateCustomerPassword").with("customerId", customerId).elapsed(started)
+                        .log("Customer password updated successfully");
                 success = true;
             } else {
-                System.out.println("Customer ID not found.");
+                EventLog.info("updateCustomerPassword").with("customerId", customerId).elapsed(started)
+                        .log("Customer ID not found");
             }
         } catch (SQLException e) {
-            System.err.println("Error updating customer password: " + e.getMessage());
+            UPDATE_CUSTOMER_PASSWORD_METRICS.error();
+            EventLog.error("updateCustomerPassword").with("customerId", customerId).cause(e).elapsed(started)
+                    .log("Error updating customer password");
         } finally {
-            closeResources(stmt, conn);
+            UPDATE_CUSTOMER_PASSWORD_METRICS.record(started);
+        }
+
+        return success;
+    }
+
+    // Getters for data from database
+    public List<Vehicle> getVehicles() {
+        try {
+            return vehicleCache.getAll();
+        } catch (SQLException e) {
+            EventLog.error("getVehicles").cause(e).log("Error retrieving vehicles");
+            return new ArrayList<>();
+        }
+    }
+
+    // Looks up a single vehicle, returns null if not found
+    public Vehicle getVehicle(String vehicleId) {
+        try {
+            return vehicleCache.get(vehicleId);
+        } catch (SQLException e) {
+            EventLog.error("getVehicle").cause(e).log("Error retrieving vehicle");
+            return null;
+        }
+    }
+
+    // Loads every vehicle, used by the inventory cache
+    private List<Vehicle> loadAllVehicles() throws SQLException {
+        List<Vehicle> vehicles;
+        long started = Metrics.start();
+        try {
+            vehicles = vehicleRepository.findAll();
+        } catch (SQLException e) {
+            LOAD_VEHICLES_METRICS.error();
+            throw e;
+        } finally {
+            LOAD_VEHICLES_METRICS.record(started);
+        }
+        LOAD_VEHICLES_METRICS.rows(vehicles.size());
+        return vehicles;
+    }
+
+    // Loads the given vehicles, used by the inventory cache to refresh stale entries
+    private List<Vehicle> loadVehiclesByIds(Collection<String> vehicleIds) throws SQLException {
+        List<Vehicle> vehicles;
+        long started = Metrics.start();
+        try {
+            vehicles = vehicleRepository.findByIds(vehicleIds);
+        } catch (SQLException e) {
+            LOAD_VEHICLES_BY_IDS_METRICS.error();
+            throw e;
+        } finally {
+            LOAD_VEHICLES_BY_IDS_METRICS.record(started);
+        }
+        LOAD_VEHICLES_BY_IDS_METRICS.rows(vehicles.size());
+        return vehicles;
+    }
+
+    public List<Customer> getCustomers() {
+        List<Customer> customers = new ArrayList<>();
+
+        long started = Metrics.start();
+        try {
+            customers = customerRepository.findAll();
+        } catch (SQLException e) {
+            GET_CUSTOMERS_METRICS.error();
+            EventLog.error("getCustomers").cause(e).elapsed(started).log("Error retrieving customers");
+        } finally {
+            GET_CUSTOMERS_METRICS.record(started);
+        }
+
+        GET_CUSTOMERS_METRICS.rows(customers.size());
+        return customers;
+    }
+
+    // Looks up a customer by ID, returns null if not found
+    public Customer findCustomerById(String customerId) {
+        Customer customer = null;
+
+        long started = Metrics.start();
+        try {
+            customer = customerRepository.findById(customerId);
+        } catch (SQLException e) {
+            FIND_CUSTOMER_BY_ID_METRICS.error();
+            EventLog.error("findCustomerById").with("customerId", customerId).cause(e).elapsed(started)
+                    .log("Error finding customer");
+        } finally {
+            FIND_CUSTOMER_BY_ID_METRICS.record(started);
+        }
+
+        return customer;
+    }
+
+    // Signs a customer in, returns null if the ID is unknown or the password is wrong.
+    // Throws RejectedExecutionException if too many passwords are being hashed at once.
+    public Customer authenticateCustomer(String customerId, String password) {
+        Customer customer = findCustomerById(customerId);
+        return customer != null && checkCustomerPassword(customer, password) ? customer : null;
+    }
+
+    // Signs a customer in by name. Names are not unique, so the password is checked against
+    // each customer of that name; returns null if none matches.
+    public Customer authenticateCustomerByName(String name, String password) {
+        for (Customer customer : findCustomerByName(name)) {
+            if (checkCustomerPassword(customer, password)) {
+                return customer;
+            }
+        }
+        return null;
+    }
+
+    private boolean checkCustomerPassword(Customer customer, String password) {
+        return verifyPassword(customerPrincipal(customer.getCustomerId()), password, customer.getPassword(),
+                hash -> customerRepository.updatePassword(customer.getCustomerId(), hash));
+    }
+
+    // Stores a new hash for a password that verified against an outdated stored form
+    private interface PasswordUpgrade {
+        void store(String hash) throws SQLException;
+    }
+
+    // Checks a password against its stored form. Plaintext passwords from before hashing, and
+    // hashes weaker than configured, are replaced the first time they verify; if that fails the
+    // sign-in still succeeds and the next one tries again.
+    private boolean verifyPassword(String principal, String password, String stored, PasswordUpgrade upgrade) {
+        if (!credentials.verify(principal, password, stored)) {
+            return false;
+        }
+        if (credentials.needsRehash(stored)) {
+            try {
+                String hash = credentials.hash(password);
+                upgrade.store(hash);
+                credentials.remember(principal, password, hash);
+                EventLog.info("verifyPassword").with("principal", principal).log("Stored password upgraded to a hash");
+            } catch (SQLException | RejectedExecutionException e) {
+                EventLog.warn("verifyPassword").with("principal", principal).cause(e)
+                        .log("Error upgrading stored password");
+            }
+        }
+        return true;
+    }
+
+    // Names under which verified passwords are cached, so admins and customers never share entries
+    private static String adminPrincipal(String username) {
+        return "admin:" + username;
+    }
+
+    private static String customerPrincipal(String customerId) {
+        return "customer:" + customerId;
+    }
+
+    // Finds customers by name ignoring case. Names are not unique, so every match is returned.
+    public List<Customer> findCustomerByName(String name) {
+        List<Customer> customers = new ArrayList<>();
+
+        long started = Metrics.start();
+        try {
+            customers = customerRepository.findByName(name);
+        } catch (SQLException e) {
+            FIND_CUSTOMER_BY_NAME_METRICS.error();
+            EventLog.error("findCustomerByName").cause(e).elapsed(started).log("Error finding customers");
+        } finally {
+            FIND_CUSTOMER_BY_NAME_METRICS.record(started);
+        }
+
+        FIND_CUSTOMER_BY_NAME_METRICS.rows(customers.size());
+        return customers;
+    }
+
+    // Allocates a new unique customer ID, returns null if none could be reserved
+    public String nextCustomerId() {
+        try {
+            return customerRepository.nextId();
+        } catch (SQLException e) {
+            EventLog.error("nextCustomerId").cause(e).log("Error allocating customer ID");
+            return null;
+        }
+    }
+
+    public List<Rental> getRentals() {
+        List<Rental> rentals = new ArrayList<>();
+
+        long started = Metrics.start();
+        try {
+            rentals = rentalRepository.findOpen();
+        } catch (SQLException e) {
+            GET_RENTALS_METRICS.error();
+            EventLog.error("getRentals").cause(e).elapsed(started).log("Error retrieving rentals");
+        } finally {
+            GET_RENTALS_METRICS.record(started);
+        }
+
+        GET_RENTALS_METRICS.rows(rentals.size());
+        return rentals;
+    }
+
+    // Returns every rental of a customer, open and closed, newest first
+    public List<Rental> getRentalHistory(String customerId) {
+        List<Rental> rentals = new ArrayList<>();
+
+        long started = Metrics.start();
+        try {
+            rentals = rentalRepository.findByCustomer(customerId);
+        } catch (SQLException e) {
+            GET_RENTAL_HISTORY_METRICS.error();
+            EventLog.error("getRentalHistory").with("customerId", customerId).cause(e).elapsed(started)
+                    .log("Error retrieving rental history");
+        } finally {
+            GET_RENTAL_HISTORY_METRICS.record(started);
+        }
+
+        GET_RENTAL_HISTORY_METRICS.rows(rentals.size());
+        return rentals;
+    }
+
+    // Revenue and activity per day in [from, to), from the report summaries
+    public List<RentalReports.Row> getRevenueByDay(LocalDate from, LocalDate to) {
+        if (needsDatabase("getRevenueByDay")) {
+            return new ArrayList<>();
+        }
+        try {
+            return reports.byDay(from, to);
+        } catch (SQLException e) {
+            EventLog.error("getRevenueByDay").cause(e).log("Error reading daily revenue");
+            return new ArrayList<>();
+        }
+    }
+
+    // Revenue and activity per vehicle type in [from, to)
+    public List<RentalReports.Row> getRevenueByType(LocalDate from, LocalDate to) {
+        if (needsDatabase("getRevenueByType")) {
+            return new ArrayList<>();
+        }
+        try {
+            return reports.byType(from, to);
+        } catch (SQLException e) {
+            EventLog.error("getRevenueByType").cause(e).log("Error reading revenue by type");
+            return new ArrayList<>();
+        }
+    }
+
+    // All-time highest earning vehicles
+    public List<RentalReports.Row> getTopVehiclesByRevenue(int limit) {
+        if (needsDatabase("getTopVehiclesByRevenue")) {
+            return new ArrayList<>();
+        }
+        try {
+            return reports.topVehicles(limit);
+        } catch (SQLException e) {
+            EventLog.error("getTopVehiclesByRevenue").cause(e).log("Error reading revenue by vehicle");
+            return new ArrayList<>();
+        }
+    }
+
+    // All-time highest spending customers
+    public List<RentalReports.Row> getTopCustomersByRevenue(int limit) {
+        if (needsDatabase("getTopCustomersByRevenue")) {
+            return new ArrayList<>();
+        }
+        try {
+            return reports.topCustomers(limit);
+        } catch (SQLException e) {
+            EventLog.error("getTopCustomersByRevenue").cause(e).log("Error reading revenue by customer");
+            return new ArrayList<>();
+        }
+    }
+
+    // Share of fleet hours in [from, to) spent rented, from 0 to 1
+    public double getUtilization(LocalDate from, LocalDate to) {
+        if (needsDatabase("getUtilization")) {
+            return 0;
+        }
+        try {
+            return reports.utilization(from, to);
+        } catch (SQLException e) {
+            EventLog.error("getUtilization").cause(e).log("Error reading utilization");
+            return 0;
+        }
+    }
+
+    // Quotes a rental of a vehicle starting today
+    public PricingEngine.Quote quote(Vehicle vehicle, int days) {
+        return pricingEngine.quote(vehicle, LocalDate.now(), days);
+    }
+
+    // Quotes the same rental for every vehicle, e.g. a whole search result
+    public List<PricingEngine.Quote> quoteAll(List<Vehicle> vehicles, LocalDate start, int days) {
+        List<PricingEngine.Quote> quotes = new ArrayList<>(vehicles.size());
+        for (Vehicle vehicle : vehicles) {
+            quotes.add(pricingEngine.quote(vehicle, start, days));
         }
+        return quotes;
+    }
 
-        return success;
+    // Returns a columnar snapshot of the fleet for analytics. Vehicles changed since the last
+    // call are reloaded by ID and patched in; the whole snapshot is rebuilt after the cache TTL.
+    // If the rebuild fails the previous snapshot is served, or an empty one before the first.
+    public FleetSnapshot getFleetSnapshot() {
+        synchronized (fleetSnapshotLock) {
+            if (fleetSnapshot == null || fleetSnapshotTtlMillis <= 0
+                    || System.currentTimeMillis() - fleetSnapshot.getBuiltAt() >= fleetSnapshotTtlMillis) {
+                // Changes made while the rebuild streams stay pending and are applied on the next call
+                List<String> pendingIds = new ArrayList<>(fleetChanges);
+                FleetSnapshot.Builder builder = new FleetSnapshot.Builder();
+                try {
+                    forEachVehicle(builder::add);
+                } catch (SQLException e) {
+                    EventLog.error("getFleetSnapshot").cause(e).log("Error rebuilding fleet snapshot");
+                    return fleetSnapshot != null ? fleetSnapshot : new FleetSnapshot.Builder().build();
+                }
+                fleetSnapshot = builder.build();
+                fleetChanges.removeAll(pendingIds);
+            } else if (!fleetChanges.isEmpty()) {
+                List<String> changedIds = new ArrayList<>(fleetChanges);
+                fleetChanges.removeAll(changedIds);
+
+                try {
+                    List<Vehicle> changed = loadVehiclesByIds(changedIds);
+                    Set<String> removedIds = new HashSet<>(changedIds);
+                    for (Vehicle vehicle : changed) {
+                        removedIds.remove(vehicle.getVehicleId());
+                    }
+                    fleetSnapshot = fleetSnapshot.withChanges(changed, removedIds);
+                } catch (SQLException e) {
+                    // Retry these rows next time; the stale snapshot is still served
+                    fleetChanges.addAll(changedIds);
+                    EventLog.error("getFleetSnapshot").cause(e).log("Error refreshing fleet snapshot");
+                }
+            }
+            return fleetSnapshot;
+        }
     }
 
-    // Getters for data from database
-    public List<Vehicle> getVehicles() {
+    // Returns the vehicles matching a query, filtered and sorted by the repository
+    public List<Vehicle> findVehicles(VehicleQuery query) {
         List<Vehicle> vehicles = new ArrayList<>();
-        Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
 
+        long started = Metrics.start();
         try {
-            conn = DatabaseConnection.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery("SELECT * FROM vehicles");
-
-            while (rs.next()) {
-                String id = rs.getString("vehicle_id");
-                String type = rs.getString("type");
-                String brand = rs.getString("brand");
-                String model = rs.getString("model");
-                double price = rs.getDouble("base_price_per_day");
-                boolean isAvailable = rs.getBoolean("is_available");
-
-                Vehicle vehicle = new Vehicle(id, type, brand, model, price);
-                if (!isAvailable) {
-                    vehicle.rent(); // Set as rented if not available
-                }
-                vehicles.add(vehicle);
-            }
+            vehicles = vehicleRepository.find(query);
         } catch (SQLException e) {
-            System.err.println("Error retrieving vehicles: " + e.getMessage());
+            FIND_VEHICLES_METRICS.error();
+            EventLog.error("findVehicles").cause(e).elapsed(started).log("Error searching vehicles");
         } finally {
-            try {
-                if (rs != null) rs.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing result set: " + e.getMessage());
-            }
-            closeResources(stmt, conn);
+            FIND_VEHICLES_METRICS.record(started);
         }
 
+        FIND_VEHICLES_METRICS.rows(vehicles.size());
         return vehicles;
     }
 
-    public List<Customer> getCustomers() {
-        List<Customer> customers = new ArrayList<>();
-        Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
+    // Returns up to limit vehicles ordered by ID, starting after afterVehicleId (null for the first page)
+    public List<Vehicle> getVehiclesPage(String afterVehicleId, int limit) {
+        List<Vehicle> vehicles = new ArrayList<>();
 
+        long started = Metrics.start();
         try {
-            conn = DatabaseConnection.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery("SELECT * FROM customers");
-
-            while (rs.next()) {
-                String id = rs.getString("customer_id");
-                String name = rs.getString("name");
-                String password = rs.getString("password");
-
-                customers.add(new Customer(id, name, password));
-            }
+            vehicles = vehicleRepository.findPage(afterVehicleId, limit);
         } catch (SQLException e) {
-            System.err.println("Error retrieving customers: " + e.getMessage());
+            GET_VEHICLES_PAGE_METRICS.error();
+            EventLog.error("getVehiclesPage").cause(e).elapsed(started).log("Error retrieving vehicles page");
         } finally {
-            try {
-                if (rs != null) rs.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing result set: " + e.getMessage());
-            }
-            closeResources(stmt, conn);
+            GET_VEHICLES_PAGE_METRICS.record(started);
         }
 
-        return customers;
+        GET_VEHICLES_PAGE_METRICS.rows(vehicles.size());
+        return vehicles;
     }
 
-    public List<Rental> getRentals() {
+    // Returns up to limit rentals ordered by rental ID, starting after afterRentalId (0 for the first page)
+    public List<Rental> getRentalsPage(int afterRentalId, int limit) {
         List<Rental> rentals = new ArrayList<>();
-        Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
 
+        long started = Metrics.start();
         try {
-            conn = DatabaseConnection.getConnection();
-            stmt = conn.createStatement();
-            String sql = "SELECT r.*, v.type, v.brand, v.model, v.base_price_per_day, " +
-                    "c.name, c.password FROM rentals r " +
-                    "JOIN vehicles v ON r.vehicle_id = v.vehicle_id " +
-                    "JOIN customers c ON r.customer_id = c.customer_id";
-            rs = stmt.executeQuery(sql);
-
-            while (rs.next()) {
-                // Extract vehicle data
-                String vehicleId = rs.getString("vehicle_id");
-                String type = rs.getString("type");
-                String brand = rs.getString("brand");
-                String model = rs.getString("model");
-                double price = rs.getDouble("base_price_per_day");
-
-                // Extract customer data
-                String customerId = rs.getString("customer_id");
-                String name = rs.getString("name");
-                String password = rs.getString("password");
-
-                // Extract rental data
-                int days = rs.getInt("days");
-
-                // Create objects
-                Vehicle vehicle = new Vehicle(vehicleId, type, brand, model, price);
-                vehicle.rent(); // Set as rented
-                Customer customer = new Customer(customerId, name, password);
-
-                rentals.add(new Rental(vehicle, customer, days));
-            }
+            rentals = rentalRepository.findOpenPage(afterRentalId, limit);
         } catch (SQLException e) {
-            System.err.println("Error retrieving rentals: " + e.getMessage());
+            GET_RENTALS_PAGE_METRICS.error();
+            EventLog.error("getRentalsPage").cause(e).elapsed(started).log("Error retrieving rentals page");
         } finally {
-            try {
-                if (rs != null) rs.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing result set: " + e.getMessage());
-            }
-            closeResources(stmt, conn);
+            GET_RENTALS_PAGE_METRICS.record(started);
         }
 
+        GET_RENTALS_PAGE_METRICS.rows(rentals.size());
         return rentals;
     }
 
-    public Admin getAdmin() {
-        Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
-        Admin admin = null;
+    // Streams every vehicle ordered by ID; on PostgreSQL through a server-side cursor.
+    // The stream may hold a pooled connection and must be closed (try-with-resources).
+    // A database error while it is consumed is thrown as UncheckedSQLException.
+    public Stream<Vehicle> streamVehicles() {
+        try {
+            return vehicleRepository.stream();
+        } catch (SQLException e) {
+            EventLog.error("streamVehicles").cause(e).log("Error streaming vehicles");
+            return Stream.empty();
+        }
+    }
 
+    // Streams every open rental ordered by rental ID. The stream must be closed, and
+    // throws UncheckedSQLException if the database fails while it is consumed.
+    public Stream<Rental> streamRentals() {
         try {
-            conn = DatabaseConnection.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery("SELECT * FROM admin WHERE username = 'admin'");
+            return rentalRepository.streamOpen();
+        } catch (SQLException e) {
+            EventLog.error("streamRentals").cause(e).log("Error streaming rentals");
+            return Stream.empty();
+        }
+    }
 
-            if (rs.next()) {
-                String username = rs.getString("username");
-                String password = rs.getString("password");
-                admin = new Admin(username, password);
-            } else {
-                // Default admin if not found in database
-                admin = new Admin("admin", "admin123");
-            }
+    // Calls action for every vehicle without materializing the whole table. Throws if the
+    // database fails before or during the iteration, after action has seen only some vehicles.
+    public void forEachVehicle(Consumer<Vehicle> action) throws SQLException {
+        try (Stream<Vehicle> vehicles = vehicleRepository.stream()) {
+            vehicles.forEach(action);
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Calls action for every open rental without materializing the whole table. Throws if the
+    // database fails before or during the iteration, after action has seen only some rentals.
+    public void forEachRental(Consumer<Rental> action) throws SQLException {
+        try (Stream<Rental> rentals = rentalRepository.streamOpen()) {
+            rentals.forEach(action);
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+    }
+
+    public int getVehicleCount() {
+        try {
+            return vehicleRepository.count();
         } catch (SQLException e) {
-            System.err.println("Error retrieving admin: " + e.getMessage());
-            // Default admin if error occurs
-            admin = new Admin("admin", "admin123");
-        } finally {
-            try {
-                if (rs != null) rs.close();
-            } catch (SQLException e) {
-                System.err.println("Error closing result set: " + e.getMessage());
-            }
-            closeResources(stmt, conn);
+            EventLog.error("getVehicleCount").cause(e).log("Error counting vehicles");
+            return 0;
         }
+    }
 
-        return admin;
+    // Counts open rentals only; closed ones are history
+    public int getRentalCount() {
+        try {
+            return rentalRepository.countOpen();
+        } catch (SQLException e) {
+            EventLog.error("getRentalCount").cause(e).log("Error counting rentals");
+            return 0;
+        }
     }
 }
 
 public class VehicleRentalSystemApp {
+    // Rows fetched per page by the admin table views
+    private static final int TABLE_PAGE_SIZE = 100;
+    // Rows shown per all-time ranking in the reports screen
+    private static final int REPORT_TOP_N = 50;
+
     private static VehicleRentalSystem rentalSystem;
+    // All database work from the UI goes through here so the EDT never blocks on JDBC
+    private static AsyncRentalService service;
     private static JFrame mainFrame;
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        // --server runs the JSON HTTP API instead of the GUI
+        if (Arrays.asList(args).contains("--server")) {
+            RentalApiServer.main(args);
+            return;
+        }
         rentalSystem = new VehicleRentalSystem();
+        service = new AsyncRentalService(rentalSystem);
+        Metrics.registerMBeans();
 
         // Create and show the GUI
         SwingUtilities.invokeLater(() -> {
@@ -768,15 +1841,17 @@ public class VehicleRentalSystemApp {
             String username = userField.getText();
             String password = new String(passField.getPassword());
 
-            if (rentalSystem.adminLogin(username, password)) {
-                showAdminMenu();
-            } else {
-                JOptionPane.showMessageDialog(mainFrame, "Invalid admin credentials.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            BackgroundTask.run(mainFrame, "Signing in...", service.adminLogin(username, password), authenticated -> {
+                if (authenticated) {
+                    showAdminMenu(username);
+                } else {
+                    JOptionPane.showMessageDialog(mainFrame, "Invalid admin credentials.", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         }
     }
 
-    private static void showAdminMenu() {
+    private static void showAdminMenu(String username) {
         JFrame adminFrame = new JFrame("Admin Menu");
         adminFrame.setSize(600, 400);
         adminFrame.setLocationRelativeTo(mainFrame);
@@ -788,18 +1863,18 @@ public class VehicleRentalSystemApp {
         titleLabel.setFont(new Font("Arial", Font.BOLD, 20));
         adminPanel.add(titleLabel, BorderLayout.NORTH);
 
-        JPanel buttonPanel = new JPanel(new GridLayout(7, 1, 10, 10));
+        JPanel buttonPanel = new JPanel(new GridLayout(8, 1, 10, 10));
         buttonPanel.setBorder(BorderFactory.createEmptyBorder(20, 100, 20, 100));
 
         String[] buttonLabels = {
                 "Add Vehicle", "View All Vehicles", "Update Vehicle Price",
-                "Delete Vehicle", "View Rented Vehicles", "Change Admin Password", "Back"
+                "Delete Vehicle", "View Rented Vehicles", "Reports", "Change Admin Password", "Back"
         };
 
         for (String label : buttonLabels) {
             JButton button = new JButton(label);
             button.setFont(new Font("Arial", Font.PLAIN, 16));
-            button.addActionListener(new AdminMenuListener(adminFrame));
+            button.addActionListener(new AdminMenuListener(adminFrame, username));
             buttonPanel.add(button);
         }
 
@@ -810,9 +1885,11 @@ public class VehicleRentalSystemApp {
 
     private static class AdminMenuListener implements ActionListener {
         private JFrame adminFrame;
+        private String username; // Admin signed in to this menu
 
-        public AdminMenuListener(JFrame adminFrame) {
+        public AdminMenuListener(JFrame adminFrame, String username) {
             this.adminFrame = adminFrame;
+            this.username = username;
         }
 
         @Override
@@ -835,8 +1912,11 @@ public class VehicleRentalSystemApp {
                 case "View Rented Vehicles":
                     showRentedVehicles();
                     break;
+                case "Reports":
+                    showReportsDialog();
+                    break;
                 case "Change Admin Password":
-                    showChangeAdminPasswordDialog();
+                    showChangeAdminPasswordDialog(username);
                     break;
                 case "Back":
                     adminFrame.dispose();
@@ -878,8 +1958,15 @@ public class VehicleRentalSystemApp {
                 double price = Double.parseDouble(priceField.getText());
 
                 Vehicle newVehicle = new Vehicle(id, type, brand, model, price);
-                rentalSystem.addVehicle(newVehicle);
-                JOptionPane.showMessageDialog(mainFrame, "Vehicle added successfully!");
+                BackgroundTask.run(mainFrame, "Adding vehicle...", service.addVehicle(newVehicle), added -> {
+                    if (added) {
+                        JOptionPane.showMessageDialog(mainFrame, "Vehicle added successfully!");
+                    } else {
+                        JOptionPane.showMessageDialog(mainFrame,
+                                "Vehicle could not be added. The ID may already be in use.",
+                                "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                });
             } catch (NumberFormatException e) {
                 JOptionPane.showMessageDialog(mainFrame, "Invalid price format.", "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -887,19 +1974,15 @@ public class VehicleRentalSystemApp {
     }
 
     private static void showAllVehicles() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("=== All Vehicles ===\n\n");
-
-        for (Vehicle vehicle : rentalSystem.getVehicles()) {
-            sb.append(vehicle.toString()).append("\n");
-        }
-
-        JTextArea textArea = new JTextArea(sb.toString());
-        textArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(textArea);
-        scrollPane.setPreferredSize(new Dimension(500, 300));
-
-        JOptionPane.showMessageDialog(mainFrame, scrollPane, "All Vehicles", JOptionPane.PLAIN_MESSAGE);
+        LazyTableModel<Vehicle> model = new LazyTableModel<>(
+                new String[]{"ID", "Type", "Brand", "Model", "Price/Day", "Status"},
+                v -> new Object[]{v.getVehicleId(), v.getType(), v.getBrand(), v.getModel(),
+                        String.format("$%.2f", v.getBasePricePerDay()), v.isAvailable() ? "Available" : "Rented"},
+                (after, limit) -> rentalSystem.getVehiclesPage(after == null ? null : after.getVehicleId(), limit),
+                rentalSystem::getVehicleCount,
+                TABLE_PAGE_SIZE);
+
+        showTableDialog(model, "All Vehicles");
     }
 
     private static void showUpdatePriceDialog() {
@@ -921,8 +2004,8 @@ public class VehicleRentalSystemApp {
             try {
                 String id = idField.getText();
                 double newPrice = Double.parseDouble(priceField.getText());
-                rentalSystem.updateVehicle(id, newPrice);
-                JOptionPane.showMessageDialog(mainFrame, "Vehicle price updated successfully!");
+                BackgroundTask.run(mainFrame, "Updating price...", service.updateVehicle(id, newPrice),
+                        VehicleRentalSystemApp::showUpdateResult);
             } catch (NumberFormatException e) {
                 JOptionPane.showMessageDialog(mainFrame, "Invalid price format.", "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -932,32 +2015,169 @@ public class VehicleRentalSystemApp {
     private static void showDeleteVehicleDialog() {
         String id = JOptionPane.showInputDialog(mainFrame, "Enter Vehicle ID to delete:", "Delete Vehicle", JOptionPane.PLAIN_MESSAGE);
         if (id != null && !id.isEmpty()) {
-            rentalSystem.deleteVehicle(id);
-            JOptionPane.showMessageDialog(mainFrame, "Vehicle deletion processed.");
+            BackgroundTask.run(mainFrame, "Deleting vehicle...", service.deleteVehicle(id),
+                    VehicleRentalSystemApp::showDeleteResult);
+        }
+    }
+
+    private static void showUpdateResult(UpdateResult updateResult) {
+        switch (updateResult) {
+            case UPDATED:
+                JOptionPane.showMessageDialog(mainFrame, "Vehicle price updated successfully!");
+                break;
+            case CONFLICT:
+                JOptionPane.showMessageDialog(mainFrame,
+                        "This vehicle was just changed by someone else. Please try again.",
+                        "Not Updated", JOptionPane.WARNING_MESSAGE);
+                break;
+            case NOT_FOUND:
+                JOptionPane.showMessageDialog(mainFrame, "No vehicle with that ID.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                break;
+            case FAILED:
+                JOptionPane.showMessageDialog(mainFrame, "Price update failed due to a database error.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                break;
+        }
+    }
+
+    private static void showDeleteResult(DeleteResult deleteResult) {
+        switch (deleteResult) {
+            case DELETED:
+                JOptionPane.showMessageDialog(mainFrame, "Vehicle deleted successfully!");
+                break;
+            case RENTED:
+                JOptionPane.showMessageDialog(mainFrame, "This vehicle is rented out and cannot be deleted.",
+                        "Not Deleted", JOptionPane.WARNING_MESSAGE);
+                break;
+            case CONFLICT:
+                JOptionPane.showMessageDialog(mainFrame,
+                        "This vehicle was just changed by someone else. Please try again.",
+                        "Not Deleted", JOptionPane.WARNING_MESSAGE);
+                break;
+            case NOT_FOUND:
+                JOptionPane.showMessageDialog(mainFrame, "No vehicle with that ID.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                break;
+            case FAILED:
+                JOptionPane.showMessageDialog(mainFrame, "Deletion failed due to a database error.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                break;
         }
     }
 
     private static void showRentedVehicles() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("=== Rented Vehicles ===\n\n");
+        LazyTableModel<Rental> model = new LazyTableModel<>(
+                new String[]{"Vehicle", "Brand", "Model", "Customer", "Customer ID", "Days"},
+                r -> new Object[]{r.getVehicle().getVehicleId(), r.getVehicle().getBrand(), r.getVehicle().getModel(),
+                        r.getCustomer().getName(), r.getCustomer().getCustomerId(), r.getDays()},
+                (after, limit) -> rentalSystem.getRentalsPage(after == null ? 0 : after.getRentalId(), limit),
+                rentalSystem::getRentalCount,
+                TABLE_PAGE_SIZE);
+
+        showTableDialog(model, "Rented Vehicles");
+    }
+
+    private static void showReportsDialog() {
+        JPanel panel = new JPanel(new GridLayout(2, 2, 10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JTextField fromField = new JTextField(LocalDate.now().minusDays(29).toString());
+        JTextField toField = new JTextField(LocalDate.now().toString());
 
-        for (Rental rental : rentalSystem.getRentals()) {
-            sb.append(rental.toString()).append("\n");
+        panel.add(new JLabel("From (yyyy-mm-dd):"));
+        panel.add(fromField);
+        panel.add(new JLabel("To (yyyy-mm-dd):"));
+        panel.add(toField);
+
+        int result = JOptionPane.showConfirmDialog(mainFrame, panel, "Reports",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (result != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = LocalDate.parse(fromField.getText().trim());
+            // The form's end date is inclusive
+            to = LocalDate.parse(toField.getText().trim()).plusDays(1);
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(mainFrame, "Invalid date.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
 
-        if (sb.toString().equals("=== Rented Vehicles ===\n\n")) {
-            sb.append("No vehicles currently rented.");
+        CompletableFuture<ReportData> load = service.supply(() -> {
+            ReportData data = new ReportData();
+            data.byDay = rentalSystem.getRevenueByDay(from, to);
+            data.byType = rentalSystem.getRevenueByType(from, to);
+            data.topVehicles = rentalSystem.getTopVehiclesByRevenue(REPORT_TOP_N);
+            data.topCustomers = rentalSystem.getTopCustomersByRevenue(REPORT_TOP_N);
+            data.utilization = rentalSystem.getUtilization(from, to);
+            return data;
+        });
+
+        BackgroundTask.run(mainFrame, "Loading reports...", load, data -> {
+            JTabbedPane tabs = new JTabbedPane();
+            tabs.addTab("By Day", reportTable(data.byDay, "Day"));
+            tabs.addTab("By Type", reportTable(data.byType, "Type"));
+            tabs.addTab("Top Vehicles", reportTable(data.topVehicles, "Vehicle"));
+            tabs.addTab("Top Customers", reportTable(data.topCustomers, "Customer ID"));
+
+            JPanel reportPanel = new JPanel(new BorderLayout(10, 10));
+            double revenue = 0;
+            for (RentalReports.Row row : data.byDay) {
+                revenue += row.getRevenue();
+            }
+            reportPanel.add(new JLabel(String.format("Revenue: $%.2f    Fleet utilization: %.1f%%",
+                    revenue, data.utilization * 100)), BorderLayout.NORTH);
+            reportPanel.add(tabs, BorderLayout.CENTER);
+
+            JOptionPane.showMessageDialog(mainFrame, reportPanel, "Reports", JOptionPane.PLAIN_MESSAGE);
+        });
+    }
+
+    // Report results carried from the background load to the EDT
+    private static class ReportData {
+        List<RentalReports.Row> byDay;
+        List<RentalReports.Row> byType;
+        List<RentalReports.Row> topVehicles;
+        List<RentalReports.Row> topCustomers;
+        double utilization;
+    }
+
+    private static JScrollPane reportTable(List<RentalReports.Row> rows, String keyColumn) {
+        String[] columns = {keyColumn, "Rentals", "Revenue", "Returns", "Hours Rented"};
+        Object[][] data = new Object[rows.size()][];
+        for (int i = 0; i < rows.size(); i++) {
+            RentalReports.Row row = rows.get(i);
+            data[i] = new Object[]{row.getKey(), row.getRentals(), String.format("%.2f", row.getRevenue()),
+                    row.getReturns(), String.format("%.1f", row.getRentedHours())};
         }
 
-        JTextArea textArea = new JTextArea(sb.toString());
-        textArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(textArea);
-        scrollPane.setPreferredSize(new Dimension(500, 300));
+        JTable table = new JTable(data, columns);
+        table.setDefaultEditor(Object.class, null);
+        table.setFillsViewportHeight(true);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(600, 300));
+        return scrollPane;
+    }
+
+    // Shows a lazily loaded table; only the pages scrolled into view are fetched
+    private static void showTableDialog(LazyTableModel<?> model, String title) {
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(600, 300));
 
-        JOptionPane.showMessageDialog(mainFrame, scrollPane, "Rented Vehicles", JOptionPane.PLAIN_MESSAGE);
+        try {
+            JOptionPane.showMessageDialog(mainFrame, scrollPane, title, JOptionPane.PLAIN_MESSAGE);
+        } finally {
+            model.close();
+        }
     }
 
-    private static void showChangeAdminPasswordDialog() {
+    private static void showChangeAdminPasswordDialog(String username) {
         JPanel panel = new JPanel(new GridLayout(2, 2, 10, 10));
         panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
@@ -976,12 +2196,25 @@ public class VehicleRentalSystemApp {
             String currentPass = new String(currentPassField.getPassword());
             String newPass = new String(newPassField.getPassword());
 
-            if (rentalSystem.getAdmin().getPassword().equals(currentPass)) {
-                rentalSystem.changeAdminPassword(newPass);
-                JOptionPane.showMessageDialog(mainFrame, "Password changed successfully!");
-            } else {
-                JOptionPane.showMessageDialog(mainFrame, "Incorrect current password.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            CompletableFuture<Boolean> signIn = service.adminLogin(username, currentPass);
+            BackgroundTask.run(mainFrame, "Signing in...", signIn, authenticated -> {
+                if (!authenticated) {
+                    JOptionPane.showMessageDialog(mainFrame, "Incorrect current password.",
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                BackgroundTask.run(mainFrame, "Changing password...", service.changeAdminPassword(username, newPass),
+                        changed -> {
+                            if (changed) {
+                                JOptionPane.showMessageDialog(mainFrame, "Password changed successfully!");
+                            } else {
+                                JOptionPane.showMessageDialog(mainFrame,
+                                        "Failed to update password in the database.",
+                                        "Error", JOptionPane.ERROR_MESSAGE);
+                            }
+                        });
+            });
         }
     }
 
@@ -997,11 +2230,11 @@ public class VehicleRentalSystemApp {
         titleLabel.setFont(new Font("Arial", Font.BOLD, 20));
         customerPanel.add(titleLabel, BorderLayout.NORTH);
 
-        JPanel buttonPanel = new JPanel(new GridLayout(4, 1, 10, 10));
+        JPanel buttonPanel = new JPanel(new GridLayout(5, 1, 10, 10));
         buttonPanel.setBorder(BorderFactory.createEmptyBorder(20, 100, 20, 100));
 
         String[] buttonLabels = {
-                "Rent a Vehicle", "Return a Vehicle", "Change Password", "Back"
+                "Rent a Vehicle", "Reserve a Vehicle", "Return a Vehicle", "Change Password", "Back"
         };
 
         for (String label : buttonLabels) {
@@ -1031,6 +2264,9 @@ public class VehicleRentalSystemApp {
                 case "Rent a Vehicle":
                     showRentVehicleDialog();
                     break;
+                case "Reserve a Vehicle":
+                    showReserveVehicleDialog();
+                    break;
                 case "Return a Vehicle":
                     showReturnVehicleDialog();
                     break;
@@ -1046,16 +2282,25 @@ public class VehicleRentalSystemApp {
 
     private static void showRentVehicleDialog() {
         // Step 1: Customer login/registration
-        JPanel loginPanel = new JPanel(new GridLayout(3, 2, 10, 10));
+        JPanel loginPanel = new JPanel(new GridLayout(5, 2, 10, 10));
         loginPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
 
         JTextField nameField = new JTextField();
         JPasswordField passField = new JPasswordField();
+        JTextField typeField = new JTextField();
+        JTextField brandField = new JTextField();
+        JTextField maxPriceField = new JTextField();
 
         loginPanel.add(new JLabel("Name:"));
         loginPanel.add(nameField);
         loginPanel.add(new JLabel("Password:"));
         loginPanel.add(passField);
+        loginPanel.add(new JLabel("Type (optional):"));
+        loginPanel.add(typeField);
+        loginPanel.add(new JLabel("Brand (optional):"));
+        loginPanel.add(brandField);
+        loginPanel.add(new JLabel("Max Price/Day (optional):"));
+        loginPanel.add(maxPriceField);
 
         int loginResult = JOptionPane.showConfirmDialog(mainFrame, loginPanel, "Customer Login/Registration",
                 JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
@@ -1066,19 +2311,66 @@ public class VehicleRentalSystemApp {
 
         String customerName = nameField.getText();
         String password = new String(passField.getPassword());
-        Customer currentCustomer = null;
 
-        // Find or create customer
-        for (Customer c : rentalSystem.getCustomers()) {
-            if (c.getName().equalsIgnoreCase(customerName) && c.getPassword().equals(password)) {
-                currentCustomer = c;
-                break;
+        // Only matching available vehicles are fetched
+        VehicleQuery.Builder search = VehicleQuery.builder()
+                .type(typeField.getText())
+                .brand(brandField.getText())
+                .availableOnly()
+                .sortBy(VehicleQuery.Sort.PRICE_ASC);
+        if (!maxPriceField.getText().trim().isEmpty()) {
+            try {
+                search.maxPrice(Double.parseDouble(maxPriceField.getText().trim()));
+            } catch (NumberFormatException e) {
+                JOptionPane.showMessageDialog(mainFrame, "Invalid maximum price.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
         }
+        VehicleQuery vehicleQuery = search.build();
+
+        // Log in or register, and load the matching vehicles, in one background step
+        CompletableFuture<RentSession> login = service.supply(() -> {
+            RentSession session = new RentSession();
+            session.customer = rentalSystem.authenticateCustomerByName(customerName, password);
+
+            if (session.customer == null) {
+                String customerId = rentalSystem.nextCustomerId();
+                if (customerId == null) {
+                    return session;
+                }
+                Customer customer = new Customer(customerId, customerName, password);
+                if (!rentalSystem.addCustomer(customer)) {
+                    // Not stored, so there is no customer to rent under; reported by showVehicleSelection
+                    return session;
+                }
+                session.customer = customer;
+                session.registered = true;
+            }
+
+            session.availableVehicles = rentalSystem.findVehicles(vehicleQuery);
+            return session;
+        });
+
+        BackgroundTask.run(mainFrame, "Signing in...", login, VehicleRentalSystemApp::showVehicleSelection);
+    }
+
+    // State carried from the rent dialog's login step to its vehicle selection step
+    private static class RentSession {
+        Customer customer;
+        boolean registered;
+        List<Vehicle> availableVehicles = new ArrayList<>();
+    }
 
+    private static void showVehicleSelection(RentSession session) {
+        Customer currentCustomer = session.customer;
         if (currentCustomer == null) {
-            currentCustomer = new Customer("CUS" + (rentalSystem.getCustomers().size() + 1), customerName, password);
-            rentalSystem.addCustomer(currentCustomer);
+            JOptionPane.showMessageDialog(mainFrame, "Could not register a new customer.",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        if (session.registered) {
             JOptionPane.showMessageDialog(mainFrame,
                     "New customer registered with ID: " + currentCustomer.getCustomerId());
         } else {
@@ -1087,15 +2379,10 @@ public class VehicleRentalSystemApp {
         }
 
         // Step 2: Show available vehicles
-        List<Vehicle> availableVehicles = new ArrayList<>();
-        for (Vehicle v : rentalSystem.getVehicles()) {
-            if (v.isAvailable()) {
-                availableVehicles.add(v);
-            }
-        }
+        List<Vehicle> availableVehicles = session.availableVehicles;
 
         if (availableVehicles.isEmpty()) {
-            JOptionPane.showMessageDialog(mainFrame, "No vehicles currently available for rent.",
+            JOptionPane.showMessageDialog(mainFrame, "No vehicles matching your search are available for rent.",
                     "No Vehicles", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
@@ -1130,7 +2417,7 @@ public class VehicleRentalSystemApp {
 
                 int selectedIndex = vehicleCombo.getSelectedIndex();
                 Vehicle selectedVehicle = availableVehicles.get(selectedIndex);
-                double totalPrice = selectedVehicle.calculatePrice(days);
+                PricingEngine.Quote quote = rentalSystem.quote(selectedVehicle, days);
 
                 // Show confirmation
                 String message = String.format(
@@ -1138,18 +2425,19 @@ public class VehicleRentalSystemApp {
                                 "Customer: %s (%s)\n" +
                                 "Vehicle: %s\n" +
                                 "Days: %d\n" +
-                                "Total Price: $%.2f\n\n" +
+                                "Total Price: $%s\n\n" +
                                 "Confirm rental?",
                         currentCustomer.getName(), currentCustomer.getCustomerId(),
-                        selectedVehicle.toString(), days, totalPrice
+                        selectedVehicle.toString(), days, quote.getTotal().toPlainString()
                 );
 
                 int confirm = JOptionPane.showConfirmDialog(mainFrame, message,
                         "Confirm Rental", JOptionPane.YES_NO_OPTION);
 
                 if (confirm == JOptionPane.YES_OPTION) {
-                    rentalSystem.rentVehicle(selectedVehicle, currentCustomer, days);
-                    JOptionPane.showMessageDialog(mainFrame, "Vehicle rented successfully!");
+                    BackgroundTask.run(mainFrame, "Renting vehicle...",
+                            service.rentVehicle(selectedVehicle, currentCustomer, days),
+                            VehicleRentalSystemApp::showRentResult);
                 }
             } catch (NumberFormatException e) {
                 JOptionPane.showMessageDialog(mainFrame, "Invalid number of days.",
@@ -1158,6 +2446,128 @@ public class VehicleRentalSystemApp {
         }
     }
 
+    private static void showRentResult(RentResult rentResult) {
+        switch (rentResult) {
+            case RENTED:
+                JOptionPane.showMessageDialog(mainFrame, "Vehicle rented successfully!");
+                break;
+            case ALREADY_RENTED:
+                JOptionPane.showMessageDialog(mainFrame, "Sorry, this vehicle was just rented by someone else.",
+                        "Not Available", JOptionPane.WARNING_MESSAGE);
+                break;
+            case RESERVED:
+                JOptionPane.showMessageDialog(mainFrame,
+                        "Sorry, this vehicle is reserved by another customer during those days.",
+                        "Not Available", JOptionPane.WARNING_MESSAGE);
+                break;
+            case CONFLICT:
+                JOptionPane.showMessageDialog(mainFrame,
+                        "The price of this vehicle has just changed. Please check the new price and try again.",
+                        "Price Changed", JOptionPane.WARNING_MESSAGE);
+                break;
+            case NOT_FOUND:
+                JOptionPane.showMessageDialog(mainFrame, "This vehicle no longer exists.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                break;
+            case FAILED:
+                JOptionPane.showMessageDialog(mainFrame, "Rental failed due to a database error.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                break;
+        }
+    }
+
+    private static void showReserveVehicleDialog() {
+        JPanel panel = new JPanel(new GridLayout(4, 2, 10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JTextField customerIdField = new JTextField();
+        JPasswordField passField = new JPasswordField();
+        JTextField startField = new JTextField(LocalDate.now().plusDays(1).toString());
+        JTextField endField = new JTextField(LocalDate.now().plusDays(2).toString());
+
+        panel.add(new JLabel("Customer ID:"));
+        panel.add(customerIdField);
+        panel.add(new JLabel("Password:"));
+        panel.add(passField);
+        panel.add(new JLabel("From (yyyy-mm-dd):"));
+        panel.add(startField);
+        panel.add(new JLabel("Until (yyyy-mm-dd):"));
+        panel.add(endField);
+
+        int result = JOptionPane.showConfirmDialog(mainFrame, panel, "Reserve Vehicle",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+
+        if (result != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        String customerId = customerIdField.getText();
+        String password = new String(passField.getPassword());
+        OffsetDateTime start;
+        OffsetDateTime end;
+        try {
+            // Reservations run from the start of the first day to the start of the last
+            start = LocalDate.parse(startField.getText().trim()).atStartOfDay(ZoneId.systemDefault()).toOffsetDateTime();
+            end = LocalDate.parse(endField.getText().trim()).atStartOfDay(ZoneId.systemDefault()).toOffsetDateTime();
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(mainFrame, "Invalid date.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        BackgroundTask.run(mainFrame, "Signing in...", service.authenticateCustomer(customerId, password), customer -> {
+            if (customer == null) {
+                JOptionPane.showMessageDialog(mainFrame, "Invalid customer ID or password.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            BackgroundTask.run(mainFrame, "Finding free vehicles...", service.findAvailableVehicles(start, end),
+                    freeVehicles -> {
+                        if (freeVehicles.isEmpty()) {
+                            JOptionPane.showMessageDialog(mainFrame, "No vehicles are free for those dates.",
+                                    "No Vehicles", JOptionPane.INFORMATION_MESSAGE);
+                            return;
+                        }
+
+                        JComboBox<Vehicle> vehicleCombo = new JComboBox<>(freeVehicles.toArray(new Vehicle[0]));
+                        int choice = JOptionPane.showConfirmDialog(mainFrame, vehicleCombo, "Select Vehicle",
+                                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+                        if (choice != JOptionPane.OK_OPTION) {
+                            return;
+                        }
+
+                        Vehicle selected = (Vehicle) vehicleCombo.getSelectedItem();
+                        BackgroundTask.run(mainFrame, "Reserving vehicle...",
+                                service.reserveVehicle(selected.getVehicleId(), customerId, start, end),
+                                VehicleRentalSystemApp::showReserveResult);
+                    });
+        });
+    }
+
+    private static void showReserveResult(ReserveResult reserveResult) {
+        switch (reserveResult) {
+            case RESERVED:
+                JOptionPane.showMessageDialog(mainFrame, "Vehicle reserved successfully!");
+                break;
+            case CONFLICT:
+                JOptionPane.showMessageDialog(mainFrame, "Sorry, this vehicle was just booked for those dates.",
+                        "Not Available", JOptionPane.WARNING_MESSAGE);
+                break;
+            case INVALID_RANGE:
+                JOptionPane.showMessageDialog(mainFrame, "The end date must be after the start date and in the future.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                break;
+            case NOT_FOUND:
+                JOptionPane.showMessageDialog(mainFrame, "This vehicle no longer exists.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                break;
+            case FAILED:
+                JOptionPane.showMessageDialog(mainFrame, "Reservation failed due to a database error.",
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                break;
+        }
+    }
+
     private static void showReturnVehicleDialog() {
         JPanel panel = new JPanel(new GridLayout(3, 2, 10, 10));
         panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
@@ -1181,42 +2591,30 @@ public class VehicleRentalSystemApp {
             String password = new String(passField.getPassword());
             String vehicleId = vehicleIdField.getText();
 
-            Customer customer = null;
-            for (Customer c : rentalSystem.getCustomers()) {
-                if (c.getCustomerId().equals(customerId) && c.getPassword().equals(password)) {
-                    customer = c;
-                    break;
+            CompletableFuture<Customer> signIn = service.authenticateCustomer(customerId, password);
+            BackgroundTask.run(mainFrame, "Signing in...", signIn, customer -> {
+                if (customer == null) {
+                    JOptionPane.showMessageDialog(mainFrame, "Invalid customer ID or password.",
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
                 }
-            }
 
-            if (customer != null) {
-                Vehicle vehicleToReturn = null;
-                for (Vehicle v : rentalSystem.getVehicles()) {
-                    if (v.getVehicleId().equals(vehicleId) && !v.isAvailable()) {
-                        // Check if this customer rented this vehicle
-                        for (Rental r : rentalSystem.getRentals()) {
-                            if (r.getVehicle().getVehicleId().equals(vehicleId) &&
-                                    r.getCustomer().getCustomerId().equals(customerId)) {
-                                vehicleToReturn = v;
-                                break;
+                BackgroundTask.run(mainFrame, "Returning vehicle...", service.returnVehicleFor(customerId, vehicleId),
+                        returnResult -> {
+                            if (returnResult == ReturnResult.RETURNED) {
+                                JOptionPane.showMessageDialog(mainFrame,
+                                        "Vehicle returned successfully by " + customer.getName());
+                            } else if (returnResult == ReturnResult.FAILED) {
+                                JOptionPane.showMessageDialog(mainFrame,
+                                        "Return failed due to a database error.",
+                                        "Error", JOptionPane.ERROR_MESSAGE);
+                            } else {
+                                JOptionPane.showMessageDialog(mainFrame,
+                                        "Invalid vehicle ID, vehicle is not rented by you, or vehicle not found.",
+                                        "Error", JOptionPane.ERROR_MESSAGE);
                             }
-                        }
-                    }
-                }
-
-                if (vehicleToReturn != null) {
-                    rentalSystem.returnVehicle(vehicleToReturn);
-                    JOptionPane.showMessageDialog(mainFrame,
-                            "Vehicle returned successfully by " + customer.getName());
-                } else {
-                    JOptionPane.showMessageDialog(mainFrame,
-                            "Invalid vehicle ID, vehicle is not rented by you, or vehicle not found.",
-                            "Error", JOptionPane.ERROR_MESSAGE);
-                }
-            } else {
-                JOptionPane.showMessageDialog(mainFrame, "Invalid customer ID or password.",
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+                        });
+            });
         }
     }
 
@@ -1243,32 +2641,27 @@ public class VehicleRentalSystemApp {
             String currentPass = new String(currentPassField.getPassword());
             String newPass = new String(newPassField.getPassword());
 
-            Customer customer = null;
-            for (Customer c : rentalSystem.getCustomers()) {
-                if (c.getCustomerId().equals(customerId) && c.getPassword().equals(currentPass)) {
-                    customer = c;
-                    break;
+            CompletableFuture<Customer> signIn = service.authenticateCustomer(customerId, currentPass);
+            BackgroundTask.run(mainFrame, "Signing in...", signIn, customer -> {
+                if (customer == null) {
+                    JOptionPane.showMessageDialog(mainFrame, "Invalid customer ID or password.",
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
                 }
-            }
-
-            if (customer != null) {
-                customer.setPassword(newPass);
 
                 // Update password in the database
-                boolean updated = rentalSystem.updateCustomerPassword(customerId, newPass);
-
-                if (updated) {
-                    JOptionPane.showMessageDialog(mainFrame,
-                            "Password changed successfully for " + customer.getName());
-                } else {
-                    JOptionPane.showMessageDialog(mainFrame,
-                            "Failed to update password in the database.",
-                            "Error", JOptionPane.ERROR_MESSAGE);
-                }
-            } else {
-                JOptionPane.showMessageDialog(mainFrame, "Invalid customer ID or password.",
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+                BackgroundTask.run(mainFrame, "Changing password...", service.updateCustomerPassword(customerId, newPass),
+                        updated -> {
+                            if (updated) {
+                                JOptionPane.showMessageDialog(mainFrame,
+                                        "Password changed successfully for " + customer.getName());
+                            } else {
+                                JOptionPane.showMessageDialog(mainFrame,
+                                        "Failed to update password in the database.",
+                                        "Error", JOptionPane.ERROR_MESSAGE);
+                            }
+                        });
+            });
         }
     }
 }
@@ -0,0 +1,92 @@
+package org.example;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Persistent store of the fleet. Implementations hand out fresh {@link Vehicle} objects the
+ * caller may modify; changing one does not change the store.
+ * <p>
+ * Every stored change of a vehicle, including renting and returning it, bumps its
+ * {@link Vehicle#getVersion() version}. Writes take the version the caller read and only
+ * apply if it is still current (compare-and-set), or {@link #ANY_VERSION} to apply regardless.
+ * @see Storage
+ */
+interface VehicleRepository {
+
+    /**
+     * Expected version that matches any version
+     */
+    long ANY_VERSION = -1;
+
+    /**
+     * Outcome of {@link #updatePrice}
+     */
+    final class UpdateOutcome {
+        private final UpdateResult result;
+        private final Vehicle vehicle;
+
+        UpdateOutcome(UpdateResult result, Vehicle vehicle) {
+            this.result = result;
+            this.vehicle = vehicle;
+        }
+
+        UpdateResult getResult() {
+            return result;
+        }
+
+        // The updated vehicle, the current one on a conflict, null if not found
+        Vehicle getVehicle() {
+            return vehicle;
+        }
+    }
+
+    /**
+     * Every vehicle, in no particular order
+     */
+    List<Vehicle> findAll() throws SQLException;
+
+    /**
+     * The vehicles with the given IDs; unknown IDs are left out
+     */
+    List<Vehicle> findByIds(Collection<String> vehicleIds) throws SQLException;
+
+    /**
+     * The vehicles matching a search, in the order and up to the limit it asks for
+     */
+    List<Vehicle> find(VehicleQuery query) throws SQLException;
+
+    /**
+     * Up to limit vehicles ordered by ID, starting after afterVehicleId (null for the first page)
+     */
+    List<Vehicle> findPage(String afterVehicleId, int limit) throws SQLException;
+
+    /**
+     * Every vehicle ordered by ID without materializing the whole fleet. The stream may hold a
+     * database connection and must be closed. Errors while it is consumed are thrown as
+     * {@link UncheckedSQLException}.
+     */
+    Stream<Vehicle> stream() throws SQLException;
+
+    int count() throws SQLException;
+
+    /**
+     * Store a new, available vehicle at version 0
+     * @throws SQLException with SQLState 23505 if the vehicle ID is taken
+     */
+    void add(Vehicle vehicle) throws SQLException;
+
+    /**
+     * Change the base price of a vehicle still at expectedVersion
+     * @return UPDATED, CONFLICT or NOT_FOUND
+     */
+    UpdateOutcome updatePrice(String vehicleId, double newPrice, long expectedVersion) throws SQLException;
+
+    /**
+     * Delete a vehicle that is not rented and still at expectedVersion
+     * @return DELETED, RENTED, CONFLICT or NOT_FOUND
+     */
+    DeleteResult delete(String vehicleId, long expectedVersion) throws SQLException;
+}
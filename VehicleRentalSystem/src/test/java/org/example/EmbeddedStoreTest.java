@@ -0,0 +1,202 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Recovery of the embedded store's write-ahead log: replay, torn and corrupt tails, and compaction
+ */
+class EmbeddedStoreTest {
+    private static final long ANY = VehicleRepository.ANY_VERSION;
+
+    @TempDir
+    Path dir;
+
+    private EmbeddedStore store;
+
+    @AfterEach
+    void closeStore() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void reopenReplaysEveryChange() throws Exception {
+        store = open();
+        populate(store);
+        List<String> before = describe(store);
+
+        EmbeddedStore reopened = reopen();
+        assertEquals(before, describe(reopened));
+    }
+
+    @Test
+    void tornRecordAtTheEndIsCutOff() throws Exception {
+        store = open();
+        populate(store);
+        List<String> before = describe(store);
+        store.close();
+        long intact = Files.size(file());
+
+        // A crash mid-append: the header promises more payload than made it to disk
+        appendBytes(ByteBuffer.allocate(11).putInt(100).putInt(0).put(new byte[]{7, 1, 2}).array());
+
+        store = new EmbeddedStore(file(), false);
+        assertEquals(before, describe(store));
+        assertEquals(intact, Files.size(file()));
+
+        // The log goes on from the valid prefix
+        store.getVehicleRepository().add(new Vehicle("V9", "Van", "Ford", "Transit", 70));
+        EmbeddedStore reopened = reopen();
+        assertEquals(70.0, reopened.getVehicleRepository().findByIds(List.of("V9")).get(0).getBasePricePerDay());
+    }
+
+    @Test
+    void recordFailingItsChecksumIsCutOff() throws Exception {
+        store = open();
+        populate(store);
+        List<String> before = describe(store);
+        store.close();
+        long intact = Files.size(file());
+
+        // A complete record of DELETE_VEHICLE V1 whose checksum does not match
+        byte[] payload = ByteBuffer.allocate(6).put((byte) 3).put((byte) 1).putShort((short) 2)
+                .put((byte) 'V').put((byte) '1').array();
+        appendBytes(ByteBuffer.allocate(8 + payload.length).putInt(payload.length).putInt(12345).put(payload)
+                .array());
+
+        store = new EmbeddedStore(file(), false);
+        assertEquals(before, describe(store));
+        assertEquals(intact, Files.size(file()));
+    }
+
+    @Test
+    void compactionKeepsStateAndVersions() throws Exception {
+        store = open();
+        VehicleRepository vehicles = store.getVehicleRepository();
+        vehicles.add(new Vehicle("V1", "Car", "Toyota", "Corolla", 50));
+        vehicles.add(new Vehicle("V2", "Car", "Honda", "Civic", 45));
+        store.getCustomerRepository().add(new Customer("CUS1", "Alice", "secret"));
+        // Far more records than live rows, so the next open compacts
+        for (int i = 1; i <= 1200; i++) {
+            vehicles.updatePrice("V1", 50 + i % 7, ANY);
+        }
+        RentalRepository rentals = store.getRentalRepository();
+        assertEquals(RentResult.RENTED, rentals.rent("V1", "CUS1", 2, BigDecimal.valueOf(2), ANY).getResult());
+        assertEquals(RentResult.RENTED, rentals.rent("V2", "CUS1", 1, BigDecimal.ONE, ANY).getResult());
+        assertEquals(ReturnResult.RETURNED, rentals.returnVehicle("V2", ANY).getResult());
+        List<String> before = describe(store);
+        store.close();
+        long uncompacted = Files.size(file());
+
+        store = new EmbeddedStore(file(), false);
+        assertTrue(Files.size(file()) < uncompacted / 10, "log was not compacted");
+        assertFalse(Files.exists(dir.resolve("store.wal.compact")));
+        assertEquals(before, describe(store));
+        Vehicle v1 = store.getVehicleRepository().findByIds(List.of("V1")).get(0);
+        assertEquals(1201, v1.getVersion());
+
+        // Versions keep counting from where they were, across another reopen of the compacted log
+        assertEquals(ReturnResult.RETURNED, store.getRentalRepository().returnVehicle("V1", 1201).getResult());
+        EmbeddedStore reopened = reopen();
+        Vehicle returned = reopened.getVehicleRepository().findByIds(List.of("V1")).get(0);
+        assertEquals(1202, returned.getVersion());
+        assertTrue(returned.isAvailable());
+    }
+
+    @Test
+    void returnOfAvailableVehicleChangesNothing() throws Exception {
+        store = open();
+        store.getVehicleRepository().add(new Vehicle("V1", "Car", "Toyota", "Corolla", 50));
+        long size = Files.size(file());
+
+        RentalRepository.ReturnOutcome outcome = store.getRentalRepository().returnVehicle("V1", ANY);
+        assertEquals(ReturnResult.NOT_RENTED, outcome.getResult());
+        assertEquals(0, store.getVehicleRepository().findByIds(List.of("V1")).get(0).getVersion());
+        assertEquals(size, Files.size(file()));
+    }
+
+    private Path file() {
+        return dir.resolve("store.wal");
+    }
+
+    private EmbeddedStore open() throws IOException {
+        return new EmbeddedStore(file(), false);
+    }
+
+    // Closes the current store and opens the same log again
+    private EmbeddedStore reopen() throws IOException {
+        store.close();
+        store = open();
+        return store;
+    }
+
+    private void appendBytes(byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file(), StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(bytes));
+        }
+    }
+
+    // One of every kind of record
+    private static void populate(EmbeddedStore store) throws SQLException {
+        VehicleRepository vehicles = store.getVehicleRepository();
+        CustomerRepository customers = store.getCustomerRepository();
+        RentalRepository rentals = store.getRentalRepository();
+
+        vehicles.add(new Vehicle("V1", "Car", "Toyota", "Corolla", 50));
+        vehicles.add(new Vehicle("V2", "Truck", "Ford", "F-150", 90));
+        vehicles.add(new Vehicle("V3", "Motorcycle", "Honda", "CBR", 30));
+        customers.add(new Customer("CUS1", "Alice", "secret"));
+        customers.add(new Customer("CUS2", "Bob", "hunter2"));
+        vehicles.updatePrice("V2", 95, ANY);
+        customers.updatePassword("CUS2", "changed");
+        customers.updateAdminPassword("admin", "new-admin-password");
+
+        assertEquals(RentResult.RENTED, rentals.rent("V1", "CUS1", 3, BigDecimal.valueOf(3), ANY).getResult());
+        assertEquals(RentResult.RENTED, rentals.rent("V3", "CUS2", 2, BigDecimal.valueOf(2), ANY).getResult());
+        assertEquals(ReturnResult.RETURNED, rentals.returnVehicle("V3", ANY).getResult());
+        assertEquals(DeleteResult.DELETED, vehicles.delete("V3", ANY));
+    }
+
+    // Everything a reader can see in the store, in a stable order
+    private static List<String> describe(EmbeddedStore store) throws SQLException {
+        List<String> lines = new ArrayList<>();
+        for (Vehicle vehicle : store.getVehicleRepository().findAll()) {
+            lines.add("vehicle " + vehicle.getVehicleId() + " " + vehicle.getType() + " " + vehicle.getBrand() + " "
+                    + vehicle.getModel() + " " + vehicle.getBasePricePerDay() + " available=" + vehicle.isAvailable()
+                    + " version=" + vehicle.getVersion());
+        }
+        List<Customer> customers = store.getCustomerRepository().findAll();
+        customers.sort(Comparator.comparing(Customer::getCustomerId));
+        for (Customer customer : customers) {
+            lines.add("customer " + customer.getCustomerId() + " " + customer.getName() + " "
+                    + customer.getPassword());
+            for (Rental rental : store.getRentalRepository().findByCustomer(customer.getCustomerId())) {
+                lines.add("rental " + rental.getRentalId() + " " + rental.getVehicle().getVehicleId() + " "
+                        + rental.getDays() + " " + rental.getTotalPrice() + " " + rental.getRentedAt() + " "
+                        + rental.getReturnedAt());
+            }
+        }
+        lines.add("admin " + store.getCustomerRepository().findAdmin("admin").getPassword());
+        lines.add("next " + store.getCustomerRepository().nextId());
+        return lines;
+    }
+}
@@ -0,0 +1,259 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Crash recovery, checkpointed shipping and rewinding of the rental journal, against a fake
+ * target that keeps the same per-journal checkpoint as {@link JournalShipper}
+ */
+class RentalJournalTest {
+    private static final long SIZE_BYTES = 64 * 1024;
+    private static final long WAIT_MILLIS = 2000;
+
+    @TempDir
+    Path dir;
+
+    private final FakeTarget target = new FakeTarget();
+    private final RecordingListener listener = new RecordingListener();
+    private RentalJournal journal;
+
+    @AfterEach
+    void closeJournal() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void unshippedEventsAreShippedOnceAfterReopen() throws Exception {
+        target.down = true;
+        journal = open(SIZE_BYTES);
+        assertEquals(1, rent("V1"));
+        assertEquals(2, rent("V2"));
+        assertEquals(3, journal.returnVehicle("V1", () -> target.isAvailable("V1")));
+        journal.close(); // Gives up shipping after journal.waitMillis; the events stay on disk
+        assertEquals(List.of(), target.applied);
+
+        target.down = false;
+        journal = open(SIZE_BYTES);
+        journal.awaitShipped();
+        assertEquals(List.of(1L, 2L, 3L), target.applied);
+        assertEquals(List.of("rent V1", "rent V2", "return V1 RETURNED"), listener.calls());
+
+        // Shipped events are not recovered again, and the sequence goes on after them
+        journal.close();
+        journal = open(SIZE_BYTES);
+        assertEquals(0, journal.getBacklog());
+        assertEquals(4, rent("V3"));
+        journal.awaitShipped();
+        assertEquals(List.of(1L, 2L, 3L, 4L), target.applied);
+    }
+
+    @Test
+    void batchShippedAgainAfterItsCommitIsNotAppliedTwice() throws Exception {
+        // The target commits the batch, but the journal never hears so and ships it again
+        target.failAfterCommit = true;
+        journal = open(SIZE_BYTES);
+        rent("V1");
+        rent("V2");
+        journal.returnVehicle("V1", () -> target.isAvailable("V1"));
+        journal.awaitShipped();
+
+        assertEquals(List.of(1L, 2L, 3L), target.applied);
+        assertEquals(3, (long) target.checkpoints.get(target.journalId));
+    }
+
+    @Test
+    void rejectedEventIsSkipped() throws Exception {
+        target.refused.add("V2");
+        journal = open(SIZE_BYTES);
+        rent("V1");
+        rent("V2");
+        rent("V3");
+        journal.awaitShipped();
+
+        assertEquals(List.of(1L, 3L), target.applied);
+        assertEquals(List.of("rent V1", "rejected 2", "rent V3"), listener.calls());
+
+        // The checkpoint moved past the refused event, so it is not shipped after a reopen either
+        journal.close();
+        journal = open(SIZE_BYTES);
+        journal.awaitShipped();
+        assertEquals(List.of(1L, 3L), target.applied);
+    }
+
+    @Test
+    void tornRecordIsDiscardedOnRecovery() throws Exception {
+        target.down = true;
+        journal = open(SIZE_BYTES);
+        rent("V1");
+        rent("V2");
+        rent("V3");
+        journal.close();
+        corruptRecord(3);
+
+        target.down = false;
+        journal = open(SIZE_BYTES);
+        journal.awaitShipped();
+        assertEquals(List.of(1L, 2L), target.applied);
+        // The sequence goes on from the last intact event
+        assertEquals(3, rent("V4"));
+    }
+
+    @Test
+    void availabilityComesFromUnshippedEventsFirst() throws Exception {
+        target.down = true;
+        journal = open(SIZE_BYTES);
+
+        assertEquals(0, journal.returnVehicle("V1", () -> true), "returned a vehicle that is not rented");
+        assertEquals(1, rent("V1"));
+        assertEquals(0, rent("V1"), "rented a vehicle with a rental pending");
+        assertEquals(2, journal.returnVehicle("V1", () -> true));
+        assertEquals(0, journal.returnVehicle("V1", () -> false), "returned a vehicle with a return pending");
+        assertEquals(2, journal.getBacklog());
+    }
+
+    @Test
+    void fullJournalRewindsOnceShipped() throws Exception {
+        // Room for a few dozen events, so the file is reused many times over
+        journal = open(2048);
+        long seq = 0;
+        for (int i = 0; i < 200; i++) {
+            seq = i % 2 == 0 ? rent("V1") : journal.returnVehicle("V1", () -> target.isAvailable("V1"));
+            assertEquals(i + 1, seq);
+        }
+        journal.awaitShipped();
+
+        assertEquals(200, target.applied.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i + 1, (long) target.applied.get(i));
+        }
+        assertTrue(target.isAvailable("V1"));
+    }
+
+    private RentalJournal open(long sizeBytes) throws IOException {
+        RentalJournal opened = new RentalJournal(dir.resolve("journal.bin"), sizeBytes, 1, 64, 500, 10,
+                WAIT_MILLIS, target, listener);
+        opened.start();
+        return opened;
+    }
+
+    private long rent(String vehicleId) throws SQLException {
+        return journal.rent(vehicleId, "CUS1", 3, BigDecimal.ONE, () -> target.isAvailable(vehicleId));
+    }
+
+    // Flips a payload byte of the record with the given sequence number, as a torn write would
+    private void corruptRecord(long seq) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve("journal.bin"), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            long offset = 32;
+            for (long i = 1; i < seq; i++) {
+                header.clear();
+                channel.read(header, offset);
+                offset += 8 + header.getInt(0);
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, offset + 20);
+            last.put(0, (byte) ~last.get(0));
+            last.rewind();
+            channel.write(last, offset + 20);
+        }
+    }
+
+    /**
+     * Applies events to a map of vehicle availability and keeps a checkpoint per journal, like
+     * {@link JournalShipper} does in one transaction with the rentals
+     */
+    private static final class FakeTarget implements RentalJournal.Target {
+        final Map<String, Long> checkpoints = new HashMap<>();
+        final List<Long> applied = new ArrayList<>();
+        final Set<String> refused = new HashSet<>();
+        private final Set<String> rented = new HashSet<>();
+        volatile String journalId;
+        volatile boolean down;
+        volatile boolean failAfterCommit;
+
+        @Override
+        public synchronized void ship(String journalId, List<RentalJournal.Event> events,
+                                      RentalJournal.Listener listener) throws SQLException {
+            if (down) {
+                throw new SQLException("Connection refused", "08001");
+            }
+            this.journalId = journalId;
+            long checkpoint = checkpoints.getOrDefault(journalId, 0L);
+            List<Runnable> notifications = new ArrayList<>();
+            for (RentalJournal.Event event : events) {
+                if (event.getSeq() <= checkpoint) {
+                    continue;
+                }
+                String vehicleId = event.getVehicleId();
+                if (refused.contains(vehicleId)) {
+                    notifications.add(() -> listener.rejected(event, new SQLException("Refused", "23P01")));
+                } else if (event.getType() == RentalJournal.RENT) {
+                    rented.add(vehicleId);
+                    applied.add(event.getSeq());
+                    notifications.add(() -> listener.rentShipped(event,
+                            new RentalRepository.RentOutcome(RentResult.RENTED, (int) event.getSeq(), null, 1)));
+                } else {
+                    ReturnResult result = rented.remove(vehicleId) ? ReturnResult.RETURNED : ReturnResult.NOT_RENTED;
+                    applied.add(event.getSeq());
+                    notifications.add(() -> listener.returnShipped(event,
+                            new RentalRepository.ReturnOutcome(result, 2)));
+                }
+            }
+            checkpoints.put(journalId, Math.max(checkpoint, events.get(events.size() - 1).getSeq()));
+            if (failAfterCommit) {
+                failAfterCommit = false;
+                throw new SQLException("Connection reset after commit", "08006");
+            }
+            notifications.forEach(Runnable::run);
+        }
+
+        synchronized boolean isAvailable(String vehicleId) {
+            return !rented.contains(vehicleId);
+        }
+    }
+
+    private static final class RecordingListener implements RentalJournal.Listener {
+        private final List<String> calls = new ArrayList<>();
+
+        @Override
+        public synchronized void rentShipped(RentalJournal.Event event, RentalRepository.RentOutcome outcome) {
+            calls.add("rent " + event.getVehicleId());
+        }
+
+        @Override
+        public synchronized void returnShipped(RentalJournal.Event event, RentalRepository.ReturnOutcome outcome) {
+            calls.add("return " + event.getVehicleId() + " " + outcome.getResult());
+        }
+
+        @Override
+        public synchronized void rejected(RentalJournal.Event event, SQLException e) {
+            calls.add("rejected " + event.getSeq());
+        }
+
+        synchronized List<String> calls() {
+            return new ArrayList<>(calls);
+        }
+    }
+}
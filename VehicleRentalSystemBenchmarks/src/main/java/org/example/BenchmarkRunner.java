@@ -0,0 +1,46 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link RentalBenchmarks} once per thread count and writes one JSON result file per run.
+ * <pre>
+ * java -Dbench.threads=1,8,32 -Dbench.include=rentThenReturn -jar target/benchmarks.jar
+ * </pre>
+ * Properties: bench.threads (default 1,4,16), bench.include (benchmark name regex),
+ * bench.db.url / bench.db.user / bench.db.password (external PostgreSQL instead of embedded).
+ * Plain JMH options still work with: java -cp target/benchmarks.jar org.openjdk.jmh.Main
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = System.getProperty("bench.include", RentalBenchmarks.class.getSimpleName());
+        String[] threadCounts = System.getProperty("bench.threads", "1,4,16").split(",");
+
+        // Forked benchmark JVMs do not inherit system properties
+        List<String> forwarded = new ArrayList<>();
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("bench.db.")) {
+                forwarded.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+
+        for (String threadCount : threadCounts) {
+            int threads = Integer.parseInt(threadCount.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .jvmArgsAppend(forwarded.toArray(new String[0]))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result-" + threads + "-threads.json");
+            new Runner(options.build()).run();
+        }
+    }
+}
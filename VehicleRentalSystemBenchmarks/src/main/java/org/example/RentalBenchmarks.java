@@ -0,0 +1,239 @@
+package org.example;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+/**
+ * JMH benchmarks for the rental hot paths.
+ * Throughput and sampled latency (p50/p99) are reported for each operation. By default an
+ * embedded PostgreSQL is started per trial; pass -Dbench.db.url (and -Dbench.db.user,
+ * -Dbench.db.password) to run against an existing server instead. Only rows with the
+ * benchmark ID prefixes are created or deleted there.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class RentalBenchmarks {
+    static final String VEHICLE_PREFIX = "BV";
+    static final String CUSTOMER_PREFIX = "BC";
+
+    // Customers share this many distinct passwords, so seeding does not hash once per customer
+    static final int PASSWORDS = 16;
+
+    // Customers the cached login benchmarks sign in as, so all of them stay in the credential cache
+    static final int HOT_CUSTOMERS = 100;
+
+    @State(Scope.Benchmark)
+    public static class Fleet {
+        @Param({"1000", "100000"})
+        public int fleetSize;
+
+        @Param({"1000", "100000"})
+        public int customerCount;
+
+        // 0 disables the vehicle cache so getVehicles hits the database every time
+        @Param({"0", "60000"})
+        public long vehicleCacheTtlMs;
+
+        EmbeddedPostgres embedded;
+        VehicleRentalSystem system;
+        Vehicle[] rentable;
+        Customer[] customers;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException, SQLException {
+            String url = System.getProperty("bench.db.url");
+            if (url == null) {
+                embedded = EmbeddedPostgres.builder().start();
+                System.setProperty("db.url", embedded.getJdbcUrl("postgres", "postgres"));
+                System.setProperty("db.user", "postgres");
+                System.setProperty("db.password", "");
+            } else {
+                System.setProperty("db.url", url);
+                System.setProperty("db.user", System.getProperty("bench.db.user", "postgres"));
+                System.setProperty("db.password", System.getProperty("bench.db.password", ""));
+            }
+
+            // Creates the schema, so it must come before populating
+            system = new VehicleRentalSystem(vehicleCacheTtlMs, false);
+            populate();
+        }
+
+        // Inserts the benchmark fleet and customers, and rents out the last 10% of the fleet.
+        // Customers get hashed passwords, as addCustomer would store them.
+        private void populate() throws SQLException {
+            int rentedFrom = fleetSize - fleetSize / 10;
+            rentable = new Vehicle[rentedFrom];
+            customers = new Customer[customerCount];
+
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                conn.setAutoCommit(false);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DELETE FROM rentals WHERE vehicle_id LIKE '" + VEHICLE_PREFIX + "%'");
+                    stmt.execute("DELETE FROM vehicles WHERE vehicle_id LIKE '" + VEHICLE_PREFIX + "%'");
+                    stmt.execute("DELETE FROM customers WHERE customer_id LIKE '" + CUSTOMER_PREFIX + "%'");
+                }
+
+                String[] hashes = new String[PASSWORDS];
+                Credentials credentials = new Credentials();
+                try {
+                    for (int i = 0; i < PASSWORDS; i++) {
+                        hashes[i] = credentials.hash("pw" + i);
+                    }
+                } finally {
+                    credentials.close();
+                }
+
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO customers (customer_id, name, password) VALUES (?, ?, ?)")) {
+                    for (int i = 0; i < customerCount; i++) {
+                        // Keeps the plaintext password, which the login benchmarks sign in with
+                        customers[i] = new Customer(CUSTOMER_PREFIX + i, "Customer " + i, "pw" + i % PASSWORDS);
+                        stmt.setString(1, customers[i].getCustomerId());
+                        stmt.setString(2, customers[i].getName());
+                        stmt.setString(3, hashes[i % PASSWORDS]);
+                        stmt.addBatch();
+                        if (i % 1000 == 999) {
+                            stmt.executeBatch();
+                        }
+                    }
+                    stmt.executeBatch();
+                }
+
+                String[] types = {"Car", "Motorcycle", "Truck", "Van"};
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO vehicles (vehicle_id, type, brand, model, base_price_per_day, is_available) " +
+                                "VALUES (?, ?, ?, ?, ?, ?)")) {
+                    for (int i = 0; i < fleetSize; i++) {
+                        Vehicle vehicle = new Vehicle(String.format("%s%07d", VEHICLE_PREFIX, i),
+                                types[i % types.length], "Brand" + (i % 50), "Model" + (i % 200), 20 + i % 180);
+                        stmt.setString(1, vehicle.getVehicleId());
+                        stmt.setString(2, vehicle.getType());
+                        stmt.setString(3, vehicle.getBrand());
+                        stmt.setString(4, vehicle.getModel());
+                        stmt.setDouble(5, vehicle.getBasePricePerDay());
+                        stmt.setBoolean(6, i < rentedFrom);
+                        stmt.addBatch();
+                        if (i % 1000 == 999) {
+                            stmt.executeBatch();
+                        }
+                        if (i < rentedFrom) {
+                            rentable[i] = vehicle;
+                        }
+                    }
+                    stmt.executeBatch();
+                }
+
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO rentals (vehicle_id, customer_id, days) VALUES (?, ?, ?)")) {
+                    for (int i = rentedFrom; i < fleetSize; i++) {
+                        stmt.setString(1, String.format("%s%07d", VEHICLE_PREFIX, i));
+                        stmt.setString(2, customers[i % customerCount].getCustomerId());
+                        stmt.setInt(3, 1 + i % 14);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+
+                conn.commit();
+            }
+
+            try (Connection conn = DatabaseConnection.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE vehicles");
+                stmt.execute("ANALYZE customers");
+                stmt.execute("ANALYZE rentals");
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            system.shutdown();
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+
+        Vehicle randomRentable() {
+            return rentable[ThreadLocalRandom.current().nextInt(rentable.length)];
+        }
+
+        Customer randomCustomer() {
+            return customers[ThreadLocalRandom.current().nextInt(customers.length)];
+        }
+
+        Customer randomHotCustomer() {
+            return customers[ThreadLocalRandom.current().nextInt(Math.min(HOT_CUSTOMERS, customers.length))];
+        }
+    }
+
+    // Full rent/return cycle on a random vehicle; contended when threads pick the same one
+    @Benchmark
+    public Object rentThenReturn(Fleet fleet) {
+        Vehicle vehicle = fleet.randomRentable();
+        Customer customer = fleet.randomCustomer();
+        RentResult result = fleet.system.rentVehicle(vehicle, customer, 3);
+        if (result == RentResult.RENTED) {
+            return fleet.system.returnVehicleFor(customer.getCustomerId(), vehicle.getVehicleId());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Vehicle> getVehicles(Fleet fleet) {
+        return fleet.system.getVehicles();
+    }
+
+    @Benchmark
+    public List<Rental> getRentals(Fleet fleet) {
+        return fleet.system.getRentals();
+    }
+
+    // Sign-in by ID with every password hashed: the verified-credential cache is disabled in
+    // this benchmark's fork. jvmArgsPrepend, as BenchmarkRunner's jvmArgsAppend would replace it.
+    @Benchmark
+    @Fork(value = 1, jvmArgsPrepend = "-Dcredentials.cacheSize=0")
+    public Customer customerLoginCold(Fleet fleet) {
+        Customer customer = fleet.randomCustomer();
+        return fleet.system.authenticateCustomer(customer.getCustomerId(), customer.getPassword());
+    }
+
+    // Sign-in by ID of customers who signed in before, answered from the credential cache;
+    // the first sign-in of each hot customer hashes, during warmup
+    @Benchmark
+    public Customer customerLoginCached(Fleet fleet) {
+        Customer customer = fleet.randomHotCustomer();
+        return fleet.system.authenticateCustomer(customer.getCustomerId(), customer.getPassword());
+    }
+
+    // Sign-in by name, as the rent dialog does, of customers who signed in before
+    @Benchmark
+    public Customer customerLoginByNameCached(Fleet fleet) {
+        Customer customer = fleet.randomHotCustomer();
+        return fleet.system.authenticateCustomerByName(customer.getName(), customer.getPassword());
+    }
+}